@@ -0,0 +1,409 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.adapter;
+
+import android.support.v7.widget.RecyclerView;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.TypedValue;
+import android.view.KeyEvent;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+
+import com.ns.yc.yccustomtextlib.R;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperManager;
+import com.ns.yc.yccustomtextlib.edit.model.HyperDocument;
+import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
+import com.ns.yc.yccustomtextlib.edit.view.DeletableEditText;
+import com.ns.yc.yccustomtextlib.edit.view.HyperImageView;
+import com.ns.yc.yccustomtextlib.edit.wrapper.HyperEditableFactory;
+
+import java.util.List;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 富文本编辑列表适配器
+ *     revise: 文本块直接绑定数据中的Editable，view回收复用时样式和内容都不会丢失
+ * </pre>
+ */
+public class HyperEditAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    /**
+     * 类型：1，代表文字；2，代表图片，和HyperEditData保持一致
+     */
+    public static final int TYPE_TEXT = HyperEditData.TYPE_TEXT;
+    public static final int TYPE_IMAGE = HyperEditData.TYPE_IMAGE;
+
+    /**
+     * 文档模型，块id作为稳定的itemId
+     */
+    private final HyperDocument document = new HyperDocument();
+    private final LayoutInflater inflater;
+    private OnBlockListener onBlockListener;
+    /**
+     * 当前获取焦点的文本块，以及该文本块的光标位置
+     */
+    private HyperEditData focusData;
+    private int focusSelection;
+    /**
+     * 等待绑定后再获取焦点的文本块
+     */
+    private HyperEditData pendingFocusData;
+    private int pendingSelection;
+    private int textPadding = 10;
+    private int textSize = 16;
+    private int textColor;
+    private int textLineSpace = 8;
+    private int imageHeight = 500;
+    private String textHint;
+    private String insertHint = "插入文字";
+
+    public HyperEditAdapter(LayoutInflater inflater) {
+        this.inflater = inflater;
+        setHasStableIds(true);
+    }
+
+    public void setOnBlockListener(OnBlockListener onBlockListener) {
+        this.onBlockListener = onBlockListener;
+    }
+
+    /**
+     * 设置文本块和图片块的显示属性
+     * @param textSize                          文字大小，单位px
+     * @param textColor                         文字颜色
+     * @param textLineSpace                     文字行间距
+     * @param textPadding                       文本上下padding
+     * @param imageHeight                       图片高度
+     */
+    public void setBlockStyle(int textSize, int textColor, int textLineSpace,
+                              int textPadding, int imageHeight) {
+        this.textSize = textSize;
+        this.textColor = textColor;
+        this.textLineSpace = textLineSpace;
+        this.textPadding = textPadding;
+        this.imageHeight = imageHeight;
+    }
+
+    public void setTextHint(String textHint) {
+        this.textHint = textHint;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return document.get(position).getType() == TYPE_IMAGE ? TYPE_IMAGE : TYPE_TEXT;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return document.get(position).getId();
+    }
+
+    @Override
+    public int getItemCount() {
+        return document.size();
+    }
+
+    public HyperEditData getItem(int position) {
+        return document.get(position);
+    }
+
+    public HyperDocument getDocument() {
+        return document;
+    }
+
+    public void addItem(int index, HyperEditData data) {
+        document.add(index, data);
+        notifyItemInserted(index);
+    }
+
+    /**
+     * 批量加入块，只通知一次范围插入
+     * @param index                             起始位置
+     * @param dataList                          块集合
+     */
+    public void addItems(int index, List<HyperEditData> dataList) {
+        for (int i = 0; i < dataList.size(); i++) {
+            document.add(index + i, dataList.get(i));
+        }
+        notifyItemRangeInserted(index, dataList.size());
+    }
+
+    public HyperEditData removeItem(int index) {
+        HyperEditData data = document.remove(index);
+        if (data == focusData) {
+            focusData = null;
+        }
+        notifyItemRemoved(index);
+        return data;
+    }
+
+    public void clear() {
+        document.clear();
+        focusData = null;
+        pendingFocusData = null;
+        notifyDataSetChanged();
+    }
+
+    public HyperEditData getFocusData() {
+        return focusData;
+    }
+
+    public int getFocusPosition() {
+        return focusData == null ? -1 : document.indexOf(focusData);
+    }
+
+    public int getFocusSelection() {
+        return focusSelection;
+    }
+
+    /**
+     * 文本块绑定后获取焦点，并把光标移到指定位置
+     * @param data                              文本块
+     * @param selection                         光标位置
+     */
+    public void setPendingFocus(HyperEditData data, int selection) {
+        this.pendingFocusData = data;
+        this.pendingSelection = selection;
+        this.focusData = data;
+        this.focusSelection = selection;
+    }
+
+    /**
+     * 已绑定的文本块直接获取焦点
+     * @param holder                            holder
+     * @return                                  是否处理了等待的焦点
+     */
+    public boolean applyPendingFocus(RecyclerView.ViewHolder holder) {
+        if (!(holder instanceof TextHolder)) {
+            return false;
+        }
+        TextHolder textHolder = (TextHolder) holder;
+        if (pendingFocusData == null || textHolder.data != pendingFocusData) {
+            return false;
+        }
+        EditText editText = textHolder.editText;
+        int selection = Math.min(pendingSelection, editText.length());
+        editText.requestFocus();
+        editText.setSelection(selection, selection);
+        pendingFocusData = null;
+        return true;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (viewType == TYPE_IMAGE) {
+            View view = inflater.inflate(R.layout.edit_imageview, parent, false);
+            return new ImageHolder(view);
+        }
+        EditText editText = new DeletableEditText(parent.getContext());
+        RecyclerView.LayoutParams layoutParams = new RecyclerView.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        editText.setLayoutParams(layoutParams);
+        editText.setCursorVisible(true);
+        editText.setBackground(null);
+        editText.setPadding(0, textPadding, 0, textPadding);
+        editText.setTextSize(TypedValue.COMPLEX_UNIT_PX, textSize);
+        editText.setTextColor(textColor);
+        editText.setLineSpacing(textLineSpace, 1.0f);
+        return new TextHolder(editText);
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        HyperEditData data = document.get(position);
+        if (holder instanceof TextHolder) {
+            ((TextHolder) holder).bind(data, position == 0 ? textHint : insertHint);
+            applyPendingFocus(holder);
+        } else if (holder instanceof ImageHolder) {
+            ((ImageHolder) holder).bind(data);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        if (holder instanceof TextHolder) {
+            ((TextHolder) holder).unbind();
+        }
+    }
+
+    private class TextHolder extends RecyclerView.ViewHolder {
+
+        private final EditText editText;
+        private HyperEditData data;
+        /**
+         * 绑定数据过程中产生的文本变化不需要回调
+         */
+        private boolean binding;
+
+        TextHolder(EditText editText) {
+            super(editText);
+            this.editText = editText;
+            //让EditText直接使用数据中的Editable，而不是拷贝一份新的
+            editText.setEditableFactory(HyperEditableFactory.getInstance());
+            editText.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                    if (binding || data == null) {
+                        return;
+                    }
+                    document.updateText(data, s);
+                    if (onBlockListener != null) {
+                        onBlockListener.onTextChanged(getAdapterPosition());
+                    }
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+
+                }
+            });
+            editText.setOnKeyListener(new View.OnKeyListener() {
+                @Override
+                public boolean onKey(View v, int keyCode, KeyEvent event) {
+                    //KeyEvent.KEYCODE_DEL    删除插入点之前的字符
+                    if (event.getAction() == KeyEvent.ACTION_DOWN
+                            && event.getKeyCode() == KeyEvent.KEYCODE_DEL
+                            && TextHolder.this.editText.getSelectionStart() == 0) {
+                        int position = getAdapterPosition();
+                        if (position != RecyclerView.NO_POSITION && onBlockListener != null) {
+                            onBlockListener.onBackspace(position);
+                        }
+                    }
+                    return false;
+                }
+            });
+            editText.setOnFocusChangeListener(new View.OnFocusChangeListener() {
+                @Override
+                public void onFocusChange(View v, boolean hasFocus) {
+                    if (hasFocus && data != null) {
+                        focusData = data;
+                        if (onBlockListener != null) {
+                            onBlockListener.onFocusChanged(TextHolder.this.editText);
+                        }
+                    }
+                }
+            });
+        }
+
+        void bind(HyperEditData data, String hint) {
+            this.data = data;
+            binding = true;
+            CharSequence content = data.getContent();
+            if (!(content instanceof Editable)) {
+                //首次绑定时把文字转换为Editable，之后EditText直接在这份数据上编辑
+                content = HyperEditableFactory.getInstance().newEditable(content == null ? "" : content);
+                data.setContent(content);
+            }
+            editText.setText(content);
+            editText.setHint(hint);
+            binding = false;
+        }
+
+        void unbind() {
+            if (data != null && data == focusData) {
+                //记录光标位置，滑回来时可以恢复
+                focusSelection = editText.getSelectionStart();
+            }
+            binding = true;
+            editText.setText(null);
+            binding = false;
+            data = null;
+        }
+    }
+
+    private class ImageHolder extends RecyclerView.ViewHolder {
+
+        private final HyperImageView imageView;
+        private HyperEditData data;
+
+        ImageHolder(View itemView) {
+            super(itemView);
+            imageView = itemView.findViewById(R.id.edit_imageView);
+            View closeView = itemView.findViewById(R.id.image_close);
+            closeView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION && onBlockListener != null) {
+                        onBlockListener.onImageClose(position);
+                    }
+                }
+            });
+            imageView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    if (onBlockListener != null && data != null) {
+                        onBlockListener.onImageClick(v, data.getImagePath());
+                    }
+                }
+            });
+        }
+
+        void bind(HyperEditData data) {
+            this.data = data;
+            imageView.setAbsolutePath(data.getImagePath());
+            HyperManager.getInstance().loadImage(data.getImagePath(), imageView, imageHeight);
+        }
+    }
+
+    /**
+     * 文本块和图片块的事件回调
+     */
+    public interface OnBlockListener {
+
+        /**
+         * 文本内容变化
+         * @param position                  索引
+         */
+        void onTextChanged(int position);
+
+        /**
+         * 文本块获取焦点
+         * @param editText                  获取焦点的EditText
+         */
+        void onFocusChanged(EditText editText);
+
+        /**
+         * 光标在文本块最前方时点击回删
+         * @param position                  索引
+         */
+        void onBackspace(int position);
+
+        /**
+         * 图片点击事件
+         * @param view                      view
+         * @param imagePath                 图片地址
+         */
+        void onImageClick(View view, String imagePath);
+
+        /**
+         * 图片删除事件
+         * @param position                  索引
+         */
+        void onImageClose(int position);
+    }
+}
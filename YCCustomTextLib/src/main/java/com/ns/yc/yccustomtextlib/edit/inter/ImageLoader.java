@@ -24,6 +24,8 @@ import android.widget.ImageView;
  *     time  : 2018/3/31
  *     desc  : 接口
  *     revise: 暴露给开发者自定义设置图片
+ *             图片view会被回收之后用来显示其他块，异步加载需要按view取消，比如Glide的into(imageView)
+ *             不能取消的加载，完成时先用HyperManager.isImageBound判断，view已经换了图片就丢弃结果
  * </pre>
  */
 public interface ImageLoader {
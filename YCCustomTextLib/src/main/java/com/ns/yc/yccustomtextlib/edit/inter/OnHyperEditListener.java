@@ -35,7 +35,7 @@ public interface OnHyperEditListener {
     void onImageClick(View view, String imagePath);
 
     /**
-     * 图片删除事件
+     * 图片删除事件，同一张图片插入了多次时，只有最后一张被删除才会回调
      * @param imagePath             图片地址
      */
     void onRtImageDelete(String imagePath);
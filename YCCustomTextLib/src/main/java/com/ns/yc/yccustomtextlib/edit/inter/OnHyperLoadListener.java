@@ -0,0 +1,39 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.inter;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 内容导入监听事件接口
+ *     revise: 两个方法都在主线程回调，被新的导入替换掉的任务不会回调
+ * </pre>
+ */
+public interface OnHyperLoadListener {
+    /**
+     * 内容导入完成
+     * @param blockCount            文字和图片块的数量
+     */
+    void onLoadFinished(int blockCount);
+
+    /**
+     * 内容导入失败，比如json格式错误，原有内容保持不变
+     * @param e                     失败原因
+     */
+    void onLoadFailed(Exception e);
+}
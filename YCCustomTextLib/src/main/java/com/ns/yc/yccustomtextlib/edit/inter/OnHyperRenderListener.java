@@ -0,0 +1,33 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.inter;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 富文本显示的渲染监听事件接口
+ *     revise:
+ * </pre>
+ */
+public interface OnHyperRenderListener {
+    /**
+     * 第一屏的块已经创建view并且设置好文字，内容不满一屏时在全部添加之后回调
+     * @param blockCount            第一屏的块数量
+     */
+    void onFirstScreenRendered(int blockCount);
+}
@@ -0,0 +1,168 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.ns.yc.yccustomtextlib.edit.inter.OnHyperChangeListener;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 文本+图片数量变化分发者
+ *     revise: 支持立即回调，每帧最多回调一次，以及防抖回调三种方式，只需在主线程调用
+ * </pre>
+ */
+public final class HyperChangeDispatcher {
+
+    /**
+     * 每次变化立即回调，默认方式
+     */
+    public static final int DISPATCH_IMMEDIATE = 0;
+    /**
+     * 合并同一帧内的变化，每帧最多回调一次
+     */
+    public static final int DISPATCH_FRAME = 1;
+
+    private OnHyperChangeListener listener;
+    private int mode = DISPATCH_IMMEDIATE;
+    /**
+     * 防抖时间，大于0时在最后一次变化之后这么久才回调
+     */
+    private long debounceMillis;
+    private int contentLength;
+    private int imageLength;
+    /**
+     * 是否有还未回调的变化
+     */
+    private boolean pending;
+    private boolean frameScheduled;
+    private Handler handler;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameScheduled = false;
+            deliver();
+        }
+    };
+
+    private final Runnable debounceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    public void setListener(OnHyperChangeListener listener) {
+        this.listener = listener;
+    }
+
+    public OnHyperChangeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * 设置回调方式
+     * @param mode                          DISPATCH_IMMEDIATE或者DISPATCH_FRAME
+     */
+    public void setMode(int mode) {
+        if (this.mode != mode) {
+            flush();
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * 设置防抖时间，适合自动保存这类比较重的操作
+     * @param debounceMillis                防抖时间，单位毫秒，小于等于0表示不防抖
+     */
+    public void setDebounce(long debounceMillis) {
+        if (this.debounceMillis != debounceMillis) {
+            flush();
+        }
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * 文字或者图片数量发生变化
+     * @param contentLength                 文字长度
+     * @param imageLength                   图片数量
+     */
+    public void dispatch(int contentLength, int imageLength) {
+        this.contentLength = contentLength;
+        this.imageLength = imageLength;
+        if (listener == null) {
+            return;
+        }
+        pending = true;
+        if (debounceMillis > 0) {
+            Handler handler = getHandler();
+            handler.removeCallbacks(debounceRunnable);
+            handler.postDelayed(debounceRunnable, debounceMillis);
+        } else if (mode == DISPATCH_FRAME) {
+            if (!frameScheduled) {
+                frameScheduled = true;
+                Choreographer.getInstance().postFrameCallback(frameCallback);
+            }
+        } else {
+            deliver();
+        }
+    }
+
+    /**
+     * 立即回调还未回调的变化，比如控件从窗口移除时
+     */
+    public void flush() {
+        cancel();
+        deliver();
+    }
+
+    /**
+     * 取消还未执行的回调
+     */
+    public void cancel() {
+        if (frameScheduled) {
+            frameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        }
+        if (handler != null) {
+            handler.removeCallbacks(debounceRunnable);
+        }
+    }
+
+    private void deliver() {
+        if (!pending) {
+            return;
+        }
+        pending = false;
+        if (listener != null) {
+            listener.onImageClick(contentLength, imageLength);
+        }
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+
+}
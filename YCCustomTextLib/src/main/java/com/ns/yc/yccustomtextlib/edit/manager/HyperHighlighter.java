@@ -0,0 +1,325 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.graphics.Color;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.util.LruCache;
+
+import com.ns.yc.yccustomtextlib.edit.span.HighlightSpan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 多关键词高亮
+ *     revise: 关键词按字面匹配，不再当作正则表达式，每次搜索只构建一次AC自动机，所有文本块共用
+ *             扫描一遍文字就能找到所有关键词，匹配结果按文字内容的哈希缓存，不可变，可以在子线程使用
+ * </pre>
+ */
+public final class HyperHighlighter {
+
+    /**
+     * 默认高亮颜色
+     */
+    public static final int DEFAULT_COLOR = Color.parseColor("#EE5C42");
+    /**
+     * 缓存的匹配结果数量
+     */
+    private static final int MAX_CACHE_SIZE = 256;
+    private static final int[] EMPTY = new int[0];
+
+    private final String[] keywords;
+    private final boolean ignoreCase;
+    private final int color;
+    /**
+     * 用来区分不同高亮器的字符串，比如作为文字布局缓存的key
+     */
+    private final String key;
+    /**
+     * 自动机每个状态的转移，字符有序排列，0是根节点
+     */
+    private char[][] edgeChars;
+    private int[][] edgeTargets;
+    private int[] fail;
+    /**
+     * 到达该状态时，以当前字符结尾的最长关键词长度，没有时为0
+     */
+    private int[] matchLength;
+    /**
+     * 文字哈希和匹配区间的缓存
+     */
+    private final LruCache<Long, int[]> cache = new LruCache<>(MAX_CACHE_SIZE);
+
+    /**
+     * 构建单个关键词的高亮器
+     * @param keyword                           关键词
+     * @return                                  高亮器，关键词为空时返回null
+     */
+    public static HyperHighlighter compile(String keyword) {
+        if (keyword == null || keyword.length() == 0) {
+            return null;
+        }
+        return compile(Arrays.asList(keyword), false, DEFAULT_COLOR);
+    }
+
+    /**
+     * 构建多个关键词的高亮器
+     * @param keywords                          关键词集合，空的关键词会被忽略
+     * @param ignoreCase                        是否忽略大小写
+     * @param color                             高亮颜色
+     * @return                                  高亮器，没有有效的关键词时返回null
+     */
+    public static HyperHighlighter compile(Collection<String> keywords, boolean ignoreCase, int color) {
+        List<String> list = new ArrayList<>();
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                if (keyword != null && keyword.length() > 0 && !list.contains(keyword)) {
+                    list.add(keyword);
+                }
+            }
+        }
+        if (list.isEmpty()) {
+            return null;
+        }
+        return new HyperHighlighter(list.toArray(new String[0]), ignoreCase, color);
+    }
+
+    private HyperHighlighter(String[] keywords, boolean ignoreCase, int color) {
+        this.keywords = keywords;
+        this.ignoreCase = ignoreCase;
+        this.color = color;
+        StringBuilder builder = new StringBuilder();
+        builder.append(ignoreCase ? 'i' : 'c').append(Integer.toHexString(color));
+        for (String keyword : keywords) {
+            builder.append('\u0000').append(keyword);
+        }
+        this.key = builder.toString();
+        build();
+    }
+
+    public String[] getKeywords() {
+        return keywords.clone();
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 查找关键词出现的位置，重叠或者相邻的位置会合并成一个区间
+     * @param text                              文字
+     * @return                                  区间数组，依次是每个区间的起始和结束位置，结果不能修改
+     */
+    public int[] find(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return EMPTY;
+        }
+        Long hash = hash(text);
+        int[] ranges = cache.get(hash);
+        if (ranges == null) {
+            ranges = match(text);
+            cache.put(hash, ranges);
+        }
+        return ranges;
+    }
+
+    /**
+     * 生成高亮之后的文字，保留原有的样式，之前的高亮会被替换
+     * @param text                              文字
+     * @return                                  新的文字
+     */
+    public SpannableStringBuilder highlight(CharSequence text) {
+        SpannableStringBuilder spannable = new SpannableStringBuilder(text == null ? "" : text);
+        clear(spannable);
+        apply(spannable);
+        return spannable;
+    }
+
+    /**
+     * 直接在文字上设置高亮
+     * @param spannable                         文字
+     */
+    public void apply(Spannable spannable) {
+        apply(spannable, find(spannable));
+    }
+
+    /**
+     * 按照已经找到的区间设置高亮，比如区间在子线程计算好之后在主线程设置
+     * @param spannable                         文字
+     * @param ranges                            find返回的区间
+     */
+    public void apply(Spannable spannable, int[] ranges) {
+        int length = spannable.length();
+        for (int i = 0; i + 1 < ranges.length; i += 2) {
+            if (ranges[i + 1] <= length) {
+                spannable.setSpan(new HighlightSpan(color), ranges[i], ranges[i + 1],
+                        Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+    }
+
+    /**
+     * 移除文字上的所有高亮
+     * @param spannable                         文字
+     */
+    public static void clear(Spannable spannable) {
+        HighlightSpan[] spans = spannable.getSpans(0, spannable.length(), HighlightSpan.class);
+        for (HighlightSpan span : spans) {
+            spannable.removeSpan(span);
+        }
+    }
+
+    private void build() {
+        //构建时使用map，构建完成后转化为有序数组，匹配时二分查找
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        children.add(new HashMap<Character, Integer>());
+        List<Integer> lengths = new ArrayList<>();
+        lengths.add(0);
+        for (String keyword : keywords) {
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                Character c = fold(keyword.charAt(i));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new HashMap<Character, Integer>());
+                    lengths.add(0);
+                }
+                state = next;
+            }
+            lengths.set(state, Math.max(lengths.get(state), keyword.length()));
+        }
+        int size = children.size();
+        fail = new int[size];
+        matchLength = new int[size];
+        for (int i = 0; i < size; i++) {
+            matchLength[i] = lengths.get(i);
+        }
+        //按层遍历计算失败指针，同时继承失败指针上的最长匹配长度
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (Integer child : children.get(0).values()) {
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (Map.Entry<Character, Integer> entry : children.get(state).entrySet()) {
+                int child = entry.getValue();
+                int f = fail[state];
+                Integer target = children.get(f).get(entry.getKey());
+                while (target == null && f != 0) {
+                    f = fail[f];
+                    target = children.get(f).get(entry.getKey());
+                }
+                fail[child] = target == null || target == child ? 0 : target;
+                matchLength[child] = Math.max(matchLength[child], matchLength[fail[child]]);
+                queue[tail++] = child;
+            }
+        }
+        edgeChars = new char[size][];
+        edgeTargets = new int[size][];
+        for (int i = 0; i < size; i++) {
+            Map<Character, Integer> map = children.get(i);
+            char[] chars = new char[map.size()];
+            int index = 0;
+            for (Character c : map.keySet()) {
+                chars[index++] = c;
+            }
+            Arrays.sort(chars);
+            int[] targets = new int[chars.length];
+            for (int j = 0; j < chars.length; j++) {
+                targets[j] = map.get(chars[j]);
+            }
+            edgeChars[i] = chars;
+            edgeTargets[i] = targets;
+        }
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars[state], c);
+        return index < 0 ? -1 : edgeTargets[state][index];
+    }
+
+    private int[] match(CharSequence text) {
+        //栈中依次是已经合并好的区间，新的区间和栈顶重叠时继续合并
+        int[] ranges = new int[8];
+        int count = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            int next = next(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = next(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            int length = matchLength[state];
+            if (length == 0) {
+                continue;
+            }
+            int start = i + 1 - length;
+            int end = i + 1;
+            while (count > 0 && ranges[count - 1] >= start) {
+                start = Math.min(start, ranges[count - 2]);
+                count -= 2;
+            }
+            if (count + 2 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[count++] = start;
+            ranges[count++] = end;
+        }
+        return count == 0 ? EMPTY : Arrays.copyOf(ranges, count);
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    /**
+     * 64位的FNV-1a哈希，混入长度，不需要把文字转化为字符串
+     */
+    private static Long hash(CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash * 31 + length;
+    }
+
+}
@@ -0,0 +1,579 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.os.Handler;
+
+import com.ns.yc.yccustomtextlib.utils.HyperLogUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 编辑操作日志，用于自动保存和异常退出后恢复
+ *     revise: 每次编辑只追加很小的一条记录，保存的耗时只和改动大小有关，和文档长度无关
+ *             记录先缓存在内存中，短暂延迟后在子线程按顺序写入文件，超过大小时用当前文档的快照重写文件
+ *             记录方法只能在主线程调用
+ * </pre>
+ */
+public final class HyperJournal {
+
+    private static final int MAGIC = 0x48594A4C;
+    private static final int VERSION = 1;
+    private static final byte OP_CLEAR = 1;
+    private static final byte OP_INSERT_TEXT = 2;
+    private static final byte OP_INSERT_IMAGE = 3;
+    private static final byte OP_REMOVE_BLOCK = 4;
+    private static final byte OP_REPLACE_TEXT = 5;
+    private static final byte OP_SET_SPAN = 6;
+    private static final byte OP_REMOVE_SPAN = 7;
+    /**
+     * 记录写入文件的延迟，单位毫秒
+     */
+    private static final long FLUSH_DELAY = 300;
+    /**
+     * 默认超过这个大小之后重写文件，单位字节
+     */
+    private static final long DEFAULT_COMPACT_SIZE = 256 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 回放日志，按照记录的顺序回调
+     */
+    public interface Replayer {
+
+        /**
+         * 清空文档
+         */
+        void onClear();
+
+        /**
+         * 插入文本块
+         * @param index                 位置
+         * @param text                  文字
+         */
+        void onInsertTextBlock(int index, String text);
+
+        /**
+         * 插入图片块
+         * @param index                 位置
+         * @param imagePath             图片地址
+         */
+        void onInsertImageBlock(int index, String imagePath);
+
+        /**
+         * 移除块
+         * @param index                 位置
+         */
+        void onRemoveBlock(int index);
+
+        /**
+         * 替换文本块中的文字
+         * @param index                 文本块位置
+         * @param start                 起始位置
+         * @param deleteLength          被替换的文字长度
+         * @param text                  新的文字
+         */
+        void onReplaceText(int index, int start, int deleteLength, String text);
+
+        /**
+         * 设置行内样式
+         * @param index                 文本块位置
+         * @param type                  RichTypeEnum中的样式类型
+         * @param start                 起始位置
+         * @param end                   结束位置
+         * @param flags                 span的flags
+         */
+        void onSetSpan(int index, String type, int start, int end, int flags);
+
+        /**
+         * 移除行内样式
+         * @param index                 文本块位置
+         * @param type                  RichTypeEnum中的样式类型
+         * @param start                 起始位置
+         * @param end                   结束位置
+         */
+        void onRemoveSpan(int index, String type, int start, int end);
+    }
+
+    /**
+     * 重写文件时，把当前文档写成一组记录
+     */
+    public interface SnapshotWriter {
+
+        /**
+         * 先调用clear，再依次写入每个块
+         * @param journal               日志
+         */
+        void writeSnapshot(HyperJournal journal);
+    }
+
+    private final File file;
+    private final Handler handler;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private DataOutputStream pendingOut = new DataOutputStream(pending);
+    /**
+     * 已经交给子线程写入的大小，用于判断是否需要重写
+     */
+    private long fileLength;
+    private long compactSize = DEFAULT_COMPACT_SIZE;
+    private SnapshotWriter snapshotWriter;
+    private boolean flushScheduled;
+    /**
+     * 串行执行的文件任务，保证写入顺序
+     */
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean taskRunning;
+    /**
+     * 只在子线程中使用
+     */
+    private FileOutputStream output;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flush();
+        }
+    };
+
+    public HyperJournal(File file) {
+        this.file = file;
+        this.handler = HyperThreadManager.getInstance().getMainHandler();
+        this.fileLength = file.length();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 设置重写文件的阈值
+     * @param compactSize               文件大小，单位字节
+     */
+    public void setCompactSize(long compactSize) {
+        this.compactSize = compactSize;
+    }
+
+    public void setSnapshotWriter(SnapshotWriter snapshotWriter) {
+        this.snapshotWriter = snapshotWriter;
+    }
+
+    public void clear() {
+        try {
+            pendingOut.writeByte(OP_CLEAR);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        scheduleFlush();
+    }
+
+    public void insertTextBlock(int index, CharSequence text) {
+        try {
+            pendingOut.writeByte(OP_INSERT_TEXT);
+            pendingOut.writeInt(index);
+            writeText(text);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        scheduleFlush();
+    }
+
+    public void insertImageBlock(int index, String imagePath) {
+        try {
+            pendingOut.writeByte(OP_INSERT_IMAGE);
+            pendingOut.writeInt(index);
+            writeText(imagePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        scheduleFlush();
+    }
+
+    public void removeBlock(int index) {
+        try {
+            pendingOut.writeByte(OP_REMOVE_BLOCK);
+            pendingOut.writeInt(index);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        scheduleFlush();
+    }
+
+    public void replaceText(int index, int start, int deleteLength, CharSequence text) {
+        try {
+            pendingOut.writeByte(OP_REPLACE_TEXT);
+            pendingOut.writeInt(index);
+            pendingOut.writeInt(start);
+            pendingOut.writeInt(deleteLength);
+            writeText(text);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        scheduleFlush();
+    }
+
+    public void setSpan(int index, String type, int start, int end, int flags) {
+        try {
+            pendingOut.writeByte(OP_SET_SPAN);
+            pendingOut.writeInt(index);
+            writeText(type);
+            pendingOut.writeInt(start);
+            pendingOut.writeInt(end);
+            pendingOut.writeInt(flags);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        scheduleFlush();
+    }
+
+    public void removeSpan(int index, String type, int start, int end) {
+        try {
+            pendingOut.writeByte(OP_REMOVE_SPAN);
+            pendingOut.writeInt(index);
+            writeText(type);
+            pendingOut.writeInt(start);
+            pendingOut.writeInt(end);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * 立即把缓存的记录交给子线程写入，文件超过阈值时用快照重写
+     */
+    public void flush() {
+        if (flushScheduled) {
+            flushScheduled = false;
+            handler.removeCallbacks(flushRunnable);
+        }
+        if (pending.size() > 0) {
+            final byte[] bytes = pending.toByteArray();
+            pending.reset();
+            fileLength += bytes.length;
+            enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    append(bytes);
+                }
+            });
+        }
+        if (snapshotWriter != null && fileLength > compactSize) {
+            compact();
+        }
+    }
+
+    /**
+     * 用当前文档的快照重写文件，之前的记录全部丢弃
+     */
+    public void compact() {
+        if (snapshotWriter == null) {
+            return;
+        }
+        if (flushScheduled) {
+            flushScheduled = false;
+            handler.removeCallbacks(flushRunnable);
+        }
+        //快照已经包含了还没写入的记录
+        pending = new ByteArrayOutputStream();
+        pendingOut = new DataOutputStream(pending);
+        snapshotWriter.writeSnapshot(this);
+        if (flushScheduled) {
+            flushScheduled = false;
+            handler.removeCallbacks(flushRunnable);
+        }
+        final byte[] snapshot = pending.toByteArray();
+        pending.reset();
+        fileLength = snapshot.length + 8;
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                rewrite(snapshot);
+            }
+        });
+    }
+
+    /**
+     * 写入剩余的记录并关闭文件
+     */
+    public void close() {
+        flush();
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                closeOutput();
+            }
+        });
+    }
+
+    /**
+     * 删除日志文件，比如内容已经正常保存之后
+     */
+    public void delete() {
+        if (flushScheduled) {
+            flushScheduled = false;
+            handler.removeCallbacks(flushRunnable);
+        }
+        pending.reset();
+        fileLength = 0;
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                closeOutput();
+                if (file.exists() && !file.delete()) {
+                    HyperLogUtils.d("HyperJournal----delete------删除失败");
+                }
+            }
+        });
+    }
+
+    /**
+     * 读取日志文件，比较耗时，需要在子线程调用
+     * @param file                      日志文件
+     * @return                          文件内容，文件不存在时返回null
+     */
+    public static byte[] read(File file) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 按顺序回放日志，进程被杀时最后一条记录可能不完整，会被忽略
+     * @param data                      read读取的文件内容
+     * @param replayer                  回放回调
+     * @return                          回放的记录条数，文件无效时返回-1
+     */
+    public static int replay(byte[] data, Replayer replayer) {
+        if (data == null) {
+            return -1;
+        }
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        int count = 0;
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return -1;
+            }
+            while (true) {
+                byte op = input.readByte();
+                switch (op) {
+                    case OP_CLEAR:
+                        replayer.onClear();
+                        break;
+                    case OP_INSERT_TEXT: {
+                        int index = input.readInt();
+                        replayer.onInsertTextBlock(index, readText(input));
+                        break;
+                    }
+                    case OP_INSERT_IMAGE: {
+                        int index = input.readInt();
+                        replayer.onInsertImageBlock(index, readText(input));
+                        break;
+                    }
+                    case OP_REMOVE_BLOCK:
+                        replayer.onRemoveBlock(input.readInt());
+                        break;
+                    case OP_REPLACE_TEXT: {
+                        int index = input.readInt();
+                        int start = input.readInt();
+                        int deleteLength = input.readInt();
+                        replayer.onReplaceText(index, start, deleteLength, readText(input));
+                        break;
+                    }
+                    case OP_SET_SPAN: {
+                        int index = input.readInt();
+                        String type = readText(input);
+                        int start = input.readInt();
+                        int end = input.readInt();
+                        replayer.onSetSpan(index, type, start, end, input.readInt());
+                        break;
+                    }
+                    case OP_REMOVE_SPAN: {
+                        int index = input.readInt();
+                        String type = readText(input);
+                        int start = input.readInt();
+                        replayer.onRemoveSpan(index, type, start, input.readInt());
+                        break;
+                    }
+                    default:
+                        //无法识别的记录，之后的内容都不可信
+                        return count;
+                }
+                count++;
+            }
+        } catch (EOFException e) {
+            //读到末尾，或者最后一条记录不完整
+            return count;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return count;
+        }
+    }
+
+    private void writeText(CharSequence text) throws IOException {
+        byte[] bytes = text == null ? new byte[0] : text.toString().getBytes(UTF_8);
+        pendingOut.writeInt(bytes.length);
+        pendingOut.write(bytes);
+    }
+
+    private static String readText(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > input.available()) {
+            throw new EOFException();
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(flushRunnable, FLUSH_DELAY);
+        }
+    }
+
+    private void enqueue(Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+            if (!taskRunning) {
+                scheduleNext();
+            }
+        }
+    }
+
+    /**
+     * 需要持有tasks锁调用
+     */
+    private void scheduleNext() {
+        final Runnable task = tasks.poll();
+        taskRunning = task != null;
+        if (task == null) {
+            return;
+        }
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (tasks) {
+                        scheduleNext();
+                    }
+                }
+            }
+        });
+    }
+
+    private void append(byte[] bytes) {
+        try {
+            if (output == null) {
+                boolean empty = file.length() == 0;
+                output = new FileOutputStream(file, true);
+                if (empty) {
+                    output.write(header());
+                }
+            }
+            output.write(bytes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeOutput();
+        }
+    }
+
+    private void rewrite(byte[] snapshot) {
+        closeOutput();
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            out.write(header());
+            out.write(snapshot);
+            out.getFD().sync();
+            out.close();
+            out = null;
+            //重命名是原子操作，重写过程中进程被杀也不会损坏原来的文件
+            if (!temp.renameTo(file)) {
+                HyperLogUtils.d("HyperJournal----rewrite------重命名失败");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void closeOutput() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            output = null;
+        }
+    }
+
+    private static byte[] header() {
+        return new byte[]{
+                (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC,
+                (byte) (VERSION >>> 24), (byte) (VERSION >>> 16), (byte) (VERSION >>> 8), (byte) VERSION
+        };
+    }
+
+}
@@ -16,6 +16,8 @@ limitations under the License.
 package com.ns.yc.yccustomtextlib.edit.manager;
 
 import android.widget.ImageView;
+
+import com.ns.yc.yccustomtextlib.R;
 import com.ns.yc.yccustomtextlib.edit.inter.ImageLoader;
 
 /**
@@ -48,8 +50,21 @@ public final class HyperManager {
     }
 
     public void loadImage(String imagePath, ImageView imageView, int imageHeight){
+        //view会被回收复用，记录当前绑定的地址，异步加载完成时用来判断是否还是这张图片
+        imageView.setTag(R.id.hyper_image_path, imagePath);
         if (imageLoader != null){
             imageLoader.loadImage(imagePath, imageView, imageHeight);
         }
     }
+
+    /**
+     * 判断view当前绑定的是否还是这张图片，不能按view取消的异步加载在设置图片之前需要先判断
+     * @param imageView                 加载图片的view
+     * @param imagePath                 发起加载时的图片地址
+     * @return                          view已经被回收或者换成了其他图片时返回false
+     */
+    public boolean isImageBound(ImageView imageView, String imagePath){
+        Object tag = imageView.getTag(R.id.hyper_image_path);
+        return tag != null && tag.equals(imagePath);
+    }
 }
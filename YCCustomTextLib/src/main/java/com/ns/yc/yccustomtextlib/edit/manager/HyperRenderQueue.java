@@ -0,0 +1,105 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 按帧分批执行的渲染队列
+ *     revise: 每一帧只在时间预算内执行任务，剩下的留到下一帧，添加大量view时不会卡住主线程，只能在主线程使用
+ * </pre>
+ */
+public class HyperRenderQueue {
+
+    /**
+     * 默认每帧预算，单位毫秒，留一半时间给measure、layout和draw
+     */
+    private static final long DEFAULT_FRAME_BUDGET = 8;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private long frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FRAME_BUDGET);
+    private boolean scheduled;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled = false;
+            drain();
+        }
+    };
+
+    /**
+     * 设置每帧的时间预算
+     * @param frameBudgetMillis             时间预算，单位毫秒
+     */
+    public void setFrameBudget(long frameBudgetMillis) {
+        this.frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, frameBudgetMillis));
+    }
+
+    /**
+     * 添加任务，下一帧开始执行
+     * @param task                          任务
+     */
+    public void add(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    /**
+     * 清空还未执行的任务
+     */
+    public void clear() {
+        tasks.clear();
+        if (scheduled) {
+            scheduled = false;
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        }
+    }
+
+    public boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    private void schedule() {
+        if (!scheduled && !tasks.isEmpty()) {
+            scheduled = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+            if (System.nanoTime() - start >= frameBudgetNanos) {
+                break;
+            }
+        }
+        schedule();
+    }
+
+}
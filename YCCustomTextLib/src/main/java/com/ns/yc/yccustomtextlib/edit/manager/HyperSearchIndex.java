@@ -0,0 +1,346 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.os.Handler;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.ns.yc.yccustomtextlib.edit.model.HyperMatch;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 文章内搜索的n-gram索引
+ *     revise: 记录每个单字和相邻两个字出现在哪些块中，搜索时只扫描所有字都出现过的候选块
+ *             块用稳定的整数标识，修改过的块先标记，短暂延迟后在子线程重新计算，计算完成之前一直作为候选块
+ *             除了计算之外都在主线程使用
+ * </pre>
+ */
+public final class HyperSearchIndex {
+
+    /**
+     * 块被修改之后重新计算的延迟，单位毫秒，连续输入时合并成一次
+     */
+    private static final long REFRESH_DELAY = 500;
+    private static final long UNIGRAM = 1L << 32;
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * 按块标识获取文字
+     */
+    public interface TextProvider {
+
+        /**
+         * 获取块的文字，在主线程调用
+         * @param slot                  块标识
+         * @return                      文字，块已经不存在或者不是文本块时返回null
+         */
+        CharSequence getText(int slot);
+    }
+
+    private final TextProvider provider;
+    private final boolean ignoreCase;
+    private final Handler handler;
+    /**
+     * n-gram和包含它的块
+     */
+    private final Map<Long, BitSet> postings = new HashMap<>();
+    /**
+     * 每个块已经写入索引的n-gram，更新时先从倒排表中移除
+     */
+    private final SparseArray<long[]> slotGrams = new SparseArray<>();
+    /**
+     * 修改之后还没有重新计算的块
+     */
+    private final BitSet dirty = new BitSet();
+    /**
+     * 正在子线程计算的块
+     */
+    private final BitSet pending = new BitSet();
+    /**
+     * 每个块最近一次提交计算的序号，只写入最近一次的计算结果
+     */
+    private final SparseIntArray pendingStamps = new SparseIntArray();
+    private int stamp;
+    private int generation;
+    private boolean refreshScheduled;
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refreshScheduled = false;
+            refresh();
+        }
+    };
+
+    public HyperSearchIndex(TextProvider provider, boolean ignoreCase) {
+        this.provider = provider;
+        this.ignoreCase = ignoreCase;
+        this.handler = HyperThreadManager.getInstance().getMainHandler();
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * 块新增或者文字变化时调用
+     * @param slot                      块标识
+     */
+    public void invalidate(int slot) {
+        if (slot < 0) {
+            return;
+        }
+        dirty.set(slot);
+        if (!refreshScheduled) {
+            refreshScheduled = true;
+            handler.postDelayed(refreshRunnable, REFRESH_DELAY);
+        }
+    }
+
+    /**
+     * 块被移除时调用
+     * @param slot                      块标识
+     */
+    public void remove(int slot) {
+        if (slot < 0) {
+            return;
+        }
+        dirty.clear(slot);
+        pending.clear(slot);
+        pendingStamps.delete(slot);
+        removeGrams(slot);
+    }
+
+    public void clear() {
+        generation++;
+        postings.clear();
+        slotGrams.clear();
+        dirty.clear();
+        pending.clear();
+        pendingStamps.clear();
+        if (refreshScheduled) {
+            refreshScheduled = false;
+            handler.removeCallbacks(refreshRunnable);
+        }
+    }
+
+    /**
+     * 获取可能包含关键词的块，包括还没有重新计算的块
+     * @param query                     关键词
+     * @return                          候选块标识的集合
+     */
+    public BitSet candidates(CharSequence query) {
+        BitSet result = null;
+        long[] grams = query == null ? EMPTY : getGrams(query, ignoreCase, true);
+        for (long gram : grams) {
+            BitSet posting = postings.get(gram);
+            if (posting == null) {
+                result = new BitSet();
+                break;
+            }
+            if (result == null) {
+                result = (BitSet) posting.clone();
+            } else {
+                result.and(posting);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        if (result == null) {
+            result = new BitSet();
+        }
+        result.or(dirty);
+        result.or(pending);
+        return result;
+    }
+
+    /**
+     * 在文字中查找所有不重叠的匹配，添加到结果集合
+     * @param blockIndex                块的位置
+     * @param text                      文字
+     * @param query                     关键词
+     * @param ignoreCase                是否忽略大小写
+     * @param matches                   结果集合
+     */
+    public static void findAll(int blockIndex, CharSequence text, CharSequence query,
+                               boolean ignoreCase, List<HyperMatch> matches) {
+        int length = query.length();
+        if (length == 0 || text == null) {
+            return;
+        }
+        int last = text.length() - length;
+        int i = 0;
+        while (i <= last) {
+            if (regionMatches(text, i, query, ignoreCase)) {
+                matches.add(new HyperMatch(blockIndex, i, i + length));
+                i += length;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * 在主线程获取修改过的块的文字快照，在子线程计算n-gram，再回到主线程写入索引
+     */
+    private void refresh() {
+        final int size = dirty.cardinality();
+        if (size == 0) {
+            return;
+        }
+        final int[] slots = new int[size];
+        final String[] texts = new String[size];
+        final int current = ++stamp;
+        int count = 0;
+        for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+            CharSequence text = provider.getText(slot);
+            if (text == null) {
+                removeGrams(slot);
+                continue;
+            }
+            slots[count] = slot;
+            texts[count] = text.toString();
+            pending.set(slot);
+            pendingStamps.put(slot, current);
+            count++;
+        }
+        dirty.clear();
+        final int total = count;
+        final int currentGeneration = generation;
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                final long[][] grams = new long[total][];
+                for (int i = 0; i < total; i++) {
+                    grams[i] = getGrams(texts[i], ignoreCase, false);
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (currentGeneration != generation) {
+                            return;
+                        }
+                        for (int i = 0; i < total; i++) {
+                            //计算期间被移除或者又提交了计算的块不再写入，又被修改的块等待下一次计算，期间一直是候选块
+                            if (pendingStamps.get(slots[i]) != current) {
+                                continue;
+                            }
+                            pendingStamps.delete(slots[i]);
+                            pending.clear(slots[i]);
+                            if (!dirty.get(slots[i])) {
+                                putGrams(slots[i], grams[i]);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void putGrams(int slot, long[] grams) {
+        removeGrams(slot);
+        for (long gram : grams) {
+            BitSet posting = postings.get(gram);
+            if (posting == null) {
+                posting = new BitSet();
+                postings.put(gram, posting);
+            }
+            posting.set(slot);
+        }
+        slotGrams.put(slot, grams);
+    }
+
+    private void removeGrams(int slot) {
+        long[] grams = slotGrams.get(slot);
+        if (grams == null) {
+            return;
+        }
+        slotGrams.remove(slot);
+        for (long gram : grams) {
+            BitSet posting = postings.get(gram);
+            if (posting != null) {
+                posting.clear(slot);
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算文字中所有的单字和相邻两个字，去重之后有序排列
+     * @param query                     是否是关键词，关键词只需要两个字的组合，只有一个字时才使用单字
+     */
+    private static long[] getGrams(CharSequence text, boolean ignoreCase, boolean query) {
+        int length = text.length();
+        if (length == 0) {
+            return EMPTY;
+        }
+        if (query && length == 1) {
+            return new long[]{UNIGRAM | fold(text.charAt(0), ignoreCase)};
+        }
+        long[] grams = new long[query ? length - 1 : length * 2 - 1];
+        int count = 0;
+        char previous = fold(text.charAt(0), ignoreCase);
+        if (!query) {
+            grams[count++] = UNIGRAM | previous;
+        }
+        for (int i = 1; i < length; i++) {
+            char c = fold(text.charAt(i), ignoreCase);
+            if (!query) {
+                grams[count++] = UNIGRAM | c;
+            }
+            grams[count++] = ((long) previous << 16) | c;
+            previous = c;
+        }
+        Arrays.sort(grams, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || grams[unique - 1] != grams[i]) {
+                grams[unique++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, unique);
+    }
+
+    private static boolean regionMatches(CharSequence text, int offset, CharSequence query,
+                                         boolean ignoreCase) {
+        for (int j = 0; j < query.length(); j++) {
+            char a = text.charAt(offset + j);
+            char b = query.charAt(j);
+            if (a != b && (!ignoreCase || fold(a, true) != fold(b, true))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char fold(char c, boolean ignoreCase) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.support.v4.text.PrecomputedTextCompat;
+import android.text.Spanned;
+import android.util.LruCache;
+
+import com.ns.yc.yccustomtextlib.edit.span.InterInlineSpan;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 预计算文字布局缓存，使用单利
+ *     revise: 文字测量和断行放到子线程，结果按文字、关键词和文字属性缓存，主线程setText时基本不再测量
+ *             文字带有加粗等样式时，样式也是缓存key的一部分
+ * </pre>
+ */
+public final class HyperTextLayoutCache {
+
+    /**
+     * 缓存的最大字符数
+     */
+    private static final int MAX_CACHE_CHARS = 256 * 1024;
+    private static volatile HyperTextLayoutCache instance;
+    private final LruCache<Key, PrecomputedTextCompat> cache;
+
+    public static HyperTextLayoutCache getInstance(){
+        if (instance == null){
+            synchronized (HyperTextLayoutCache.class){
+                if (instance == null){
+                    instance = new HyperTextLayoutCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private HyperTextLayoutCache() {
+        cache = new LruCache<Key, PrecomputedTextCompat>(MAX_CACHE_CHARS) {
+            @Override
+            protected int sizeOf(Key key, PrecomputedTextCompat value) {
+                return Math.max(1, value.length());
+            }
+        };
+    }
+
+    /**
+     * 获取已经计算好的文字，没有时返回null，可以在主线程调用
+     * @param text                          原始文字
+     * @param keywords                      高亮关键词，没有传null
+     * @param params                        文字属性
+     * @return                              预计算的文字
+     */
+    public PrecomputedTextCompat get(CharSequence text, String keywords,
+                                     PrecomputedTextCompat.Params params) {
+        return cache.get(new Key(getKeyText(text), keywords, params));
+    }
+
+    /**
+     * 计算文字布局并缓存，比较耗时，需要在子线程调用
+     * @param text                          原始文字
+     * @param spanned                       原始文字加上高亮等样式之后的文字
+     * @param keywords                      高亮关键词，没有传null
+     * @param params                        文字属性
+     * @return                              预计算的文字
+     */
+    public PrecomputedTextCompat precompute(CharSequence text, CharSequence spanned, String keywords,
+                                            PrecomputedTextCompat.Params params) {
+        Key key = new Key(getKeyText(text), keywords, params);
+        PrecomputedTextCompat result = cache.get(key);
+        if (result == null) {
+            result = PrecomputedTextCompat.create(spanned, params);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * 文字相同但是样式不同时不能共用缓存，把样式的类型和区间拼接在文字后面
+     */
+    private static String getKeyText(CharSequence text) {
+        String plain = text.toString();
+        if (!(text instanceof Spanned)) {
+            return plain;
+        }
+        Spanned spanned = (Spanned) text;
+        InterInlineSpan[] spans = spanned.getSpans(0, spanned.length(), InterInlineSpan.class);
+        if (spans.length == 0) {
+            return plain;
+        }
+        StringBuilder builder = new StringBuilder(plain.length() + spans.length * 16);
+        builder.append(plain);
+        for (InterInlineSpan span : spans) {
+            builder.append('\u0000').append(span.getType())
+                    .append(',').append(spanned.getSpanStart(span))
+                    .append(',').append(spanned.getSpanEnd(span));
+        }
+        return builder.toString();
+    }
+
+    private static final class Key {
+
+        private final String text;
+        private final String keywords;
+        private final PrecomputedTextCompat.Params params;
+        private final int hashCode;
+
+        Key(String text, String keywords, PrecomputedTextCompat.Params params) {
+            this.text = text;
+            this.keywords = keywords;
+            this.params = params;
+            int result = text.hashCode();
+            result = 31 * result + (keywords == null ? 0 : keywords.hashCode());
+            result = 31 * result + params.hashCode();
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                    && text.equals(other.text)
+                    && (keywords == null ? other.keywords == null : keywords.equals(other.keywords))
+                    && params.equals(other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 线程管理者，使用单利
+ *     revise: 解析、文字准备等耗时操作放到子线程，结果再切回主线程
+ * </pre>
+ */
+public final class HyperThreadManager {
+
+    private static final int THREAD_COUNT = 2;
+    private static volatile HyperThreadManager instance;
+    private final ExecutorService executor;
+    private final Handler mainHandler;
+
+    public static HyperThreadManager getInstance(){
+        if (instance == null){
+            synchronized (HyperThreadManager.class){
+                if (instance == null){
+                    instance = new HyperThreadManager();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private HyperThreadManager() {
+        executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "hyper-thread-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 在子线程执行
+     * @param runnable                  任务
+     */
+    public void execute(Runnable runnable) {
+        executor.execute(runnable);
+    }
+
+    /**
+     * 切换到主线程执行
+     * @param runnable                  任务
+     */
+    public void post(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+
+    public Handler getMainHandler() {
+        return mainHandler;
+    }
+
+}
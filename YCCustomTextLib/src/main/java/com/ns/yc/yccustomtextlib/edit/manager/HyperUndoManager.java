@@ -0,0 +1,305 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 撤销和重做管理者
+ *     revise: 只记录每次操作的差量，不保存整个文档，连续输入会合并成一次操作，超过内存上限时丢弃最早的操作
+ *             只能在主线程使用
+ * </pre>
+ */
+public final class HyperUndoManager {
+
+    /**
+     * 默认内存上限，单位字节
+     */
+    private static final int DEFAULT_MAX_MEMORY = 512 * 1024;
+    /**
+     * 两次操作间隔小于这个时间才会合并，单位毫秒
+     */
+    private static final long MERGE_INTERVAL = 1000;
+
+    /**
+     * 可以撤销的操作
+     */
+    public interface Operation {
+
+        /**
+         * 撤销
+         */
+        void undo();
+
+        /**
+         * 重做
+         */
+        void redo();
+
+        /**
+         * 操作占用的内存大小，估算即可
+         * @return                      字节数
+         */
+        int getSize();
+
+        /**
+         * 尝试把紧接着的下一次操作合并到当前操作中，比如连续输入文字
+         * @param next                  下一次操作
+         * @return                      是否合并成功
+         */
+        boolean merge(Operation next);
+    }
+
+    /**
+     * 栈顶在最前面
+     */
+    private final ArrayDeque<Operation> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Operation> redoStack = new ArrayDeque<>();
+    private int undoSize;
+    private int redoSize;
+    private int maxMemory = DEFAULT_MAX_MEMORY;
+    private boolean enabled = true;
+    /**
+     * 正在撤销或者重做，期间产生的变化不需要记录
+     */
+    private boolean restoring;
+    private int groupDepth;
+    private GroupOperation group;
+    private long lastPushTime;
+    /**
+     * 栈顶的操作是否还可以合并，撤销、重做或者一组操作结束之后都不能再合并
+     */
+    private boolean mergeable;
+
+    /**
+     * 设置内存上限
+     * @param maxMemory                 内存上限，单位字节
+     */
+    public void setMaxMemory(int maxMemory) {
+        this.maxMemory = Math.max(0, maxMemory);
+        trimToSize();
+    }
+
+    /**
+     * 暂停或者恢复记录，比如导入内容期间
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        mergeable = false;
+    }
+
+    /**
+     * 当前的变化是否需要记录
+     */
+    public boolean isRecording() {
+        return enabled && !restoring;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * 获取当前占用的内存大小
+     */
+    public int getMemorySize() {
+        return undoSize + redoSize;
+    }
+
+    /**
+     * 开始一组操作，结束之前记录的操作会作为一次撤销，可以嵌套
+     */
+    public void beginGroup() {
+        if (groupDepth++ == 0) {
+            group = new GroupOperation();
+        }
+    }
+
+    /**
+     * 结束一组操作
+     */
+    public void endGroup() {
+        if (groupDepth == 0 || --groupDepth > 0) {
+            return;
+        }
+        GroupOperation finished = group;
+        group = null;
+        if (finished.operations.isEmpty()) {
+            return;
+        }
+        Operation operation = finished.operations.size() == 1
+                ? finished.operations.get(0) : finished;
+        pushInternal(operation, false);
+        mergeable = false;
+    }
+
+    /**
+     * 记录一次操作
+     * @param operation                 操作
+     * @return                          是否合并到了之前的操作中，合并之后这个操作不会再被使用，
+     *                                  没有合并时调用方可以在这之后再拷贝操作需要保存的内容
+     */
+    public boolean push(Operation operation) {
+        if (!isRecording() || operation == null) {
+            return false;
+        }
+        if (group != null) {
+            return group.add(operation);
+        }
+        return pushInternal(operation, true);
+    }
+
+    public boolean undo() {
+        if (undoStack.isEmpty() || groupDepth > 0) {
+            return false;
+        }
+        Operation operation = undoStack.pollFirst();
+        undoSize -= operation.getSize();
+        restoring = true;
+        try {
+            operation.undo();
+        } finally {
+            restoring = false;
+        }
+        redoStack.addFirst(operation);
+        redoSize += operation.getSize();
+        mergeable = false;
+        trimToSize();
+        return true;
+    }
+
+    public boolean redo() {
+        if (redoStack.isEmpty() || groupDepth > 0) {
+            return false;
+        }
+        Operation operation = redoStack.pollFirst();
+        redoSize -= operation.getSize();
+        restoring = true;
+        try {
+            operation.redo();
+        } finally {
+            restoring = false;
+        }
+        undoStack.addFirst(operation);
+        undoSize += operation.getSize();
+        mergeable = false;
+        trimToSize();
+        return true;
+    }
+
+    /**
+     * 清空所有记录，比如清空布局或者重新导入内容时
+     */
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        undoSize = 0;
+        redoSize = 0;
+        mergeable = false;
+    }
+
+    private boolean pushInternal(Operation operation, boolean tryMerge) {
+        redoStack.clear();
+        redoSize = 0;
+        long now = SystemClock.uptimeMillis();
+        Operation top = undoStack.peekFirst();
+        if (tryMerge && mergeable && top != null && now - lastPushTime < MERGE_INTERVAL) {
+            int oldSize = top.getSize();
+            if (top.merge(operation)) {
+                undoSize += top.getSize() - oldSize;
+                lastPushTime = now;
+                trimToSize();
+                return true;
+            }
+        }
+        undoStack.addFirst(operation);
+        undoSize += operation.getSize();
+        lastPushTime = now;
+        mergeable = true;
+        trimToSize();
+        return false;
+    }
+
+    /**
+     * 超过内存上限时，先丢弃重做记录，再丢弃最早的撤销记录
+     */
+    private void trimToSize() {
+        while (undoSize + redoSize > maxMemory && !redoStack.isEmpty()) {
+            redoSize -= redoStack.pollLast().getSize();
+        }
+        while (undoSize > maxMemory && !undoStack.isEmpty()) {
+            undoSize -= undoStack.pollLast().getSize();
+        }
+    }
+
+    /**
+     * 一组操作，作为一次撤销
+     */
+    private static final class GroupOperation implements Operation {
+
+        private final List<Operation> operations = new ArrayList<>();
+
+        boolean add(Operation operation) {
+            int last = operations.size() - 1;
+            if (last >= 0 && operations.get(last).merge(operation)) {
+                return true;
+            }
+            operations.add(operation);
+            return false;
+        }
+
+        @Override
+        public void undo() {
+            for (int i = operations.size() - 1; i >= 0; i--) {
+                operations.get(i).undo();
+            }
+        }
+
+        @Override
+        public void redo() {
+            for (int i = 0; i < operations.size(); i++) {
+                operations.get(i).redo();
+            }
+        }
+
+        @Override
+        public int getSize() {
+            int size = 16;
+            for (int i = 0; i < operations.size(); i++) {
+                size += operations.get(i).getSize();
+            }
+            return size;
+        }
+
+        @Override
+        public boolean merge(Operation next) {
+            return false;
+        }
+    }
+
+}
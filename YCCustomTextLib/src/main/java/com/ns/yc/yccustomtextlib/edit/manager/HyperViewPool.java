@@ -0,0 +1,181 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.manager;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.ImageView;
+import android.widget.RelativeLayout;
+import android.widget.TextView;
+
+import com.ns.yc.yccustomtextlib.R;
+import com.ns.yc.yccustomtextlib.edit.view.HyperImageView;
+
+import java.util.ArrayDeque;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 文本块和图片块view的复用池，使用单利
+ *     revise: HyperTextView和HyperTextEditor共用，清空布局时回收view，切换文章时不需要重新创建和inflate
+ *             view持有Activity，所以只复用同一个context创建的view，只能在主线程使用
+ *             使用复用池的view离开窗口时调用clear(Context)，不依赖Activity.isFinishing，旋转屏幕后不会持有旧的Activity
+ * </pre>
+ */
+public final class HyperViewPool {
+
+    private static final int MAX_TEXT_VIEW = 32;
+    private static final int MAX_EDIT_TEXT = 16;
+    private static final int MAX_IMAGE_LAYOUT = 16;
+    private static volatile HyperViewPool instance;
+    private final ArrayDeque<TextView> textViews = new ArrayDeque<>();
+    private final ArrayDeque<EditText> editTexts = new ArrayDeque<>();
+    private final ArrayDeque<RelativeLayout> imageLayouts = new ArrayDeque<>();
+    /**
+     * 池中view所属的context
+     */
+    private Context owner;
+
+    public static HyperViewPool getInstance(){
+        if (instance == null){
+            synchronized (HyperViewPool.class){
+                if (instance == null){
+                    instance = new HyperViewPool();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 获取回收的只读文本view，没有时返回null
+     */
+    public TextView acquireTextView(Context context) {
+        return context == owner ? textViews.poll() : null;
+    }
+
+    /**
+     * 获取回收的文本输入框，没有时返回null
+     */
+    public EditText acquireEditText(Context context) {
+        return context == owner ? editTexts.poll() : null;
+    }
+
+    /**
+     * 获取回收的图片布局，没有时返回null
+     */
+    public RelativeLayout acquireImageLayout(Context context) {
+        return context == owner ? imageLayouts.poll() : null;
+    }
+
+    /**
+     * 回收view，调用前需要从父容器移除，并移除自己添加的TextWatcher
+     * @param view                          文本或者图片块view
+     */
+    public void release(View view) {
+        if (view == null || view.getParent() != null) {
+            return;
+        }
+        if (!switchOwner(view.getContext())) {
+            return;
+        }
+        if (view instanceof EditText) {
+            if (editTexts.size() < MAX_EDIT_TEXT) {
+                resetTextView((EditText) view);
+                editTexts.add((EditText) view);
+            }
+        } else if (view instanceof TextView) {
+            if (textViews.size() < MAX_TEXT_VIEW) {
+                resetTextView((TextView) view);
+                textViews.add((TextView) view);
+            }
+        } else if (view instanceof RelativeLayout) {
+            HyperImageView imageView = view.findViewById(R.id.edit_imageView);
+            if (imageView != null && imageLayouts.size() < MAX_IMAGE_LAYOUT) {
+                resetImageLayout((RelativeLayout) view, imageView);
+                imageLayouts.add((RelativeLayout) view);
+            }
+        }
+    }
+
+    /**
+     * 清空复用池，比如页面销毁时
+     */
+    public void clear() {
+        textViews.clear();
+        editTexts.clear();
+        imageLayouts.clear();
+        owner = null;
+    }
+
+    /**
+     * 清空属于该context的view，使用复用池的view在onDetachedFromWindow中调用
+     * @param context                       context
+     */
+    public void clear(Context context) {
+        if (context == owner) {
+            clear();
+        }
+    }
+
+    /**
+     * 复用池只保留一个context的view，切换到别的页面时丢弃之前的
+     */
+    private boolean switchOwner(Context context) {
+        if (context == null) {
+            return false;
+        }
+        if (context != owner) {
+            clear();
+            owner = context;
+        }
+        return true;
+    }
+
+    private void resetTextView(TextView textView) {
+        textView.setOnKeyListener(null);
+        textView.setOnFocusChangeListener(null);
+        textView.setTag(null);
+        textView.setTag(R.id.hyper_block_watcher, null);
+        textView.setTag(R.id.hyper_pending_text, null);
+        textView.setTag(R.id.hyper_source_text, null);
+        textView.setText(null);
+        textView.setHint(null);
+    }
+
+    private void resetImageLayout(RelativeLayout layout, HyperImageView imageView) {
+        layout.setTag(null);
+        View closeView = layout.findViewById(R.id.image_close);
+        if (closeView != null) {
+            closeView.setTag(null);
+            closeView.setOnClickListener(null);
+            closeView.setVisibility(View.VISIBLE);
+        }
+        imageView.setOnClickListener(null);
+        imageView.setAbsolutePath(null);
+        imageView.setTag(R.id.hyper_image_path, null);
+        //图片加载时可能修改了布局参数和缩放方式，恢复成和布局文件一致
+        imageView.setLayoutParams(new RelativeLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        imageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        imageView.setImageResource(R.drawable.img_load_fail);
+    }
+
+}
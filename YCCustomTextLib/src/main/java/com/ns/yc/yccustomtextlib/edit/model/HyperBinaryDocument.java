@@ -0,0 +1,341 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.model;
+
+import android.text.Spanned;
+import android.text.SpannableStringBuilder;
+
+import com.ns.yc.yccustomtextlib.edit.span.InterInlineSpan;
+import com.ns.yc.yccustomtextlib.edit.span.SpanStyleHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 离线文章缓存的二进制格式
+ *     revise: 文件头之后是每个块的目录，记录类型、数据的位置和长度，之后是每个块的数据
+ *             文本块是UTF-8文字加上游程编码的样式，图片块是UTF-8的图片地址
+ *             读取时通过FileChannel内存映射，打开时只检查文件头，每个块单独解码，不需要把整个文件读入内存
+ *             所有长度都先检查再读取，文件损坏时抛出IOException，写入在子线程，读取可以在多个线程同时进行
+ * </pre>
+ */
+public final class HyperBinaryDocument {
+
+    /**
+     * 文件标识，HYPD
+     */
+    private static final int MAGIC = 0x48595044;
+    private static final int VERSION = 2;
+    /**
+     * 文件头：标识、版本号、块数量
+     */
+    private static final int HEADER_SIZE = 12;
+    /**
+     * 每个块的目录：类型、数据位置、数据长度
+     */
+    private static final int ENTRY_SIZE = 12;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int blockCount;
+
+    private HyperBinaryDocument(RandomAccessFile file, MappedByteBuffer buffer, int blockCount) {
+        this.file = file;
+        this.buffer = buffer;
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * 把块集合写入文件，先写临时文件再重命名，需要在子线程调用
+     * @param blocks                            块集合，文本块优先使用编辑中的内容
+     * @param target                            目标文件
+     * @throws IOException                      写入异常
+     */
+    public static void write(List<HyperEditData> blocks, File target) throws IOException {
+        int count = blocks.size();
+        byte[][] payloads = new byte[count][];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        for (int i = 0; i < count; i++) {
+            HyperEditData block = blocks.get(i);
+            bytes.reset();
+            if (block.getType() == HyperEditData.TYPE_IMAGE) {
+                String imagePath = block.getImagePath() == null ? "" : block.getImagePath();
+                data.write(imagePath.getBytes(UTF_8));
+            } else {
+                CharSequence content = block.getContent() != null ? block.getContent() : block.getInputStr();
+                if (content == null) {
+                    content = "";
+                }
+                byte[] text = content.toString().getBytes(UTF_8);
+                data.writeInt(text.length);
+                data.write(text);
+                writeStyleRuns(data, content);
+            }
+            data.flush();
+            payloads[i] = bytes.toByteArray();
+        }
+        File temp = new File(target.getPath() + ".tmp");
+        FileOutputStream fileOutput = new FileOutputStream(temp);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+        boolean success = false;
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(count);
+            int offset = HEADER_SIZE + ENTRY_SIZE * count;
+            for (int i = 0; i < count; i++) {
+                output.writeInt(blocks.get(i).getType());
+                output.writeInt(offset);
+                output.writeInt(payloads[i].length);
+                offset += payloads[i].length;
+            }
+            for (byte[] payload : payloads) {
+                output.write(payload);
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+            success = true;
+        } finally {
+            output.close();
+            if (!success) {
+                temp.delete();
+            }
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("重命名失败：" + target);
+        }
+    }
+
+    /**
+     * 打开文件，只读取文件头，块的数据在用到时才解码
+     * @param source                            文件
+     * @return                                  文档，使用完之后需要close
+     * @throws IOException                      文件不存在或者格式不对
+     */
+    public static HyperBinaryDocument open(File source) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(source, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("不是文章缓存文件：" + source);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("不支持的版本：" + buffer.getInt(4));
+            }
+            int count = buffer.getInt(8);
+            if (count < 0 || HEADER_SIZE + (long) ENTRY_SIZE * count > buffer.limit()) {
+                throw new IOException("目录不完整：" + source);
+            }
+            return new HyperBinaryDocument(file, buffer, count);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * 获取块的类型，不需要解码
+     */
+    public int getType(int index) {
+        return buffer.getInt(entryPosition(index));
+    }
+
+    /**
+     * 解码单个块，文本块的内容是带有样式的SpannableStringBuilder，可以在子线程调用
+     * @param index                             块的位置
+     * @return                                  块
+     * @throws IOException                      数据不完整或者长度不对
+     */
+    public HyperEditData readBlock(int index) throws IOException {
+        int entry = entryPosition(index);
+        int type = buffer.getInt(entry);
+        int offset = buffer.getInt(entry + 4);
+        int length = getDataLength(index);
+        //每次读取使用独立的位置，多个线程可以同时读取
+        ByteBuffer data = buffer.duplicate();
+        data.limit(offset + length);
+        data.position(offset);
+        HyperEditData block = new HyperEditData();
+        block.setType(type);
+        if (type == HyperEditData.TYPE_IMAGE) {
+            block.setImagePath(UTF_8.decode(data).toString());
+            return block;
+        }
+        int textBytes = readLength(data, 1);
+        ByteBuffer textBuffer = data.slice();
+        textBuffer.limit(textBytes);
+        String text = UTF_8.decode(textBuffer).toString();
+        data.position(data.position() + textBytes);
+        SpannableStringBuilder content = new SpannableStringBuilder(text);
+        readStyleRuns(data, content);
+        block.setContent(content);
+        block.setInputStr(text);
+        return block;
+    }
+
+    /**
+     * 获取块数据的字节数，只读取目录，不需要解码，可以用来估算文字高度
+     * @param index                             块的位置
+     * @return                                  字节数
+     * @throws IOException                      目录中的位置超出了文件
+     */
+    public int getDataLength(int index) throws IOException {
+        int entry = entryPosition(index);
+        int offset = buffer.getInt(entry + 4);
+        int length = buffer.getInt(entry + 8);
+        if (offset < 0 || length < 0 || (long) offset + length > buffer.limit()) {
+            throw new IOException("块数据不完整：" + index);
+        }
+        return length;
+    }
+
+    public void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private int entryPosition(int index) {
+        if (index < 0 || index >= blockCount) {
+            throw new IndexOutOfBoundsException("index: " + index + ", count: " + blockCount);
+        }
+        return HEADER_SIZE + ENTRY_SIZE * index;
+    }
+
+    /**
+     * 按字符计算样式，再把连续相同的样式合并成一段，写入段数和每段的长度、样式
+     */
+    private static void writeStyleRuns(DataOutputStream data, CharSequence content) throws IOException {
+        int length = content.length();
+        if (!(content instanceof Spanned) || length == 0) {
+            data.writeInt(0);
+            return;
+        }
+        Spanned spanned = (Spanned) content;
+        InterInlineSpan[] spans = spanned.getSpans(0, length, InterInlineSpan.class);
+        if (spans.length == 0) {
+            data.writeInt(0);
+            return;
+        }
+        byte[] styles = new byte[length];
+        for (InterInlineSpan span : spans) {
+            int style = SpanStyleHelper.getStyle(span.getType());
+            int start = Math.max(0, spanned.getSpanStart(span));
+            int end = Math.min(length, spanned.getSpanEnd(span));
+            for (int i = start; i < end; i++) {
+                styles[i] |= style;
+            }
+        }
+        int runCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (i == 0 || styles[i] != styles[i - 1]) {
+                runCount++;
+            }
+        }
+        data.writeInt(runCount);
+        int start = 0;
+        for (int i = 1; i <= length; i++) {
+            if (i == length || styles[i] != styles[i - 1]) {
+                writeVarInt(data, i - start);
+                data.writeByte(styles[start]);
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * 读取样式段，转化为位置和样式交替排列的数组，再由SpanStyleHelper设置span
+     */
+    private static void readStyleRuns(ByteBuffer data, SpannableStringBuilder content) throws IOException {
+        //每段至少有一个字节的长度和一个字节的样式
+        int runCount = readLength(data, 2);
+        int[] runs = new int[runCount * 2];
+        int position = 0;
+        for (int i = 0; i < runCount; i++) {
+            runs[i * 2] = position;
+            int runLength = readVarInt(data);
+            if (runLength <= 0 || runLength > content.length() - position || !data.hasRemaining()) {
+                throw new IOException("样式段长度不对：" + runLength);
+            }
+            position += runLength;
+            runs[i * 2 + 1] = data.get();
+        }
+        SpanStyleHelper.setRuns(content, runs, runs.length);
+    }
+
+    /**
+     * 读取后面数据的数量，数量乘以每项的最小字节数不能超过剩余的数据
+     * @param unitSize                          每项至少占用的字节数
+     */
+    private static int readLength(ByteBuffer data, int unitSize) throws IOException {
+        if (data.remaining() < 4) {
+            throw new IOException("数据不完整");
+        }
+        int length = data.getInt();
+        if (length < 0 || (long) length * unitSize > data.remaining()) {
+            throw new IOException("长度超出数据范围：" + length);
+        }
+        return length;
+    }
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer data) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (!data.hasRemaining() || shift >= 32) {
+                throw new IOException("变长整数不完整");
+            }
+            b = data.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+}
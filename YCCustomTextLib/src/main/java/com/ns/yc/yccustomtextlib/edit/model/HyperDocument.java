@@ -0,0 +1,258 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.model;
+
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.ns.yc.yccustomtextlib.utils.HyperLibUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 富文本文档模型
+ *     revise: 有序的块集合，每个块有稳定的id。view只负责绑定块，统计、序列化、按索引查找都直接读取这里
+ * </pre>
+ */
+public class HyperDocument {
+
+    /**
+     * 有序的块集合，和编辑器中view的顺序保持一致
+     */
+    private final List<HyperEditData> blocks = new ArrayList<>();
+    /**
+     * id和块的映射
+     */
+    private final SparseArray<HyperEditData> blockMap = new SparseArray<>();
+    /**
+     * id和位置的索引，只有前validPositions个块的位置是准确的，增删块时从变化的位置开始失效
+     * 输入文字时每次都要查询位置，这样不需要每次遍历所有块
+     */
+    private final SparseIntArray positions = new SparseIntArray();
+    private int validPositions;
+    private int nextId = 1;
+    /**
+     * 文字总长度和图片总数，随块的增删和文本变化增量更新
+     */
+    private int contentLength;
+    private int imageCount;
+    /**
+     * 图片地址登记表，随图片块的增删更新引用计数
+     */
+    private final HyperImageRegistry imageRegistry = new HyperImageRegistry();
+
+    /**
+     * 创建文本块，此时还没有加入文档
+     * @param content                           文本内容
+     * @return                                  文本块
+     */
+    public HyperEditData createTextBlock(CharSequence content) {
+        HyperEditData block = new HyperEditData();
+        block.setId(nextId++);
+        block.setType(HyperEditData.TYPE_TEXT);
+        block.setContent(content);
+        return block;
+    }
+
+    /**
+     * 创建图片块，此时还没有加入文档
+     * @param imagePath                         图片地址
+     * @return                                  图片块
+     */
+    public HyperEditData createImageBlock(String imagePath) {
+        HyperEditData block = new HyperEditData();
+        block.setId(nextId++);
+        block.setType(HyperEditData.TYPE_IMAGE);
+        block.setImagePath(imagePath);
+        return block;
+    }
+
+    /**
+     * 在特定位置加入块
+     * @param index                             位置
+     * @param block                             块
+     */
+    public void add(int index, HyperEditData block) {
+        blocks.add(index, block);
+        blockMap.put(block.getId(), block);
+        validPositions = Math.min(validPositions, index);
+        if (block.getType() == HyperEditData.TYPE_IMAGE) {
+            imageCount++;
+            imageRegistry.acquire(block.getImagePath());
+        } else {
+            int length = HyperLibUtils.getTrimLength(block.getContent());
+            block.setTextLength(length);
+            contentLength += length;
+        }
+    }
+
+    /**
+     * 移除特定位置的块
+     * @param index                             位置
+     * @return                                  被移除的块
+     */
+    public HyperEditData remove(int index) {
+        HyperEditData block = blocks.remove(index);
+        blockMap.remove(block.getId());
+        positions.delete(block.getId());
+        validPositions = Math.min(validPositions, index);
+        if (block.getType() == HyperEditData.TYPE_IMAGE) {
+            imageCount--;
+            imageRegistry.release(block.getImagePath());
+        } else {
+            contentLength -= block.getTextLength();
+        }
+        return block;
+    }
+
+    public HyperEditData get(int index) {
+        if (index < 0 || index >= blocks.size()) {
+            return null;
+        }
+        return blocks.get(index);
+    }
+
+    /**
+     * 根据id查找块
+     * @param id                                块id
+     * @return                                  块，不存在时返回null
+     */
+    public HyperEditData findById(int id) {
+        return blockMap.get(id);
+    }
+
+    /**
+     * 获取块的位置，位置索引有效时是O(log n)，增删块之后只重建变化位置之后的部分
+     * @param block                             块
+     * @return                                  位置，不在文档中时返回-1
+     */
+    public int indexOf(HyperEditData block) {
+        if (block == null || blockMap.get(block.getId()) != block) {
+            return -1;
+        }
+        int position = positions.get(block.getId(), -1);
+        if (position >= 0 && position < validPositions) {
+            return position;
+        }
+        for (int i = validPositions; i < blocks.size(); i++) {
+            positions.put(blocks.get(i).getId(), i);
+        }
+        validPositions = blocks.size();
+        return positions.get(block.getId(), -1);
+    }
+
+    public int size() {
+        return blocks.size();
+    }
+
+    public void clear() {
+        blocks.clear();
+        blockMap.clear();
+        positions.clear();
+        validPositions = 0;
+        contentLength = 0;
+        imageCount = 0;
+        imageRegistry.clear();
+    }
+
+    /**
+     * 文本块内容变化时调用，只按差值更新总长度
+     * 去掉首尾空白的长度只需要扫描首尾的空白字符，不会遍历整段文本，也不会拷贝字符串
+     * @param block                             文本块
+     * @param content                           变化后的文本
+     */
+    public void updateText(HyperEditData block, CharSequence content) {
+        block.setContent(content);
+        block.increaseVersion();
+        int length = HyperLibUtils.getTrimLength(content);
+        int delta = length - block.getTextLength();
+        block.setTextLength(length);
+        if (delta != 0 && blockMap.get(block.getId()) == block) {
+            contentLength += delta;
+        }
+    }
+
+    /**
+     * 直接修改了块中的Editable之后，重新同步该块的长度
+     * @param block                             文本块
+     */
+    public void refreshText(HyperEditData block) {
+        updateText(block, block.getContent());
+    }
+
+    /**
+     * 只修改了文本块的样式时调用，让序列化缓存失效
+     * @param block                             文本块
+     */
+    public void markDirty(HyperEditData block) {
+        if (block != null) {
+            block.increaseVersion();
+        }
+    }
+
+    /**
+     * 获取文字总长度，O(1)
+     */
+    public int getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * 获取图片总数，O(1)
+     */
+    public int getImageCount() {
+        return imageCount;
+    }
+
+    public HyperImageRegistry getImageRegistry() {
+        return imageRegistry;
+    }
+
+    /**
+     * 获取只读的块集合
+     * @return                                  块集合
+     */
+    public List<HyperEditData> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * 生成可以上传或者序列化的数据，文本块此时才会转化为字符串
+     * @return                                  数据集合
+     */
+    public List<HyperEditData> toEditData() {
+        List<HyperEditData> dataList = new ArrayList<>(blocks.size());
+        for (HyperEditData block : blocks) {
+            HyperEditData data = new HyperEditData();
+            data.setType(block.getType());
+            if (block.getType() == HyperEditData.TYPE_IMAGE) {
+                data.setImagePath(block.getImagePath());
+            } else {
+                CharSequence content = block.getContent();
+                data.setInputStr(content == null ? "" : content.toString());
+            }
+            dataList.add(data);
+        }
+        return dataList;
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.model;
+
+import android.util.SparseArray;
+
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 文档序列化，直接把html或者json写入Writer或者OutputStream
+ *     revise: 不生成中间的数据集合和整篇文章的字符串，每个块序列化后的片段按块id缓存
+ *             块的版本号没有变化时直接写入缓存的片段，只有修改过的块才重新序列化，只能在主线程使用
+ * </pre>
+ */
+public final class HyperDocumentSerializer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final HyperDocument document;
+    /**
+     * 块id和序列化片段的映射
+     */
+    private final SparseArray<Fragment> fragments = new SparseArray<>();
+    private final StringBuilder builder = new StringBuilder();
+    /**
+     * json片段由HyperJsonCodec写入，和整篇写入的格式一致
+     */
+    private final StringWriter jsonWriter = new StringWriter();
+
+    public HyperDocumentSerializer(HyperDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * 写入html，文本块中的加粗、斜体、下划线和删除线转化为对应的标签，图片块转化为img标签
+     * @param writer                            输出，写完之后flush，不会close
+     * @throws IOException                      写入异常
+     */
+    public void writeHtml(Writer writer) throws IOException {
+        List<HyperEditData> blocks = document.getBlocks();
+        for (int i = 0; i < blocks.size(); i++) {
+            writer.write(getFragment(blocks.get(i), true));
+        }
+        writer.flush();
+        trimFragments(blocks);
+    }
+
+    /**
+     * 以UTF-8编码写入html
+     * @param output                            输出，写完之后flush，不会close
+     * @throws IOException                      写入异常
+     */
+    public void writeHtml(OutputStream output) throws IOException {
+        writeHtml(new BufferedWriter(new OutputStreamWriter(output, UTF_8)));
+    }
+
+    /**
+     * 写入json，格式和HyperJsonCodec.write不缩进时一致
+     * @param writer                            输出，写完之后flush，不会close
+     * @throws IOException                      写入异常
+     */
+    public void writeJson(Writer writer) throws IOException {
+        List<HyperEditData> blocks = document.getBlocks();
+        writer.write('[');
+        for (int i = 0; i < blocks.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(getFragment(blocks.get(i), false));
+        }
+        writer.write(']');
+        writer.flush();
+        trimFragments(blocks);
+    }
+
+    /**
+     * 以UTF-8编码写入json
+     * @param output                            输出，写完之后flush，不会close
+     * @throws IOException                      写入异常
+     */
+    public void writeJson(OutputStream output) throws IOException {
+        writeJson(new BufferedWriter(new OutputStreamWriter(output, UTF_8)));
+    }
+
+    /**
+     * 清空缓存，比如重新导入内容时
+     */
+    public void clear() {
+        fragments.clear();
+        builder.setLength(0);
+        builder.trimToSize();
+        jsonWriter.getBuffer().setLength(0);
+        jsonWriter.getBuffer().trimToSize();
+    }
+
+    private String getFragment(HyperEditData block, boolean html) throws IOException {
+        Fragment fragment = fragments.get(block.getId());
+        if (fragment == null || fragment.version != block.getVersion()) {
+            fragment = new Fragment(block.getVersion());
+            fragments.put(block.getId(), fragment);
+        }
+        String result = html ? fragment.html : fragment.json;
+        if (result != null) {
+            return result;
+        }
+        if (html) {
+            builder.setLength(0);
+            appendHtml(block);
+            result = fragment.html = builder.toString();
+            builder.setLength(0);
+        } else {
+            StringBuffer buffer = jsonWriter.getBuffer();
+            buffer.setLength(0);
+            HyperJsonCodec.writeBlock(jsonWriter, block, false);
+            result = fragment.json = buffer.toString();
+            buffer.setLength(0);
+        }
+        return result;
+    }
+
+    /**
+     * 移除已经不在文档中的块的缓存
+     */
+    private void trimFragments(List<HyperEditData> blocks) {
+        if (fragments.size() <= blocks.size()) {
+            return;
+        }
+        for (int i = fragments.size() - 1; i >= 0; i--) {
+            if (document.findById(fragments.keyAt(i)) == null) {
+                fragments.removeAt(i);
+            }
+        }
+    }
+
+    private void appendHtml(HyperEditData block) {
+        if (block.getType() == HyperEditData.TYPE_IMAGE) {
+            String imagePath = block.getImagePath() == null ? "" : block.getImagePath();
+            builder.append("<img src=\"");
+            HyperHtmlUtils.appendEscaped(builder, imagePath, 0, imagePath.length());
+            builder.append("\"/>");
+            return;
+        }
+        CharSequence content = block.getContent();
+        if (content == null) {
+            content = block.getInputStr();
+        }
+        if (content != null && content.length() > 0) {
+            HyperHtmlUtils.appendHtml(builder, content);
+        }
+    }
+
+    private static final class Fragment {
+
+        private final int version;
+        private String html;
+        private String json;
+
+        Fragment(int version) {
+            this.version = version;
+        }
+    }
+
+}
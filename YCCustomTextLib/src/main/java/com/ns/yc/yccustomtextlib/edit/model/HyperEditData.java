@@ -28,6 +28,19 @@ import java.io.Serializable;
  */
 public class HyperEditData implements Serializable {
 
+    /**
+     * 文字类型
+     */
+    public static final int TYPE_TEXT = 1;
+    /**
+     * 图片类型
+     */
+    public static final int TYPE_IMAGE = 2;
+
+    /**
+     * 块id，由HyperDocument分配，同一个文档中唯一且不会改变
+     */
+    private transient int id;
     /**
      * 富文本输入文字内容
      */
@@ -40,6 +53,26 @@ public class HyperEditData implements Serializable {
      * 类型：1，代表文字；2，代表图片
      */
     private int type;
+    /**
+     * 编辑中的文本内容，直接持有EditText绑定的Editable，不参与序列化
+     */
+    private transient CharSequence content;
+    /**
+     * 文本去掉首尾空白后的长度，由HyperDocument随文本变化增量维护
+     */
+    private transient int textLength;
+    /**
+     * 内容版本号，文字或者样式变化时加一，序列化时用来判断缓存是否失效
+     */
+    private transient int version;
+
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
 
     public String getInputStr() {
         return inputStr;
@@ -64,4 +97,28 @@ public class HyperEditData implements Serializable {
     public void setType(int type) {
         this.type = type;
     }
+
+    public CharSequence getContent() {
+        return content;
+    }
+
+    public void setContent(CharSequence content) {
+        this.content = content;
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    void setTextLength(int textLength) {
+        this.textLength = textLength;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    void increaseVersion() {
+        version++;
+    }
 }
@@ -0,0 +1,96 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 图片地址登记表
+ *     revise: 引用计数，同一张图片插入多次时，只有最后一张被删除才算真正删除
+ * </pre>
+ */
+public class HyperImageRegistry {
+
+    /**
+     * 图片地址和引用次数
+     */
+    private final Map<String, Integer> refCounts = new HashMap<>();
+
+    /**
+     * 增加一次引用
+     * @param imagePath                         图片地址
+     * @return                                  增加后的引用次数
+     */
+    public int acquire(String imagePath) {
+        if (imagePath == null) {
+            return 0;
+        }
+        Integer count = refCounts.get(imagePath);
+        int newCount = count == null ? 1 : count + 1;
+        refCounts.put(imagePath, newCount);
+        return newCount;
+    }
+
+    /**
+     * 减少一次引用
+     * @param imagePath                         图片地址
+     * @return                                  是否是最后一次引用，也就是图片已经不在文档中了
+     */
+    public boolean release(String imagePath) {
+        if (imagePath == null) {
+            return false;
+        }
+        Integer count = refCounts.get(imagePath);
+        if (count == null) {
+            return false;
+        }
+        if (count <= 1) {
+            refCounts.remove(imagePath);
+            return true;
+        }
+        refCounts.put(imagePath, count - 1);
+        return false;
+    }
+
+    public boolean contains(String imagePath) {
+        return refCounts.containsKey(imagePath);
+    }
+
+    public int getRefCount(String imagePath) {
+        Integer count = refCounts.get(imagePath);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 获取文档中所有不重复的图片地址
+     * @return                                  图片地址集合
+     */
+    public List<String> getImagePaths() {
+        return new ArrayList<>(refCounts.keySet());
+    }
+
+    public void clear() {
+        refCounts.clear();
+    }
+
+}
@@ -0,0 +1,549 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 富文本数据的流式json读写
+ *     revise: 直接读写Reader和Writer，不生成整篇文章的字符串，字段和HyperEditData一致，Gson也可以读取
+ *             格式错误的内容统一抛出IOException，转义方式和Gson不同，Gson默认会转义html字符
+ *             缩进字符串只生成一次，读取时不认识的字段直接跳过，可以在子线程使用
+ * </pre>
+ */
+public final class HyperJsonCodec {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final String FIELD_INPUT_STR = "inputStr";
+    private static final String FIELD_IMAGE_PATH = "imagePath";
+    private static final String FIELD_TYPE = "type";
+    /**
+     * 缓存的缩进，下标是层级
+     */
+    private static final String[] INDENTS = new String[8];
+
+    static {
+        StringBuilder builder = new StringBuilder("\n");
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = builder.toString();
+            builder.append('\t');
+        }
+    }
+
+    private HyperJsonCodec() {
+    }
+
+    /**
+     * 把块集合写成json数组
+     * @param blocks                            块集合，文本块优先使用编辑中的内容
+     * @param writer                            输出，写完之后flush，不会close
+     * @param pretty                            是否换行缩进，为false时没有多余的空白
+     * @throws IOException                      写入异常
+     */
+    public static void write(List<HyperEditData> blocks, Writer writer, boolean pretty) throws IOException {
+        writer.write('[');
+        for (int i = 0; i < blocks.size(); i++) {
+            HyperEditData block = blocks.get(i);
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (pretty) {
+                writer.write(getIndent(1));
+            }
+            writeBlock(writer, block, pretty);
+        }
+        if (pretty && !blocks.isEmpty()) {
+            writer.write(getIndent(0));
+        }
+        writer.write(']');
+        writer.flush();
+    }
+
+    /**
+     * 读取json数组，需要在子线程调用
+     * @param reader                            输入，读完之后不会close
+     * @return                                  块集合，文本块只有inputStr
+     * @throws IOException                      读取异常或者格式错误
+     */
+    public static List<HyperEditData> read(Reader reader) throws IOException {
+        List<HyperEditData> blocks = new ArrayList<>();
+        JsonReader json = new JsonReader(reader);
+        if (json.peekToken() == 'n') {
+            json.readNull();
+            json.expectEnd();
+            return blocks;
+        }
+        json.expect('[');
+        if (json.peekToken() == ']') {
+            json.next();
+        } else {
+            do {
+                blocks.add(readBlock(json));
+            } while (json.nextSeparator(']'));
+        }
+        json.expectEnd();
+        return blocks;
+    }
+
+    /**
+     * 把json重新格式化成换行缩进的形式，字符串中的内容保持不变
+     * @param reader                            输入
+     * @param writer                            输出，写完之后flush，不会close
+     * @throws IOException                      读写异常
+     */
+    public static void format(Reader reader, Writer writer) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        //刚写完[或者{，遇到]或者}时不换行
+        boolean opened = false;
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            for (int i = 0; i < count; i++) {
+                char c = buffer[i];
+                if (inString) {
+                    writer.write(c);
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                if (opened && c != ']' && c != '}') {
+                    writer.write(getIndent(depth));
+                }
+                switch (c) {
+                    case '[':
+                    case '{':
+                        writer.write(c);
+                        depth++;
+                        opened = true;
+                        continue;
+                    case ']':
+                    case '}':
+                        depth = Math.max(0, depth - 1);
+                        if (!opened) {
+                            writer.write(getIndent(depth));
+                        }
+                        writer.write(c);
+                        break;
+                    case ',':
+                        writer.write(c);
+                        writer.write(getIndent(depth));
+                        break;
+                    case ':':
+                        writer.write(": ");
+                        break;
+                    case '"':
+                        inString = true;
+                        writer.write(c);
+                        break;
+                    default:
+                        writer.write(c);
+                        break;
+                }
+                opened = false;
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * 写入单个块的json对象，HyperDocumentSerializer按块缓存时也使用这里的格式
+     * @param writer                            输出
+     * @param block                             块，文本块优先使用编辑中的内容
+     * @param pretty                            是否换行缩进
+     * @throws IOException                      写入异常
+     */
+    static void writeBlock(Writer writer, HyperEditData block, boolean pretty) throws IOException {
+        writer.write('{');
+        boolean first = true;
+        CharSequence text = block.getContent() != null ? block.getContent() : block.getInputStr();
+        if (text != null) {
+            writeName(writer, FIELD_INPUT_STR, true, pretty);
+            writeString(writer, text);
+            first = false;
+        }
+        if (block.getImagePath() != null) {
+            writeName(writer, FIELD_IMAGE_PATH, first, pretty);
+            writeString(writer, block.getImagePath());
+            first = false;
+        }
+        writeName(writer, FIELD_TYPE, first, pretty);
+        writer.write(Integer.toString(block.getType()));
+        if (pretty) {
+            writer.write(getIndent(1));
+        }
+        writer.write('}');
+    }
+
+    private static HyperEditData readBlock(JsonReader json) throws IOException {
+        HyperEditData block = new HyperEditData();
+        json.expect('{');
+        if (json.peekToken() == '}') {
+            json.next();
+            return block;
+        }
+        do {
+            String name = json.readString();
+            json.expect(':');
+            if (FIELD_INPUT_STR.equals(name)) {
+                block.setInputStr(json.readNullableString());
+            } else if (FIELD_IMAGE_PATH.equals(name)) {
+                block.setImagePath(json.readNullableString());
+            } else if (FIELD_TYPE.equals(name)) {
+                block.setType(json.readInt());
+            } else {
+                json.skipValue();
+            }
+        } while (json.nextSeparator('}'));
+        return block;
+    }
+
+    private static void writeName(Writer writer, String name, boolean first, boolean pretty)
+            throws IOException {
+        if (!first) {
+            writer.write(',');
+        }
+        if (pretty) {
+            writer.write(getIndent(2));
+        }
+        writer.write('"');
+        writer.write(name);
+        writer.write(pretty ? "\": " : "\":");
+    }
+
+    /**
+     * 写入json字符串，没有需要转义的字符时整段写入
+     */
+    private static void writeString(Writer writer, CharSequence text) throws IOException {
+        writer.write('"');
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            String replacement;
+            switch (c) {
+                case '"':
+                    replacement = "\\\"";
+                    break;
+                case '\\':
+                    replacement = "\\\\";
+                    break;
+                case '\n':
+                    replacement = "\\n";
+                    break;
+                case '\r':
+                    replacement = "\\r";
+                    break;
+                case '\t':
+                    replacement = "\\t";
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        replacement = String.format("\\u%04x", (int) c);
+                    } else {
+                        continue;
+                    }
+                    break;
+            }
+            if (start < i) {
+                writer.append(text, start, i);
+            }
+            writer.write(replacement);
+            start = i + 1;
+        }
+        if (start < length) {
+            writer.append(text, start, length);
+        }
+        writer.write('"');
+    }
+
+    private static String getIndent(int depth) {
+        if (depth < INDENTS.length) {
+            return INDENTS[depth];
+        }
+        StringBuilder builder = new StringBuilder(INDENTS[INDENTS.length - 1]);
+        for (int i = INDENTS.length - 1; i < depth; i++) {
+            builder.append('\t');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 按块读取Reader的简单json词法解析，只保留当前的缓冲区和正在读取的字符串
+     */
+    private static final class JsonReader {
+
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder builder = new StringBuilder();
+        private int position;
+        private int limit;
+
+        JsonReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * 跳过空白，返回下一个字符但不读取
+         */
+        char peekToken() throws IOException {
+            while (true) {
+                if (position >= limit && !fill()) {
+                    throw new EOFException("json结束");
+                }
+                char c = buffer[position];
+                if (!Character.isWhitespace(c)) {
+                    return c;
+                }
+                position++;
+            }
+        }
+
+        char next() throws IOException {
+            if (position >= limit && !fill()) {
+                throw new EOFException("json结束");
+            }
+            return buffer[position++];
+        }
+
+        void expect(char expected) throws IOException {
+            char c = peekToken();
+            if (c != expected) {
+                throw new IOException("json格式错误，期望" + expected + "，实际是" + c);
+            }
+            position++;
+        }
+
+        /**
+         * 读取逗号或者结束符
+         * @return                          读到逗号时返回true
+         */
+        boolean nextSeparator(char end) throws IOException {
+            char c = peekToken();
+            position++;
+            if (c == ',') {
+                return true;
+            }
+            if (c == end) {
+                return false;
+            }
+            throw new IOException("json格式错误，期望,或者" + end + "，实际是" + c);
+        }
+
+        String readNullableString() throws IOException {
+            if (peekToken() == 'n') {
+                readNull();
+                return null;
+            }
+            return readString();
+        }
+
+        String readString() throws IOException {
+            expect('"');
+            builder.setLength(0);
+            while (true) {
+                //没有转义字符的部分整段追加
+                int start = position;
+                while (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+                    position++;
+                }
+                builder.append(buffer, start, position - start);
+                if (position >= limit) {
+                    if (!fill()) {
+                        throw new EOFException("json字符串没有结束");
+                    }
+                    continue;
+                }
+                char c = buffer[position++];
+                if (c == '"') {
+                    break;
+                }
+                readEscape();
+            }
+            String result = builder.toString();
+            if (builder.capacity() > BUFFER_SIZE * 8) {
+                builder.setLength(0);
+                builder.trimToSize();
+            }
+            return result;
+        }
+
+        private void readEscape() throws IOException {
+            char c = next();
+            switch (c) {
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit < 0) {
+                            throw new IOException("json格式错误，无效的unicode转义");
+                        }
+                        value = value * 16 + digit;
+                    }
+                    builder.append((char) value);
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+
+        /**
+         * 读取数字、true、false或者null
+         */
+        String readLiteral() throws IOException {
+            peekToken();
+            builder.setLength(0);
+            while (position < limit || fill()) {
+                char c = buffer[position];
+                if (c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+                    break;
+                }
+                builder.append(c);
+                position++;
+            }
+            if (builder.length() == 0) {
+                throw new IOException("json格式错误，缺少值");
+            }
+            return builder.toString();
+        }
+
+        /**
+         * 读取整数，1.0这样的写法也可以，字符串、null和其他字面量都是格式错误
+         */
+        int readInt() throws IOException {
+            char c = peekToken();
+            if (c != '-' && (c < '0' || c > '9')) {
+                throw new IOException("json格式错误，期望数字，实际是" + c);
+            }
+            String literal = readLiteral();
+            double value;
+            try {
+                value = Double.parseDouble(literal);
+            } catch (NumberFormatException e) {
+                throw new IOException("json格式错误，无效的数字" + literal);
+            }
+            if (value != (int) value) {
+                throw new IOException("json格式错误，不是整数" + literal);
+            }
+            return (int) value;
+        }
+
+        void skipValue() throws IOException {
+            char c = peekToken();
+            if (c == '"') {
+                readString();
+            } else if (c == '[' || c == '{') {
+                position++;
+                char end = c == '[' ? ']' : '}';
+                if (peekToken() == end) {
+                    position++;
+                    return;
+                }
+                do {
+                    if (end == '}') {
+                        readString();
+                        expect(':');
+                    }
+                    skipValue();
+                } while (nextSeparator(end));
+            } else {
+                String literal = readLiteral();
+                if (!"null".equals(literal) && !"true".equals(literal) && !"false".equals(literal)
+                        && !isNumber(literal)) {
+                    throw new IOException("json格式错误，无效的值" + literal);
+                }
+            }
+        }
+
+        void readNull() throws IOException {
+            String literal = readLiteral();
+            if (!"null".equals(literal)) {
+                throw new IOException("json格式错误，期望null，实际是" + literal);
+            }
+        }
+
+        /**
+         * 数组之后只能有空白，多余的内容按格式错误处理
+         */
+        void expectEnd() throws IOException {
+            while (position < limit || fill()) {
+                char c = buffer[position];
+                if (!Character.isWhitespace(c)) {
+                    throw new IOException("json格式错误，结尾有多余的内容" + c);
+                }
+                position++;
+            }
+        }
+
+        private boolean isNumber(String literal) {
+            char c = literal.charAt(0);
+            if (c != '-' && (c < '0' || c > '9')) {
+                return false;
+            }
+            try {
+                Double.parseDouble(literal);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            int count = reader.read(buffer, 0, buffer.length);
+            if (count <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = count;
+            return true;
+        }
+    }
+
+}
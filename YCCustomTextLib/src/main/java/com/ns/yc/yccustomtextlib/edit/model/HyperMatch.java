@@ -0,0 +1,65 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.model;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 文章内搜索的一个匹配结果
+ *     revise: 块的位置和块内文字的区间，可以直接用来跳转
+ * </pre>
+ */
+public final class HyperMatch {
+
+    /**
+     * 块在文章中的位置
+     */
+    private final int blockIndex;
+    /**
+     * 块内文字的起始位置
+     */
+    private final int start;
+    /**
+     * 块内文字的结束位置，不包含
+     */
+    private final int end;
+
+    public HyperMatch(int blockIndex, int start, int end) {
+        this.blockIndex = blockIndex;
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getBlockIndex() {
+        return blockIndex;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "HyperMatch{blockIndex=" + blockIndex + ", start=" + start + ", end=" + end + "}";
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.ns.yc.yccustomtextlib.edit.span;
+
+import android.text.style.ForegroundColorSpan;
+
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 搜索关键词高亮
+ *     revise: 和普通的文字颜色区分开，更换关键词时只移除这种span
+ * </pre>
+ */
+public class HighlightSpan extends ForegroundColorSpan {
+
+    public HighlightSpan(int color) {
+        super(color);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.span;
+
+import android.text.Spannable;
+import android.text.Spanned;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 行内样式和样式位的互相转化
+ *     revise: html、二进制缓存和状态保存都用这里的样式位，格式之间不会不一致
+ *             样式段是成对的位置和样式，表示从这个位置开始的样式，第一段之前没有样式
+ * </pre>
+ */
+public final class SpanStyleHelper {
+
+    public static final int BOLD = 1;
+    public static final int ITALIC = 1 << 1;
+    public static final int UNDERLINE = 1 << 2;
+    public static final int STRIKE_THROUGH = 1 << 3;
+    /**
+     * 所有样式位
+     */
+    public static final int STYLE_MASK = BOLD | ITALIC | UNDERLINE | STRIKE_THROUGH;
+
+    private SpanStyleHelper() {
+    }
+
+    /**
+     * 样式段转化为span时的回调
+     */
+    public interface RunVisitor {
+
+        /**
+         * @param type                  RichTypeEnum中的样式类型
+         * @param start                 起始位置
+         * @param end                   结束位置，不包含
+         */
+        void onSpan(String type, int start, int end);
+
+    }
+
+    /**
+     * 获取样式类型对应的样式位，粗斜体是加粗和斜体两位
+     * @param type                              RichTypeEnum中的样式类型
+     * @return                                  样式位，不支持的类型返回0
+     */
+    public static int getStyle(String type) {
+        if (RichTypeEnum.BOLD.equals(type)) {
+            return BOLD;
+        } else if (RichTypeEnum.ITALIC.equals(type)) {
+            return ITALIC;
+        } else if (RichTypeEnum.BOLD_ITALIC.equals(type)) {
+            return BOLD | ITALIC;
+        } else if (RichTypeEnum.UNDERLINE.equals(type)) {
+            return UNDERLINE;
+        } else if (RichTypeEnum.STRIKE_THROUGH.equals(type)) {
+            return STRIKE_THROUGH;
+        }
+        return 0;
+    }
+
+    /**
+     * 获取样式位对应的样式类型，和getStyle相反
+     * @param style                             单个样式位，或者加粗和斜体两位
+     * @return                                  RichTypeEnum中的样式类型，其他组合返回null
+     */
+    public static String getType(int style) {
+        switch (style) {
+            case BOLD:
+                return RichTypeEnum.BOLD;
+            case ITALIC:
+                return RichTypeEnum.ITALIC;
+            case BOLD | ITALIC:
+                return RichTypeEnum.BOLD_ITALIC;
+            case UNDERLINE:
+                return RichTypeEnum.UNDERLINE;
+            case STRIKE_THROUGH:
+                return RichTypeEnum.STRIKE_THROUGH;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 把样式段转化为span区间，加粗和斜体合并成一类，下划线和删除线各自一类，相同的样式连续时只回调一次
+     * @param runs                              位置和样式交替排列，位置不能减小
+     * @param runCount                          runs中使用的长度，是2的倍数
+     * @param length                            文字长度，超过的位置按文字长度处理
+     * @param visitor                           回调
+     */
+    public static void visitRuns(int[] runs, int runCount, int length, RunVisitor visitor) {
+        int weightStart = 0;
+        int weight = 0;
+        int underlineStart = 0;
+        int strikeStart = 0;
+        int style = 0;
+        for (int i = 0; i <= runCount; i += 2) {
+            int position = i < runCount ? Math.min(length, runs[i]) : length;
+            int newStyle = i < runCount ? runs[i + 1] & STYLE_MASK : 0;
+            int newWeight = newStyle & (BOLD | ITALIC);
+            if (newWeight != weight) {
+                visit(visitor, getType(weight), weightStart, position);
+                weight = newWeight;
+                weightStart = position;
+            }
+            if ((newStyle & UNDERLINE) != (style & UNDERLINE)) {
+                if ((style & UNDERLINE) != 0) {
+                    visit(visitor, RichTypeEnum.UNDERLINE, underlineStart, position);
+                }
+                underlineStart = position;
+            }
+            if ((newStyle & STRIKE_THROUGH) != (style & STRIKE_THROUGH)) {
+                if ((style & STRIKE_THROUGH) != 0) {
+                    visit(visitor, RichTypeEnum.STRIKE_THROUGH, strikeStart, position);
+                }
+                strikeStart = position;
+            }
+            style = newStyle;
+        }
+    }
+
+    /**
+     * 按样式段给文字设置span
+     * @param content                           文字
+     * @param runs                              位置和样式交替排列，位置不能减小
+     * @param runCount                          runs中使用的长度
+     */
+    public static void setRuns(final Spannable content, int[] runs, int runCount) {
+        visitRuns(runs, runCount, content.length(), new RunVisitor() {
+            @Override
+            public void onSpan(String type, int start, int end) {
+                Object span = SpanTextHelper.getInstance().newSpan(type);
+                if (span != null) {
+                    content.setSpan(span, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                }
+            }
+        });
+    }
+
+    private static void visit(RunVisitor visitor, String type, int start, int end) {
+        if (type != null && start < end) {
+            visitor.onSpan(type, start, end);
+        }
+    }
+
+}
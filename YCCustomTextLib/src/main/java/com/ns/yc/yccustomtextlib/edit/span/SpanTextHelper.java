@@ -1,6 +1,12 @@
 package com.ns.yc.yccustomtextlib.edit.span;
 
 import android.text.Editable;
+import android.text.NoCopySpan;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.CharacterStyle;
+import android.text.style.SuggestionSpan;
 import android.widget.EditText;
 
 import com.ns.yc.yccustomtextlib.edit.style.BoldItalicStyle;
@@ -8,6 +14,7 @@ import com.ns.yc.yccustomtextlib.edit.style.BoldStyle;
 import com.ns.yc.yccustomtextlib.edit.style.ItalicStyle;
 import com.ns.yc.yccustomtextlib.edit.style.StrikeThroughStyle;
 import com.ns.yc.yccustomtextlib.edit.style.UnderlineStyle;
+import com.ns.yc.yccustomtextlib.utils.HyperLibUtils;
 import com.ns.yc.yccustomtextlib.utils.HyperLogUtils;
 
 /**
@@ -109,6 +116,142 @@ public class SpanTextHelper {
         new UnderlineStyle().applyStyle(editable, start, end);
     }
 
+    /**
+     * 把source中[start,end)的文字连同样式span追加到dest末尾，不会拷贝整段文字，也不会重新设置文字
+     * 只复制CharacterStyle样式，光标、输入法组合、拼写检查以及TextView内部监听这类span不复制
+     * 同一个span对象只能属于一段文字，追加的是新建的span，不和source共用
+     * @param dest                              目标文字
+     * @param source                            来源文字
+     * @param start                             来源起始位置
+     * @param end                               来源结束位置
+     */
+    public void append(Editable dest, CharSequence source, int start, int end) {
+        insert(dest, dest.length(), source, start, end);
+    }
+
+    /**
+     * 把source中[start,end)的文字连同样式span插入到dest的where位置，复制规则和append一致
+     * @param dest                              目标文字
+     * @param where                             插入位置
+     * @param source                            来源文字
+     * @param start                             来源起始位置
+     * @param end                               来源结束位置
+     */
+    public void insert(Editable dest, int where, CharSequence source, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        if (!(source instanceof Spanned)) {
+            dest.insert(where, source, start, end);
+            return;
+        }
+        //先把文字和样式放到一起再插入，TextWatcher回调时就能拿到完整的样式
+        SpannableStringBuilder chunk = new SpannableStringBuilder(TextUtils.substring(source, start, end));
+        Spanned spanned = (Spanned) source;
+        Object[] spans = spanned.getSpans(start, end, CharacterStyle.class);
+        for (Object span : spans) {
+            int flags = spanned.getSpanFlags(span);
+            if (span instanceof NoCopySpan || span instanceof SuggestionSpan
+                    || (flags & Spanned.SPAN_COMPOSING) != 0) {
+                continue;
+            }
+            int spanStart = Math.max(start, spanned.getSpanStart(span));
+            int spanEnd = Math.min(end, spanned.getSpanEnd(span));
+            if (spanStart < spanEnd) {
+                chunk.setSpan(copySpan((CharacterStyle) span), spanStart - start, spanEnd - start, flags);
+            }
+        }
+        dest.insert(where, chunk);
+    }
+
+    /**
+     * 新建和span效果一样的span，库里的样式和高亮保持原来的类型，其他样式用CharacterStyle.wrap包装
+     */
+    private Object copySpan(CharacterStyle span) {
+        if (span instanceof InterInlineSpan) {
+            Object copy = newSpan(((InterInlineSpan) span).getType());
+            if (copy != null) {
+                return copy;
+            }
+        }
+        if (span instanceof HighlightSpan) {
+            return new HighlightSpan(((HighlightSpan) span).getForegroundColor());
+        }
+        return CharacterStyle.wrap(span);
+    }
+
+    /**
+     * 根据样式类型创建span
+     * @param type                              RichTypeEnum中的行内样式类型
+     * @return                                  span，不支持的类型返回null
+     */
+    public InterInlineSpan newSpan(@RichTypeEnum String type) {
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case RichTypeEnum.BOLD:
+                return new BoldStyleSpan();
+            case RichTypeEnum.ITALIC:
+                return new ItalicStyleSpan();
+            case RichTypeEnum.BOLD_ITALIC:
+                return new BoldItalicSpan();
+            case RichTypeEnum.STRIKE_THROUGH:
+                return new StrikeThroughSpan();
+            case RichTypeEnum.UNDERLINE:
+                return new UnderLineSpan();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 根据样式类型获取span的类型
+     * @param type                              RichTypeEnum中的行内样式类型
+     * @return                                  span的类型，不支持的类型返回null
+     */
+    public Class<? extends InterInlineSpan> getSpanClass(@RichTypeEnum String type) {
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case RichTypeEnum.BOLD:
+                return BoldStyleSpan.class;
+            case RichTypeEnum.ITALIC:
+                return ItalicStyleSpan.class;
+            case RichTypeEnum.BOLD_ITALIC:
+                return BoldItalicSpan.class;
+            case RichTypeEnum.STRIKE_THROUGH:
+                return StrikeThroughSpan.class;
+            case RichTypeEnum.UNDERLINE:
+                return UnderLineSpan.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 在光标处把文字拆成两段，效果和substring(...).trim()一致，但保留样式span
+     * 光标前面的文字原地保留，只删除光标之后的部分，光标后面的文字连同样式放到新的Editable中
+     * @param editable                          需要拆分的文字
+     * @param cursor                            光标位置
+     * @return                                  光标后面去掉首尾空白的文字
+     */
+    public Editable split(Editable editable, int cursor) {
+        int length = editable.length();
+        int tailStart = HyperLibUtils.getTrimStart(editable, cursor, length);
+        int tailEnd = HyperLibUtils.getTrimEnd(editable, tailStart, length);
+        Editable tail = new SpannableStringBuilder();
+        append(tail, editable, tailStart, tailEnd);
+        int headStart = HyperLibUtils.getTrimStart(editable, 0, cursor);
+        int headEnd = HyperLibUtils.getTrimEnd(editable, headStart, cursor);
+        editable.delete(headEnd, length);
+        if (headStart > 0) {
+            editable.delete(0, headStart);
+        }
+        return tail;
+    }
+
     /**
      * 判断是否是正常的样式
      * @param start                             start
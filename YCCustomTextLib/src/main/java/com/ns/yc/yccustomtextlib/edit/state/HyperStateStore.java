@@ -0,0 +1,322 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.state;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.text.Spanned;
+import android.text.SpannableStringBuilder;
+
+import com.ns.yc.yccustomtextlib.edit.manager.HyperThreadManager;
+import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
+import com.ns.yc.yccustomtextlib.edit.span.InterInlineSpan;
+import com.ns.yc.yccustomtextlib.edit.span.SpanStyleHelper;
+import com.ns.yc.yccustomtextlib.edit.span.SpanTextHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 编辑器内容状态的编码和存储
+ *     revise: 块、文字和行内样式编码成紧凑的Parcel数据，直接放入TextEditorState
+ *             超过阈值时写入缓存目录的文件，Bundle中只保存文件名，避免TransactionTooLargeException
+ *             读取之后不删除，同一份状态可以多次恢复，被新的状态替换或者过期之后才删除
+ * </pre>
+ */
+public final class HyperStateStore {
+
+    /**
+     * 超过这个大小时写入文件，单位字节
+     */
+    public static final int MAX_PARCEL_SIZE = 64 * 1024;
+    private static final int VERSION = 2;
+    private static final String DIR_NAME = "hyper_state";
+    /**
+     * 超过这个时间还没有恢复的文件会被清理，单位毫秒
+     */
+    private static final long EXPIRE_TIME = 24 * 60 * 60 * 1000L;
+    /**
+     * 最近写入文件的数据，配置变化时进程还在，直接从内存中读取，不需要等待文件写完
+     */
+    private static final Map<String, byte[]> MEMORY = new LinkedHashMap<String, byte[]>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > 2;
+        }
+    };
+
+    private HyperStateStore() {
+    }
+
+    /**
+     * 编码文档中的块，需要在主线程调用
+     * @param blocks                            文档中的块
+     * @return                                  编码后的数据
+     */
+    public static byte[] encode(List<HyperEditData> blocks) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeInt(VERSION);
+            parcel.writeInt(blocks.size());
+            for (HyperEditData block : blocks) {
+                parcel.writeInt(block.getType());
+                if (block.getType() == HyperEditData.TYPE_IMAGE) {
+                    parcel.writeString(block.getImagePath());
+                    continue;
+                }
+                CharSequence content = block.getContent();
+                if (content == null) {
+                    content = block.getInputStr() == null ? "" : block.getInputStr();
+                }
+                parcel.writeString(content.toString());
+                writeSpans(parcel, content);
+            }
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * 解码成块，文本块的内容是带有样式的SpannableStringBuilder，可以在子线程调用
+     * @param data                              编码后的数据
+     * @return                                  块集合，数据无效时返回空集合
+     */
+    public static List<HyperEditData> decode(byte[] data) {
+        List<HyperEditData> blocks = new ArrayList<>();
+        if (data == null || data.length == 0) {
+            return blocks;
+        }
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            if (parcel.readInt() != VERSION) {
+                return blocks;
+            }
+            int count = parcel.readInt();
+            for (int i = 0; i < count; i++) {
+                HyperEditData block = new HyperEditData();
+                block.setType(parcel.readInt());
+                if (block.getType() == HyperEditData.TYPE_IMAGE) {
+                    block.setImagePath(parcel.readString());
+                } else {
+                    String text = parcel.readString();
+                    SpannableStringBuilder content = new SpannableStringBuilder(text == null ? "" : text);
+                    readSpans(parcel, content);
+                    block.setContent(content);
+                }
+                blocks.add(block);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            parcel.recycle();
+        }
+        return blocks;
+    }
+
+    /**
+     * 把数据写入缓存目录的文件，在子线程写入
+     * @param context                           context
+     * @param data                              编码后的数据
+     * @return                                  文件名，恢复时使用
+     */
+    public static String spill(Context context, final byte[] data) {
+        final String name = UUID.randomUUID().toString();
+        final File dir = new File(context.getCacheDir(), DIR_NAME);
+        synchronized (MEMORY) {
+            MEMORY.put(name, data);
+        }
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                write(dir, name, data);
+            }
+        });
+        return name;
+    }
+
+    /**
+     * 读取写入文件的数据，读取之后不删除，比如Fragment的view重建时会用同一份状态再次恢复，需要在子线程调用
+     * @param context                           context
+     * @param name                              文件名
+     * @return                                  编码后的数据，不存在时返回null
+     */
+    public static byte[] load(Context context, String name) {
+        if (!isValidName(name)) {
+            return null;
+        }
+        byte[] data;
+        synchronized (MEMORY) {
+            data = MEMORY.get(name);
+        }
+        if (data != null) {
+            return data;
+        }
+        return read(new File(new File(context.getCacheDir(), DIR_NAME), name));
+    }
+
+    /**
+     * 删除被新的状态替换掉的数据，在子线程删除文件
+     * @param context                           context
+     * @param name                              之前spill返回的文件名，为null时不处理
+     */
+    public static void delete(Context context, final String name) {
+        if (!isValidName(name)) {
+            return;
+        }
+        synchronized (MEMORY) {
+            MEMORY.remove(name);
+        }
+        final File file = new File(new File(context.getCacheDir(), DIR_NAME), name);
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                file.delete();
+            }
+        });
+    }
+
+    private static boolean isValidName(String name) {
+        return name != null && name.length() > 0 && !name.contains(File.separator);
+    }
+
+    private static void writeSpans(Parcel parcel, CharSequence content) {
+        if (!(content instanceof Spanned)) {
+            parcel.writeInt(0);
+            return;
+        }
+        Spanned spanned = (Spanned) content;
+        InterInlineSpan[] spans = spanned.getSpans(0, spanned.length(), InterInlineSpan.class);
+        int countPosition = parcel.dataPosition();
+        parcel.writeInt(0);
+        int count = 0;
+        for (InterInlineSpan span : spans) {
+            int style = SpanStyleHelper.getStyle(span.getType());
+            int start = spanned.getSpanStart(span);
+            int end = spanned.getSpanEnd(span);
+            if (style == 0 || start < 0 || start >= end) {
+                continue;
+            }
+            parcel.writeInt(style);
+            parcel.writeInt(start);
+            parcel.writeInt(end);
+            parcel.writeInt(spanned.getSpanFlags(span));
+            count++;
+        }
+        int endPosition = parcel.dataPosition();
+        parcel.setDataPosition(countPosition);
+        parcel.writeInt(count);
+        parcel.setDataPosition(endPosition);
+    }
+
+    private static void readSpans(Parcel parcel, SpannableStringBuilder content) {
+        int count = parcel.readInt();
+        for (int i = 0; i < count; i++) {
+            String type = SpanStyleHelper.getType(parcel.readInt());
+            int start = parcel.readInt();
+            int end = parcel.readInt();
+            int flags = parcel.readInt();
+            if (type == null || start < 0 || end > content.length() || start >= end) {
+                continue;
+            }
+            Object span = SpanTextHelper.getInstance().newSpan(type);
+            if (span != null) {
+                content.setSpan(span, start, end, flags);
+            }
+        }
+    }
+
+    private static void write(File dir, String name, byte[] data) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        //顺便清理很久之前没有恢复的文件
+        File[] files = dir.listFiles();
+        if (files != null) {
+            long now = System.currentTimeMillis();
+            for (File file : files) {
+                if (now - file.lastModified() > EXPIRE_TIME) {
+                    file.delete();
+                }
+            }
+        }
+        File temp = new File(dir, name + ".tmp");
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(temp);
+            output.write(data);
+            output.getFD().sync();
+            output.close();
+            output = null;
+            if (!temp.renameTo(new File(dir, name))) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static byte[] read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+}
@@ -20,7 +20,6 @@ import android.os.Parcel;
 import android.os.Parcelable;
 import android.view.View;
 
-import java.util.ArrayList;
 
 /**
  * <pre>
@@ -28,12 +27,26 @@ import java.util.ArrayList;
  *     blog  : https://github.com/yangchong211/YCStatusBar
  *     time  : 2017/5/18
  *     desc  : 自定义BaseSavedState
- *     revise:
+ *     revise: 保存内容、样式、焦点和光标，内容过大时只保存文件名
  * </pre>
  */
 public class TextEditorState extends View.BaseSavedState {
 
     public int rtImageHeight;
+    /**
+     * 获取焦点的块位置和光标位置，没有焦点时为-1
+     */
+    public int focusIndex = -1;
+    public int selectionStart;
+    public int selectionEnd;
+    /**
+     * HyperStateStore编码的内容，超过阈值时为null，改为保存contentFile
+     */
+    public byte[] content;
+    /**
+     * 写入缓存目录的内容文件名
+     */
+    public String contentFile;
 
     public static final Creator<TextEditorState> CREATOR = new Creator<TextEditorState>() {
         @Override
@@ -54,11 +67,21 @@ public class TextEditorState extends View.BaseSavedState {
     public TextEditorState(Parcel source) {
         super(source);
         rtImageHeight = source.readInt();
+        focusIndex = source.readInt();
+        selectionStart = source.readInt();
+        selectionEnd = source.readInt();
+        content = source.createByteArray();
+        contentFile = source.readString();
     }
 
     @Override
     public void writeToParcel(Parcel out, int flags) {
         super.writeToParcel(out, flags);
         out.writeInt(rtImageHeight);
+        out.writeInt(focusIndex);
+        out.writeInt(selectionStart);
+        out.writeInt(selectionEnd);
+        out.writeByteArray(content);
+        out.writeString(contentFile);
     }
 }
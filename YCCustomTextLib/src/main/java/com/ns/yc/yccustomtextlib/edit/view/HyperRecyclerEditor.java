@@ -0,0 +1,888 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.view;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.inputmethod.InputMethodManager;
+import android.widget.EditText;
+
+import com.ns.yc.yccustomtextlib.R;
+import com.ns.yc.yccustomtextlib.edit.adapter.HyperEditAdapter;
+import com.ns.yc.yccustomtextlib.edit.inter.OnHyperChangeListener;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperChangeDispatcher;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperHighlighter;
+import com.ns.yc.yccustomtextlib.edit.inter.OnHyperEditListener;
+import com.ns.yc.yccustomtextlib.edit.inter.OnHyperLoadListener;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperThreadManager;
+import com.ns.yc.yccustomtextlib.edit.model.HyperDocument;
+import com.ns.yc.yccustomtextlib.edit.model.HyperDocumentSerializer;
+import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
+import com.ns.yc.yccustomtextlib.edit.model.HyperJsonCodec;
+import com.ns.yc.yccustomtextlib.edit.span.SpanTextHelper;
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlUtils;
+import com.ns.yc.yccustomtextlib.utils.HyperLibUtils;
+import com.ns.yc.yccustomtextlib.utils.HyperLogUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 编辑富文本，RecyclerView实现
+ *     revise: 和HyperTextEditor对外接口保持一致，只保留可见区域和少量预加载区域的view，适合超长的文章
+ * </pre>
+ */
+public class HyperRecyclerEditor extends RecyclerView {
+
+	/**
+	 * editText常规padding是10dp
+	 */
+	private static final int EDIT_PADDING = 10;
+	private HyperEditAdapter adapter;
+	/**
+	 * 文档序列化，缓存没有修改过的块的序列化结果
+	 */
+	private HyperDocumentSerializer serializer;
+	private OverscanLayoutManager layoutManager;
+	/**
+	 * 最近被聚焦的EditText
+	 */
+	private EditText lastFocusEdit;
+	/**
+	 * 关键词高亮
+	 */
+	private HyperHighlighter highlighter;
+	/**
+	 * 插入的图片显示高度
+	 */
+	private int rtImageHeight;
+	/**
+	 * 父控件的上和下padding
+	 */
+	private int topAndBottom;
+	/**
+	 * 父控件的左和右padding
+	 */
+	private int leftAndRight;
+	/**
+	 * 文字相关属性，初始提示信息，文字大小和颜色
+	 */
+	private String rtTextInitHint = "请输入内容";
+	/**
+	 * 文字大小
+	 */
+	private int rtTextSize = 16;
+	/**
+	 * 文字颜色
+	 */
+	private int rtTextColor = Color.parseColor("#757575");
+	/**
+	 * 文字行间距
+	 */
+	private int rtTextLineSpace = 8;
+	/**
+	 * 富文本的文字长度
+	 */
+	private int contentLength = 0;
+	/**
+	 * 富文本的图片个数
+	 */
+	private int imageLength = 0;
+	private OnHyperEditListener onHyperListener;
+	private OnHyperLoadListener onHyperLoadListener;
+	/**
+	 * 导入内容的版本号，重新导入时丢弃之前还未完成的导入
+	 */
+	private int loadGeneration;
+	/**
+	 * 文本+图片数量变化回调，支持每帧合并回调
+	 */
+	private final HyperChangeDispatcher changeDispatcher = new HyperChangeDispatcher();
+	/**
+	 * 防抖回调，适合自动保存
+	 */
+	private final HyperChangeDispatcher debounceDispatcher = new HyperChangeDispatcher();
+
+	public HyperRecyclerEditor(Context context) {
+		this(context, null);
+	}
+
+	public HyperRecyclerEditor(Context context, AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public HyperRecyclerEditor(Context context, AttributeSet attrs, int defStyleAttr) {
+		super(context, attrs, defStyleAttr);
+		initAttrs(context, attrs);
+		initRecyclerView(context);
+		initFirstEditText();
+	}
+
+	/**
+	 * 初始化自定义属性，和HyperTextEditor共用一套属性
+	 * @param context						context上下文
+	 * @param attrs							attrs属性
+	 */
+	private void initAttrs(Context context, AttributeSet attrs) {
+		TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.HyperTextEditor);
+		topAndBottom = ta.getInteger(R.styleable.HyperTextEditor_editor_layout_top_bottom, 15);
+		leftAndRight = ta.getInteger(R.styleable.HyperTextEditor_editor_layout_right_left, 40);
+		rtImageHeight = ta.getInteger(R.styleable.HyperTextEditor_editor_image_height, 500);
+		rtTextSize = ta.getDimensionPixelSize(R.styleable.HyperTextEditor_editor_text_size, 16);
+		rtTextLineSpace = ta.getDimensionPixelSize(R.styleable.HyperTextEditor_editor_text_line_space, 8);
+		rtTextColor = ta.getColor(R.styleable.HyperTextEditor_editor_text_color, Color.parseColor("#757575"));
+		rtTextInitHint = ta.getString(R.styleable.HyperTextEditor_editor_text_init_hint);
+		int overscan = ta.getDimensionPixelSize(R.styleable.HyperTextEditor_editor_overscan, 0);
+		ta.recycle();
+		layoutManager = new OverscanLayoutManager(context);
+		layoutManager.setOverscan(overscan);
+	}
+
+	private void initRecyclerView(Context context) {
+		setLayoutManager(layoutManager);
+		//设置间距，防止生成图片时文字太靠边
+		setPadding(leftAndRight, topAndBottom, leftAndRight, topAndBottom);
+		setClipToPadding(false);
+		adapter = new HyperEditAdapter(LayoutInflater.from(context));
+		adapter.setBlockStyle(rtTextSize, rtTextColor, rtTextLineSpace,
+				EDIT_PADDING, rtImageHeight);
+		adapter.setTextHint(rtTextInitHint);
+		adapter.setOnBlockListener(blockListener);
+		setAdapter(adapter);
+	}
+
+	private void initFirstEditText() {
+		HyperEditData data = adapter.getDocument().createTextBlock(new SpannableStringBuilder());
+		adapter.addItem(0, data);
+		adapter.setPendingFocus(data, 0);
+	}
+
+	private final HyperEditAdapter.OnBlockListener blockListener = new HyperEditAdapter.OnBlockListener() {
+		@Override
+		public void onTextChanged(int position) {
+			addHyperEditorChangeListener();
+		}
+
+		@Override
+		public void onFocusChanged(EditText editText) {
+			lastFocusEdit = editText;
+			HyperLogUtils.d("HyperRecyclerEditor---onFocusChange--"+lastFocusEdit);
+		}
+
+		@Override
+		public void onBackspace(int position) {
+			onBackspacePress(position);
+		}
+
+		@Override
+		public void onImageClick(View view, String imagePath) {
+			if (onHyperListener != null){
+				onHyperListener.onImageClick(view, imagePath);
+			}
+		}
+
+		@Override
+		public void onImageClose(int position) {
+			onImageCloseClick(position);
+		}
+	};
+
+	/**
+	 * 设置可见区域之外预先布局的高度，为0时使用控件高度的一半
+	 * @param overscan						预加载高度，单位px
+	 */
+	public void setOverscan(int overscan) {
+		layoutManager.setOverscan(overscan);
+	}
+
+	/**
+	 * 处理软键盘backSpace回退事件
+	 * @param position 						光标所在文本块的索引
+	 */
+	private void onBackspacePress(int position) {
+		HyperEditData data = adapter.getItem(position);
+		HyperEditData preData = adapter.getItem(position - 1);
+		if (data == null || preData == null) {
+			HyperLogUtils.d("HyperRecyclerEditor----onBackspacePress------没有上一个view");
+			return;
+		}
+		if (preData.getType() == HyperEditAdapter.TYPE_IMAGE) {
+			// 光标EditText的上一个view对应的是图片，删除图片操作
+			onImageCloseClick(position - 1);
+		} else {
+			// 光标EditText的上一个view对应的还是文本框EditText，合并文本
+			Editable preEditable = getEditable(preData);
+			Editable editable = getEditable(data);
+			int preLength = preEditable.length();
+			//只复制文字和样式，不复制绑定的EditText内部的span
+			SpanTextHelper.getInstance().append(preEditable, editable, 0, editable.length());
+			adapter.getDocument().refreshText(preData);
+			adapter.removeItem(position);
+			focusTextData(preData, preLength);
+		}
+	}
+
+	/**
+	 * 处理图片上删除的点击事件
+	 * @param position 						图片块的索引
+	 */
+	private void onImageCloseClick(int position) {
+		HyperEditData data = adapter.getItem(position);
+		if (data == null || data.getType() != HyperEditAdapter.TYPE_IMAGE) {
+			return;
+		}
+		adapter.removeItem(position);
+		//同一张图片插入了多次时，只有最后一张被删除才回调
+		if (!adapter.getDocument().getImageRegistry().contains(data.getImagePath())
+				&& onHyperListener != null){
+			onHyperListener.onRtImageDelete(data.getImagePath());
+		}
+		//合并上下EditText内容
+		mergeEditText(position);
+		addHyperEditorChangeListener();
+	}
+
+	/**
+	 * 图片删除的时候，如果上下方都是EditText，则合并处理
+	 * @param position						被删除图片的索引
+	 */
+	private void mergeEditText(int position) {
+		HyperEditData preData = adapter.getItem(position - 1);
+		HyperEditData nextData = adapter.getItem(position);
+		if (preData == null || nextData == null
+				|| preData.getType() != HyperEditAdapter.TYPE_TEXT
+				|| nextData.getType() != HyperEditAdapter.TYPE_TEXT) {
+			return;
+		}
+		Editable preEditable = getEditable(preData);
+		Editable nextEditable = getEditable(nextData);
+		int preLength = preEditable.length();
+		if (nextEditable.length() > 0) {
+			preEditable.append("\n");
+			SpanTextHelper.getInstance().append(preEditable, nextEditable, 0, nextEditable.length());
+			adapter.getDocument().refreshText(preData);
+		}
+		adapter.removeItem(position);
+		focusTextData(preData, preLength);
+	}
+
+	/**
+	 * 监听富文本：文字+图片数量变化
+	 */
+	private void addHyperEditorChangeListener() {
+		getContentAndImageCount();
+		changeDispatcher.dispatch(contentLength, imageLength);
+		debounceDispatcher.dispatch(contentLength, imageLength);
+	}
+
+	/**
+	 * 获取焦点，未绑定的文本块会先滚动到对应位置，绑定时再获取焦点
+	 */
+	private void focusTextData(HyperEditData data, int selection) {
+		adapter.setPendingFocus(data, selection);
+		final int position = adapter.getFocusPosition();
+		if (position < 0) {
+			return;
+		}
+		scrollToPosition(position);
+		post(new Runnable() {
+			@Override
+			public void run() {
+				ViewHolder holder = findViewHolderForAdapterPosition(position);
+				if (holder != null) {
+					adapter.applyPendingFocus(holder);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 获取文本块的光标位置，文本块被回收时使用记录下来的位置
+	 */
+	private int getCursorIndex(Editable editable) {
+		int cursorIndex = lastFocusEdit != null && lastFocusEdit.getText() == editable
+				? lastFocusEdit.getSelectionStart() : adapter.getFocusSelection();
+		return Math.max(0, Math.min(cursorIndex, editable.length()));
+	}
+
+	private Editable getEditable(HyperEditData data) {
+		CharSequence content = data.getContent();
+		if (content instanceof Editable) {
+			return (Editable) content;
+		}
+		Editable editable = new SpannableStringBuilder(content == null ? "" : content);
+		data.setContent(editable);
+		return editable;
+	}
+
+	/**
+	 * 获取富文本文档模型
+	 */
+	public HyperDocument getDocument() {
+		return adapter.getDocument();
+	}
+
+	/**
+	 * 获取文档中所有不重复的图片地址
+	 */
+	public List<String> getImagePaths() {
+		return adapter.getDocument().getImageRegistry().getImagePaths();
+	}
+
+	/**
+	 * 清空所有布局
+	 */
+	public void clearAllLayout(){
+		adapter.clear();
+		lastFocusEdit = null;
+	}
+
+	/**
+	 * 获取索引位置
+	 */
+	public int getLastIndex(){
+		return adapter.getItemCount();
+	}
+
+	/**
+	 * 插入一张图片
+	 * @param imagePath							图片路径地址
+	 */
+	public void insertImage(String imagePath) {
+		if (TextUtils.isEmpty(imagePath)){
+			return;
+		}
+		HyperEditData focusData = adapter.getFocusData();
+		int lastEditIndex = adapter.getFocusPosition();
+		if (focusData == null || lastEditIndex < 0) {
+			//没有获取焦点的文本块，直接插入到末尾
+			lastEditIndex = adapter.getItemCount() - 1;
+			focusData = adapter.getItem(lastEditIndex);
+			if (focusData == null || focusData.getType() != HyperEditAdapter.TYPE_TEXT) {
+				addImageViewAtIndex(adapter.getItemCount(), imagePath);
+				addEditTextAtIndex(adapter.getItemCount(), "");
+				addHyperEditorChangeListener();
+				return;
+			}
+		}
+		Editable editable = getEditable(focusData);
+		int length = editable.length();
+		//获取光标所在位置，文本块被回收时使用记录下来的位置
+		int cursorIndex = getCursorIndex(editable);
+		//光标前面去掉首尾空白后是否为空
+		boolean headEmpty = HyperLibUtils.getTrimStart(editable, 0, cursorIndex) == cursorIndex;
+		//光标后面去掉首尾空白后是否为空
+		boolean tailEmpty = HyperLibUtils.getTrimStart(editable, cursorIndex, length) == length;
+		if (length == 0) {
+			//如果当前获取焦点的EditText为空，直接在EditText下方插入图片，并且插入空的EditText
+			addEditTextAtIndex(lastEditIndex + 1, "");
+			addImageViewAtIndex(lastEditIndex + 1, imagePath);
+		} else if (headEmpty) {
+			//如果光标已经顶在了editText的最前面，则直接插入图片，并且EditText下移即可
+			addImageViewAtIndex(lastEditIndex, imagePath);
+			//同时插入一个空的EditText，防止插入多张图片无法写文字
+			addEditTextAtIndex(lastEditIndex + 1, "");
+		} else if (tailEmpty) {
+			// 如果光标已经顶在了editText的最末端，则需要添加新的imageView和EditText
+			addEditTextAtIndex(lastEditIndex + 1, "");
+			addImageViewAtIndex(lastEditIndex + 1, imagePath);
+		} else {
+			//如果光标已经顶在了editText的最中间，则需要分割字符串，分割成两个EditText，并在两个EditText中间插入图片
+			//光标前面的文字原地保留，后面的文字连同样式放到新的文本块
+			Editable tail = SpanTextHelper.getInstance().split(editable, cursorIndex);
+			adapter.getDocument().refreshText(focusData);
+			addEditTextAtIndex(lastEditIndex + 1, tail);
+			addEditTextAtIndex(lastEditIndex + 1, "");
+			addImageViewAtIndex(lastEditIndex + 1, imagePath);
+		}
+		//隐藏小键盘
+		hideKeyBoard();
+		//监听富文本：文字+图片数量变化
+		addHyperEditorChangeListener();
+	}
+
+	/**
+	 * 一次插入多张图片，效果和依次调用insertImage一致，只通知一次范围插入并回调一次数量变化
+	 * @param imagePaths						图片路径地址集合
+	 */
+	public void insertImages(List<String> imagePaths) {
+		//先过滤路径，全部无效时直接返回，不能先拆分光标后面的文字
+		List<String> validPaths = HyperLibUtils.getValidImagePaths(imagePaths);
+		if (validPaths.isEmpty()) {
+			return;
+		}
+		HyperDocument document = adapter.getDocument();
+		HyperEditData focusData = adapter.getFocusData();
+		int lastEditIndex = adapter.getFocusPosition();
+		int insertIndex;
+		Editable tailStr = null;
+		if (focusData == null || lastEditIndex < 0) {
+			insertIndex = adapter.getItemCount();
+		} else {
+			Editable editable = getEditable(focusData);
+			int length = editable.length();
+			int cursorIndex = getCursorIndex(editable);
+			boolean headEmpty = HyperLibUtils.getTrimStart(editable, 0, cursorIndex) == cursorIndex;
+			boolean tailEmpty = HyperLibUtils.getTrimStart(editable, cursorIndex, length) == length;
+			insertIndex = lastEditIndex + 1;
+			if (length != 0 && headEmpty) {
+				//光标在最前面，图片插在当前文本块之前
+				insertIndex = lastEditIndex;
+			} else if (length != 0 && !tailEmpty) {
+				//光标在中间，光标后面的文字连同样式放到最后一张图片之后
+				tailStr = SpanTextHelper.getInstance().split(editable, cursorIndex);
+				document.refreshText(focusData);
+			}
+		}
+		//每张图片后面跟一个空的文本块，方便在图片之间写文字
+		List<HyperEditData> blocks = new ArrayList<>();
+		HyperEditData lastTextData = null;
+		for (String imagePath : validPaths) {
+			blocks.add(document.createImageBlock(imagePath));
+			lastTextData = document.createTextBlock(new SpannableStringBuilder());
+			blocks.add(lastTextData);
+		}
+		if (tailStr != null) {
+			blocks.add(document.createTextBlock(tailStr));
+		}
+		adapter.addItems(insertIndex, blocks);
+		focusTextData(lastTextData, 0);
+		//隐藏小键盘
+		hideKeyBoard();
+		addHyperEditorChangeListener();
+	}
+
+	/**
+	 * 隐藏小键盘
+	 */
+	public void hideKeyBoard() {
+		InputMethodManager imm = (InputMethodManager)
+				getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+		if (imm != null) {
+			imm.hideSoftInputFromWindow(getWindowToken(), 0);
+		}
+	}
+
+	/**
+	 * 设置单个高亮关键词，按字面匹配
+	 * @param keywords							关键词，为空时不高亮
+	 */
+	public void setKeywords(String keywords) {
+		this.highlighter = HyperHighlighter.compile(keywords);
+	}
+
+	/**
+	 * 设置多关键词高亮器，每次搜索构建一次，所有文本块共用
+	 * @param highlighter						高亮器，为null时不高亮
+	 */
+	public void setHighlighter(HyperHighlighter highlighter) {
+		this.highlighter = highlighter;
+	}
+
+	public void setOnHyperLoadListener(OnHyperLoadListener onHyperLoadListener) {
+		this.onHyperLoadListener = onHyperLoadListener;
+	}
+
+	/**
+	 * 导入html内容，解析和文字准备在子线程，完成后一次性范围插入
+	 * @param html							html内容
+	 */
+	public void setHtml(final String html) {
+		final int generation = ++loadGeneration;
+		final HyperHighlighter highlighter = this.highlighter;
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				List<HyperEditData> dataList = HyperHtmlUtils.htmlToEditData(html);
+				prepareContent(generation, dataList, highlighter);
+			}
+		});
+	}
+
+	/**
+	 * 导入json格式的草稿，格式和writeJson一致，流式读取和文字准备在子线程，完成后一次性范围插入
+	 * @param reader							json输入，读取完成之后关闭
+	 */
+	public void setJson(final Reader reader) {
+		final int generation = ++loadGeneration;
+		final HyperHighlighter highlighter = this.highlighter;
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				List<HyperEditData> dataList;
+				try {
+					dataList = HyperJsonCodec.read(reader);
+				} catch (IOException e) {
+					e.printStackTrace();
+					postLoadFailed(generation, e);
+					return;
+				} finally {
+					try {
+						reader.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+				prepareContent(generation, dataList, highlighter);
+			}
+		});
+	}
+
+	/**
+	 * 导入失败时在主线程回调OnHyperLoadListener，已经被新的导入替换时不回调
+	 */
+	private void postLoadFailed(final int generation, final Exception e) {
+		HyperThreadManager.getInstance().post(new Runnable() {
+			@Override
+			public void run() {
+				if (generation == loadGeneration && onHyperLoadListener != null) {
+					onHyperLoadListener.onLoadFailed(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 导入富文本数据，文字准备在子线程，完成后一次性范围插入
+	 * @param dataList						富文本数据集合
+	 */
+	public void setContent(List<HyperEditData> dataList) {
+		final int generation = ++loadGeneration;
+		final HyperHighlighter highlighter = this.highlighter;
+		final List<HyperEditData> list = dataList == null
+				? new ArrayList<HyperEditData>() : new ArrayList<>(dataList);
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				prepareContent(generation, list, highlighter);
+			}
+		});
+	}
+
+	/**
+	 * 子线程中准备每个文本块的Editable，列表只会绑定可见的块，所以主线程直接整体插入即可
+	 */
+	private void prepareContent(final int generation, List<HyperEditData> dataList, HyperHighlighter highlighter) {
+		final List<HyperEditData> prepared = new ArrayList<>(dataList.size());
+		for (HyperEditData data : dataList) {
+			if (data == null) {
+				continue;
+			}
+			HyperEditData item = new HyperEditData();
+			item.setType(data.getType());
+			if (data.getType() == HyperEditData.TYPE_IMAGE) {
+				if (TextUtils.isEmpty(data.getImagePath())) {
+					continue;
+				}
+				item.setImagePath(data.getImagePath());
+			} else {
+				CharSequence text = data.getContent() != null ? data.getContent() : data.getInputStr();
+				if (text == null) {
+					text = "";
+				}
+				if (highlighter != null) {
+					//搜索关键词高亮，保留原有样式
+					item.setContent(highlighter.highlight(text));
+				} else {
+					item.setContent(new SpannableStringBuilder(text));
+				}
+			}
+			prepared.add(item);
+		}
+		HyperThreadManager.getInstance().post(new Runnable() {
+			@Override
+			public void run() {
+				attachContent(generation, prepared);
+			}
+		});
+	}
+
+	private void attachContent(int generation, List<HyperEditData> prepared) {
+		if (generation != loadGeneration) {
+			return;
+		}
+		clearAllLayout();
+		HyperDocument document = adapter.getDocument();
+		List<HyperEditData> blocks = new ArrayList<>(prepared.size() + 1);
+		for (HyperEditData item : prepared) {
+			if (item.getType() == HyperEditData.TYPE_IMAGE) {
+				blocks.add(document.createImageBlock(item.getImagePath()));
+			} else {
+				blocks.add(document.createTextBlock(item.getContent()));
+			}
+		}
+		//保证末尾是文本块，方便继续输入
+		HyperEditData last = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+		if (last == null || last.getType() != HyperEditData.TYPE_TEXT) {
+			last = document.createTextBlock(new SpannableStringBuilder());
+			blocks.add(last);
+		}
+		adapter.addItems(0, blocks);
+		adapter.setPendingFocus(last, 0);
+		addHyperEditorChangeListener();
+		if (onHyperLoadListener != null) {
+			onHyperLoadListener.onLoadFinished(document.size());
+		}
+	}
+
+	/**
+	 * 在特定位置插入文本块
+	 * @param index							位置
+	 * @param editStr						EditText显示的文字
+	 */
+	public void addEditTextAtIndex(final int index, CharSequence editStr) {
+		CharSequence text = editStr == null ? "" : editStr;
+		//已经带样式的文字，比如拆分出来的文本块，直接使用
+		if (!(text instanceof Editable)) {
+			if (highlighter != null && text.length() > 0) {
+				//搜索关键词高亮
+				text = highlighter.highlight(text);
+			} else {
+				text = new SpannableStringBuilder(text);
+			}
+		}
+		HyperEditData data = adapter.getDocument().createTextBlock(text);
+		adapter.addItem(index, data);
+		//插入新的文本块之后，修改焦点的指向
+		focusTextData(data, text.length());
+	}
+
+	/**
+	 * 在特定位置添加图片块
+	 */
+	public void addImageViewAtIndex(final int index, final String imagePath) {
+		if (TextUtils.isEmpty(imagePath)){
+			return;
+		}
+		HyperEditData data = adapter.getDocument().createImageBlock(imagePath);
+		adapter.addItem(index, data);
+	}
+
+	/**
+	 * 把内容以html格式直接写入输出，只有修改过的块会重新序列化，需要在主线程调用
+	 * @param writer							输出，写完之后flush，不会close
+	 * @throws IOException						写入异常
+	 */
+	public void writeHtml(Writer writer) throws IOException {
+		getSerializer().writeHtml(writer);
+	}
+
+	/**
+	 * 把内容以UTF-8编码的html格式直接写入输出流
+	 */
+	public void writeHtml(OutputStream output) throws IOException {
+		getSerializer().writeHtml(output);
+	}
+
+	/**
+	 * 把内容以json格式直接写入输出，字段和buildEditData一致
+	 * @param writer							输出，写完之后flush，不会close
+	 * @throws IOException						写入异常
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		getSerializer().writeJson(writer);
+	}
+
+	/**
+	 * 把内容以UTF-8编码的json格式直接写入输出流
+	 */
+	public void writeJson(OutputStream output) throws IOException {
+		getSerializer().writeJson(output);
+	}
+
+	private HyperDocumentSerializer getSerializer() {
+		if (serializer == null) {
+			serializer = new HyperDocumentSerializer(adapter.getDocument());
+		}
+		return serializer;
+	}
+
+	/**
+	 * 对外提供的接口, 生成编辑数据上传
+	 */
+	public List<HyperEditData> buildEditData() {
+		List<HyperEditData> dataList = adapter.getDocument().toEditData();
+		HyperLogUtils.d("HyperRecyclerEditor----buildEditData------dataList---"+dataList.size());
+		return dataList;
+	}
+
+	/**
+	 * 用于统计文本文字的数量和图片的数量，文档模型增量维护，O(1)
+	 */
+	public void getContentAndImageCount() {
+		contentLength = adapter.getDocument().getContentLength();
+		imageLength = adapter.getDocument().getImageCount();
+	}
+
+	public void setOnHyperListener(OnHyperEditListener listener){
+		this.onHyperListener = listener;
+	}
+
+	public void setOnHyperChangeListener(OnHyperChangeListener onHyperChangeListener) {
+		changeDispatcher.setListener(onHyperChangeListener);
+	}
+
+	/**
+	 * 设置文本+图片数量变化的回调方式
+	 * @param mode								HyperChangeDispatcher.DISPATCH_IMMEDIATE每次变化立即回调；
+	 *                                          HyperChangeDispatcher.DISPATCH_FRAME每帧最多回调一次
+	 */
+	public void setOnHyperChangeMode(int mode) {
+		changeDispatcher.setMode(mode);
+	}
+
+	/**
+	 * 设置防抖的文本+图片数量变化监听，最后一次变化之后debounceMillis毫秒才回调，适合自动保存
+	 * @param listener							监听
+	 * @param debounceMillis					防抖时间，单位毫秒
+	 */
+	public void setOnHyperDebounceListener(OnHyperChangeListener listener, long debounceMillis) {
+		debounceDispatcher.setListener(listener);
+		debounceDispatcher.setDebounce(debounceMillis);
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		//还未回调的变化立即回调，避免丢失
+		changeDispatcher.flush();
+		debounceDispatcher.flush();
+	}
+
+	/**
+	 * 获取当前获取焦点的EditText，焦点所在的文本块被回收时返回null
+	 */
+	public EditText getLastFocusEdit() {
+		HyperEditData focusData = adapter.getFocusData();
+		if (lastFocusEdit != null && focusData != null
+				&& lastFocusEdit.getText() == focusData.getContent()) {
+			return lastFocusEdit;
+		}
+		return null;
+	}
+
+	public int getContentLength() {
+		return contentLength;
+	}
+
+	public int getImageLength() {
+		return imageLength;
+	}
+
+	/**
+	 * 修改加粗样式
+	 */
+	public void bold() {
+		EditText editText = getLastFocusEdit();
+		if (editText != null) {
+			SpanTextHelper.getInstance().bold(editText);
+			markStyleChanged();
+		}
+	}
+
+	/**
+	 * 修改斜体样式
+	 */
+	public void italic() {
+		EditText editText = getLastFocusEdit();
+		if (editText != null) {
+			SpanTextHelper.getInstance().italic(editText);
+			markStyleChanged();
+		}
+	}
+
+	/**
+	 * 修改加粗斜体样式
+	 */
+	public void boldItalic() {
+		EditText editText = getLastFocusEdit();
+		if (editText != null) {
+			SpanTextHelper.getInstance().boldItalic(editText);
+			markStyleChanged();
+		}
+	}
+
+	/**
+	 * 修改删除线样式
+	 */
+	public void strikeThrough() {
+		EditText editText = getLastFocusEdit();
+		if (editText != null) {
+			SpanTextHelper.getInstance().strikeThrough(editText);
+			markStyleChanged();
+		}
+	}
+
+	/**
+	 * 修改下划线样式
+	 */
+	public void underline() {
+		EditText editText = getLastFocusEdit();
+		if (editText != null) {
+			SpanTextHelper.getInstance().underline(editText);
+			markStyleChanged();
+		}
+	}
+
+	/**
+	 * 只修改样式时文字不变，不会触发TextWatcher，需要单独让焦点块的序列化缓存失效
+	 */
+	private void markStyleChanged() {
+		adapter.getDocument().markDirty(adapter.getFocusData());
+	}
+
+	/**
+	 * 在可见区域之外额外布局一段距离，滑动时不会频繁创建和绑定view
+	 */
+	private static class OverscanLayoutManager extends LinearLayoutManager {
+
+		private int overscan;
+
+		OverscanLayoutManager(Context context) {
+			super(context, VERTICAL, false);
+		}
+
+		void setOverscan(int overscan) {
+			this.overscan = overscan;
+		}
+
+		@Override
+		protected int getExtraLayoutSpace(State state) {
+			if (overscan > 0) {
+				return overscan;
+			}
+			return getHeight() / 2;
+		}
+	}
+
+}
@@ -16,7 +16,6 @@ limitations under the License.
 package com.ns.yc.yccustomtextlib.edit.view;
 
 import android.animation.LayoutTransition;
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -25,7 +24,9 @@ import android.graphics.Color;
 import android.os.Parcelable;
 import android.support.annotation.Nullable;
 import android.text.Editable;
+import android.text.Layout;
 import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
@@ -42,16 +43,39 @@ import android.widget.RelativeLayout;
 import android.widget.ScrollView;
 
 import com.ns.yc.yccustomtextlib.edit.inter.OnHyperChangeListener;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperChangeDispatcher;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperHighlighter;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperJournal;
 import com.ns.yc.yccustomtextlib.edit.manager.HyperManager;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperRenderQueue;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperSearchIndex;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperThreadManager;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperUndoManager;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperViewPool;
 import com.ns.yc.yccustomtextlib.R;
 import com.ns.yc.yccustomtextlib.edit.inter.OnHyperEditListener;
+import com.ns.yc.yccustomtextlib.edit.inter.OnHyperLoadListener;
+import com.ns.yc.yccustomtextlib.edit.model.HyperDocument;
+import com.ns.yc.yccustomtextlib.edit.model.HyperDocumentSerializer;
 import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
+import com.ns.yc.yccustomtextlib.edit.model.HyperJsonCodec;
+import com.ns.yc.yccustomtextlib.edit.model.HyperMatch;
+import com.ns.yc.yccustomtextlib.edit.span.InterInlineSpan;
 import com.ns.yc.yccustomtextlib.edit.span.SpanTextHelper;
+import com.ns.yc.yccustomtextlib.edit.state.HyperStateStore;
 import com.ns.yc.yccustomtextlib.edit.state.TextEditorState;
+import com.ns.yc.yccustomtextlib.edit.wrapper.HyperEditableFactory;
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlUtils;
 import com.ns.yc.yccustomtextlib.utils.HyperLibUtils;
 import com.ns.yc.yccustomtextlib.utils.HyperLogUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 
@@ -71,9 +95,17 @@ public class HyperTextEditor extends ScrollView {
 	 */
 	private static final int EDIT_PADDING = 10;
 	/**
-	 * 新生的view都会打一个tag，对每个view来说，这个tag是唯一的。
+	 * 更换高亮关键词时每批匹配的文本块数量
 	 */
-	private int viewTagIndex = 1;
+	private static final int HIGHLIGHT_BATCH_SIZE = 32;
+	/**
+	 * 富文本文档模型，新生的view都会把绑定的块作为tag，块id在文档中是唯一的。
+	 */
+	private HyperDocument document;
+	/**
+	 * 文档序列化，缓存没有修改过的块的序列化结果
+	 */
+	private HyperDocumentSerializer serializer;
 	/**
 	 * 这个是所有子view的容器，scrollView内部的唯一一个ViewGroup
 	 */
@@ -94,10 +126,6 @@ public class HyperTextEditor extends ScrollView {
 	 * 所有EditText的焦点监听listener
 	 */
 	private OnFocusChangeListener focusListener;
-	/**
-	 * 所有EditText的文本变化监听listener
-	 */
-	private TextWatcher textWatcher;
 	/**
 	 * 最近被聚焦的EditText
 	 */
@@ -109,13 +137,58 @@ public class HyperTextEditor extends ScrollView {
 	private int editNormalPadding = 0;
 	private int disappearingImageIndex = 0;
 	/**
-	 * 图片地址集合
+	 * 是否正在批量操作，批量操作中不回调数量变化
+	 */
+	private boolean batchUpdating;
+	/**
+	 * 导入内容的版本号，重新导入时丢弃之前还未完成的导入
+	 */
+	private int loadGeneration;
+	/**
+	 * 正在按帧添加的块，以及已经添加的数量，导入完成或者取消之后为null
+	 */
+	private List<HyperEditData> pendingBlocks;
+	private int pendingIndex;
+	/**
+	 * 上一次保存状态时写入的文件名，再次保存时删除
+	 */
+	private String contentFile;
+	/**
+	 * 恢复状态时的导入版本号，以及导入完成后需要恢复的焦点和光标
+	 */
+	private int restoreGeneration;
+	/**
+	 * 更换高亮关键词的版本号，再次更换时丢弃之前还未完成的批次
 	 */
-	private ArrayList<String> imagePaths;
+	private int highlightGeneration;
+	private int restoreFocusIndex = -1;
+	private int restoreSelectionStart;
+	private int restoreSelectionEnd;
+	/**
+	 * 按帧分批添加view的渲染队列
+	 */
+	private final HyperRenderQueue renderQueue = new HyperRenderQueue();
+	/**
+	 * 撤销和重做记录
+	 */
+	private final HyperUndoManager undoManager = new HyperUndoManager();
+	/**
+	 * 编辑操作日志，用于自动保存和恢复
+	 */
+	private HyperJournal journal;
+	/**
+	 * 导入或者恢复内容期间不写日志，结束之后写入一次快照
+	 */
+	private boolean journalPaused;
+	private OnHyperLoadListener onHyperLoadListener;
 	/**
 	 * 关键词高亮
 	 */
-	private String keywords;
+	private HyperHighlighter highlighter;
+	/**
+	 * 文章内搜索的索引，开启搜索之后才创建
+	 */
+	private HyperSearchIndex searchIndex;
 	/**
 	 * 插入的图片显示高度
 	 */
@@ -157,7 +230,14 @@ public class HyperTextEditor extends ScrollView {
 	 */
 	private int imageLength = 0;
 	private OnHyperEditListener onHyperListener;
-	private OnHyperChangeListener onHyperChangeListener;
+	/**
+	 * 文本+图片数量变化回调，支持每帧合并回调
+	 */
+	private final HyperChangeDispatcher changeDispatcher = new HyperChangeDispatcher();
+	/**
+	 * 防抖回调，适合自动保存
+	 */
+	private final HyperChangeDispatcher debounceDispatcher = new HyperChangeDispatcher();
 
 	/**
 	 * 保存重要信息
@@ -169,9 +249,40 @@ public class HyperTextEditor extends ScrollView {
 		Parcelable superState = super.onSaveInstanceState();
 		TextEditorState viewState = new TextEditorState(superState);
 		viewState.rtImageHeight = rtImageHeight;
+		saveContentState(viewState);
 		return viewState;
 	}
 
+	/**
+	 * 保存内容、样式、焦点和光标，内容过大时写入缓存文件，只保存文件名
+	 */
+	private void saveContentState(TextEditorState viewState) {
+		try {
+			List<HyperEditData> blocks = document.getBlocks();
+			if (pendingBlocks != null && pendingIndex < pendingBlocks.size()) {
+				//还在导入中，已经添加的块加上还没有添加的块
+				blocks = new ArrayList<>(blocks);
+				blocks.addAll(pendingBlocks.subList(pendingIndex, pendingBlocks.size()));
+			}
+			byte[] data = HyperStateStore.encode(blocks);
+			HyperStateStore.delete(getContext(), contentFile);
+			contentFile = null;
+			if (data.length > HyperStateStore.MAX_PARCEL_SIZE) {
+				contentFile = HyperStateStore.spill(getContext(), data);
+				viewState.contentFile = contentFile;
+			} else {
+				viewState.content = data;
+			}
+			if (lastFocusEdit != null && lastFocusEdit.hasFocus()) {
+				viewState.focusIndex = layout.indexOfChild(lastFocusEdit);
+				viewState.selectionStart = lastFocusEdit.getSelectionStart();
+				viewState.selectionEnd = lastFocusEdit.getSelectionEnd();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * 复现
 	 * @param state								state
@@ -181,17 +292,53 @@ public class HyperTextEditor extends ScrollView {
 		TextEditorState viewState = (TextEditorState) state;
 		rtImageHeight = viewState.rtImageHeight;
 		super.onRestoreInstanceState(viewState.getSuperState());
+		restoreContentState(viewState);
 		requestLayout();
 	}
 
+	/**
+	 * 在子线程读取和解码保存的内容，之后和setContent一样按帧分批添加view
+	 */
+	private void restoreContentState(TextEditorState viewState) {
+		final byte[] content = viewState.content;
+		final String contentFile = viewState.contentFile;
+		if (content == null && contentFile == null) {
+			return;
+		}
+		final int generation = ++loadGeneration;
+		cancelLoad();
+		this.contentFile = contentFile;
+		restoreGeneration = generation;
+		restoreFocusIndex = viewState.focusIndex;
+		restoreSelectionStart = viewState.selectionStart;
+		restoreSelectionEnd = viewState.selectionEnd;
+		final Context context = getContext().getApplicationContext();
+		final HyperHighlighter highlighter = this.highlighter;
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				byte[] data = content != null ? content : HyperStateStore.load(context, contentFile);
+				prepareContent(generation, HyperStateStore.decode(data), highlighter);
+			}
+		});
+	}
+
 	@Override
 	protected void onDetachedFromWindow() {
 		super.onDetachedFromWindow();
+		//还未回调的变化立即回调，避免丢失
+		changeDispatcher.flush();
+		debounceDispatcher.flush();
+		if (journal != null) {
+			journal.flush();
+		}
 		if (mTransition!=null){
 			//移除Layout变化监听
 			mTransition.removeTransitionListener(transitionListener);
 			HyperLogUtils.d("HyperTextEditor----onDetachedFromWindow------移除Layout变化监听");
 		}
+		//离开窗口时释放复用池，旋转屏幕或者context是ContextThemeWrapper时isFinishing不可靠，不能据此判断
+		HyperViewPool.getInstance().clear(getContext());
 	}
 
 	public HyperTextEditor(Context context) {
@@ -204,7 +351,8 @@ public class HyperTextEditor extends ScrollView {
 
 	public HyperTextEditor(Context context, AttributeSet attrs, int defStyleAttr) {
 		super(context, attrs, defStyleAttr);
-		imagePaths = new ArrayList<>();
+		document = new HyperDocument();
+		serializer = new HyperDocumentSerializer(document);
 		inflater = LayoutInflater.from(context);
 		initAttrs(context,attrs);
 		initLayoutView(context);
@@ -283,23 +431,62 @@ public class HyperTextEditor extends ScrollView {
 				}
 			}
 		};
-		textWatcher = new TextWatcher() {
-			@Override
-			public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+	}
 
-			}
+	/**
+	 * EditText的文本变化监听，同步更新绑定的文本块
+	 */
+	private class BlockTextWatcher implements TextWatcher {
 
-			@Override
-			public void onTextChanged(CharSequence s, int start, int before, int count) {
-				addHyperEditorChangeListener();
-				HyperLogUtils.d("HyperTextEditor---onTextChanged--文字--"+contentLength+"--图片-"+imageLength);
-			}
+		private final HyperEditData block;
+		/**
+		 * 即将被替换的文字，用于撤销，只是输入文字时为null
+		 */
+		private SpannableStringBuilder deletedText;
 
-			@Override
-			public void afterTextChanged(Editable s) {
+		BlockTextWatcher(HyperEditData block) {
+			this.block = block;
+		}
+
+		@Override
+		public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+			//只拷贝被替换的范围，单纯输入文字时不需要拷贝
+			deletedText = undoManager.isRecording() && count > 0
+					? copyText(s, start, start + count) : null;
+		}
 
+		@Override
+		public void onTextChanged(CharSequence s, int start, int before, int count) {
+			boolean journaling = isJournaling();
+			boolean recording = undoManager.isRecording();
+			if ((journaling || recording) && (before > 0 || count > 0)) {
+				//文档维护了id到位置的索引，这里不会遍历所有块
+				int index = document.indexOf(block);
+				if (index >= 0 && recording && (before == 0 || deletedText != null)) {
+					TextOperation operation = new TextOperation(index, start, deletedText, s, count);
+					if (!undoManager.push(operation)) {
+						//没有合并到正在输入的操作中，入栈之后才拷贝插入的文字
+						operation.detach();
+					}
+				}
+				if (index >= 0 && journaling) {
+					journalText(index, start, before, s, count);
+				}
 			}
-		};
+			deletedText = null;
+			//setText之后EditText持有的是新的Editable，这里始终指向最新的内容，并按差值更新统计
+			document.updateText(block, s);
+			if (searchIndex != null) {
+				searchIndex.invalidate(block.getId());
+			}
+			addHyperEditorChangeListener();
+			HyperLogUtils.d("HyperTextEditor---onTextChanged--文字--"+contentLength+"--图片-"+imageLength);
+		}
+
+		@Override
+		public void afterTextChanged(Editable s) {
+
+		}
 	}
 
 
@@ -308,7 +495,8 @@ public class HyperTextEditor extends ScrollView {
 				LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
 		int padding = HyperLibUtils.dip2px(context, EDIT_PADDING);
 		EditText firstEdit = createEditText(rtTextInitHint, padding);
-		layout.addView(firstEdit, firstEditParam);
+		layout.addView(firstEdit, 0, firstEditParam);
+		document.add(0, getBlock(firstEdit));
 		lastFocusEdit = firstEdit;
 	}
 
@@ -317,8 +505,9 @@ public class HyperTextEditor extends ScrollView {
 	 * 处理软键盘backSpace回退事件
 	 * @param editText 					光标所在的文本输入框
 	 */
-	@SuppressLint("SetTextI18n")
 	private void onBackspacePress(EditText editText) {
+		//一次操作中的多个变化作为一次撤销
+		undoManager.beginGroup();
 		try {
 			int startSelection = editText.getSelectionStart();
 			// 只有在光标已经顶到文本输入框的最前方，在判定是否删除之前的图片，或两个View合并
@@ -333,19 +522,20 @@ public class HyperTextEditor extends ScrollView {
 						onImageCloseClick(preView);
 					} else if (preView instanceof EditText) {
 						// 光标EditText的上一个view对应的还是文本框EditText，删除文字操作
-						String str1 = editText.getText().toString();
+						Editable text = editText.getText();
 						EditText preEdit = (EditText) preView;
-						String str2 = preEdit.getText().toString();
+						Editable preText = preEdit.getText();
+						int preLength = preText.length();
+						// 文本合并操作，直接追加到上一个文本块末尾，保留样式
+						SpanTextHelper.getInstance().append(preText, text, 0, text.length());
 						// 合并文本view时，不需要transition动画
 						layout.setLayoutTransition(null);
 						//移除editText文本控件
-						layout.removeView(editText);
+						removeBlockView(editText);
 						// 恢复transition动画
 						layout.setLayoutTransition(mTransition);
-						// 文本合并操作
-						preEdit.setText(str2 + str1);
 						preEdit.requestFocus();
-						preEdit.setSelection(str2.length(), str2.length());
+						preEdit.setSelection(preLength, preLength);
 						lastFocusEdit = preEdit;
 					}
 				} else {
@@ -354,6 +544,8 @@ public class HyperTextEditor extends ScrollView {
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			undoManager.endGroup();
 		}
 	}
 
@@ -363,29 +555,32 @@ public class HyperTextEditor extends ScrollView {
 	 * @param view 							整个image对应的relativeLayout view
 	 */
 	private void onImageCloseClick(View view) {
+		//一次操作中的多个变化作为一次撤销
+		undoManager.beginGroup();
 		try {
 			//判断过渡动画是否结束，只能等到结束才可以操作
 			if (!mTransition.isRunning()) {
 				disappearingImageIndex = layout.indexOfChild(view);
-				//删除文件夹里的图片
-				List<HyperEditData> dataList = buildEditData();
-				HyperEditData editData = dataList.get(disappearingImageIndex);
-				if (editData.getImagePath() != null){
-					if (onHyperListener != null){
+				//直接读取view绑定的图片块，不需要重新生成整个文档
+				HyperEditData editData = getBlock(view);
+				//然后移除当前view，文档会同步减少图片的引用计数
+				removeBlockView(view);
+				if (editData != null && editData.getImagePath() != null){
+					//同一张图片插入了多次时，只有最后一张被删除才回调
+					if (!document.getImageRegistry().contains(editData.getImagePath())
+							&& onHyperListener != null){
 						onHyperListener.onRtImageDelete(editData.getImagePath());
 					}
 					//SDCardUtil.deleteFile(editData.imagePath);
-					//从图片集合中移除图片链接
-					imagePaths.remove(editData.getImagePath());
-                    addHyperEditorChangeListener();
 				}
-				//然后移除当前view
-				layout.removeView(view);
 				//合并上下EditText内容
 				mergeEditText();
+				addHyperEditorChangeListener();
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			undoManager.endGroup();
 		}
 	}
 
@@ -394,12 +589,15 @@ public class HyperTextEditor extends ScrollView {
 	 * 分别在图片插入，图片删除，以及文本变化时添加监听事件
 	 */
 	private void addHyperEditorChangeListener() {
+		if (batchUpdating) {
+			//批量操作结束之后统一回调一次
+			return;
+		}
 		getContentAndImageCount();
 		int contentLength = getContentLength();
 		int imageLength = getImageLength();
-		if (onHyperChangeListener!=null){
-			onHyperChangeListener.onImageClick(contentLength,imageLength);
-		}
+		changeDispatcher.dispatch(contentLength, imageLength);
+		debounceDispatcher.dispatch(contentLength, imageLength);
 	}
 
 	/**
@@ -407,8 +605,109 @@ public class HyperTextEditor extends ScrollView {
 	 */
 	public void clearAllLayout(){
 		if (layout!=null){
+			int count = layout.getChildCount();
+			View[] children = new View[count];
+			for (int i = 0; i < count; i++) {
+				children[i] = layout.getChildAt(i);
+			}
+			//移除时不需要动画，移除之后的view可以直接回收复用
+			LayoutTransition transition = layout.getLayoutTransition();
+			layout.setLayoutTransition(null);
 			layout.removeAllViews();
+			layout.setLayoutTransition(transition);
+			for (View child : children) {
+				releaseBlockView(child);
+			}
+		}
+		document.clear();
+		undoManager.clear();
+		if (searchIndex != null) {
+			searchIndex.clear();
+		}
+		if (isJournaling()) {
+			journal.clear();
+		}
+	}
+
+	/**
+	 * 获取富文本文档模型，统计、查找等只读操作可以直接使用，不需要遍历view
+	 */
+	public HyperDocument getDocument() {
+		return document;
+	}
+
+	/**
+	 * 获取文档中所有不重复的图片地址
+	 */
+	public List<String> getImagePaths() {
+		return document.getImageRegistry().getImagePaths();
+	}
+
+	/**
+	 * 获取view绑定的块
+	 * @param view								文本或者图片view
+	 * @return									块
+	 */
+	private HyperEditData getBlock(View view) {
+		Object tag = view.getTag();
+		return tag instanceof HyperEditData ? (HyperEditData) tag : null;
+	}
+
+	/**
+	 * 在特定位置添加view，同时把绑定的块加入文档
+	 */
+	private void addBlockView(int index, View view) {
+		layout.addView(view, index);
+		HyperEditData block = getBlock(view);
+		if (block != null) {
+			document.add(index, block);
+			if (searchIndex != null && block.getType() == HyperEditData.TYPE_TEXT) {
+				searchIndex.invalidate(block.getId());
+			}
+			if (undoManager.isRecording()) {
+				undoManager.push(new BlockOperation(true, index, view));
+			}
+			if (isJournaling()) {
+				journalBlock(index, view);
+			}
+		}
+	}
+
+	/**
+	 * 移除view，同时把绑定的块从文档中移除
+	 */
+	private void removeBlockView(View view) {
+		int index = layout.indexOfChild(view);
+		if (index < 0) {
+			return;
+		}
+		if (undoManager.isRecording() && getBlock(view) != null) {
+			//移除之前记录内容，回收之后文字会被清空
+			undoManager.push(new BlockOperation(false, index, view));
+		}
+		if (isJournaling() && getBlock(view) != null) {
+			journal.removeBlock(index);
+		}
+		if (searchIndex != null && getBlock(view) != null) {
+			searchIndex.remove(getBlock(view).getId());
+		}
+		layout.removeView(view);
+		document.remove(index);
+		if (layout.getLayoutTransition() == null) {
+			//有动画时view还在执行消失动画，不能回收
+			releaseBlockView(view);
+		}
+	}
+
+	/**
+	 * 把已经移除的view放回复用池
+	 */
+	private void releaseBlockView(View view) {
+		Object watcher = view.getTag(R.id.hyper_block_watcher);
+		if (view instanceof EditText && watcher instanceof TextWatcher) {
+			((EditText) view).removeTextChangedListener((TextWatcher) watcher);
 		}
+		HyperViewPool.getInstance().release(view);
 	}
 
 	/**
@@ -429,7 +728,10 @@ public class HyperTextEditor extends ScrollView {
 	 * @return
 	 */
 	public EditText createEditText(String hint, int paddingTop) {
-		EditText editText = new DeletableEditText(getContext());
+		EditText editText = HyperViewPool.getInstance().acquireEditText(getContext());
+		if (editText == null) {
+			editText = new DeletableEditText(getContext());
+		}
 		LayoutParams layoutParams = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
 		editText.setLayoutParams(layoutParams);
 		editText.setTextSize(16);
@@ -438,8 +740,13 @@ public class HyperTextEditor extends ScrollView {
 		editText.setBackground(null);
 		editText.setOnKeyListener(keyListener);
 		editText.setOnFocusChangeListener(focusListener);
-		editText.addTextChangedListener(textWatcher);
-		editText.setTag(viewTagIndex++);
+		//子线程准备好的Editable直接使用，setText时不再拷贝
+		editText.setEditableFactory(HyperEditableFactory.getInstance());
+		HyperEditData block = document.createTextBlock(editText.getText());
+		BlockTextWatcher watcher = new BlockTextWatcher(block);
+		editText.addTextChangedListener(watcher);
+		editText.setTag(R.id.hyper_block_watcher, watcher);
+		editText.setTag(block);
 		editText.setPadding(editNormalPadding, paddingTop, editNormalPadding, paddingTop);
 		editText.setHint(hint);
 		editText.setTextSize(TypedValue.COMPLEX_UNIT_PX, rtTextSize);
@@ -452,8 +759,11 @@ public class HyperTextEditor extends ScrollView {
 	 * 生成图片View
 	 */
 	private RelativeLayout createImageLayout() {
-		RelativeLayout layout = (RelativeLayout) inflater.inflate(R.layout.edit_imageview, null);
-		layout.setTag(viewTagIndex++);
+		RelativeLayout layout = HyperViewPool.getInstance().acquireImageLayout(getContext());
+		if (layout == null) {
+			layout = (RelativeLayout) inflater.inflate(R.layout.edit_imageview, null);
+		}
+		layout.setTag(document.createImageBlock(null));
 		View closeView = layout.findViewById(R.id.image_close);
 		closeView.setTag(layout.getTag());
 		closeView.setOnClickListener(btnListener);
@@ -471,36 +781,39 @@ public class HyperTextEditor extends ScrollView {
 		if (TextUtils.isEmpty(imagePath)){
 			return;
 		}
+		//一次操作中的多个变化作为一次撤销
+		undoManager.beginGroup();
 		try {
 			//lastFocusEdit获取焦点的EditText
-			String lastEditStr = lastFocusEdit.getText().toString();
+			Editable lastEditText = lastFocusEdit.getText();
+			int length = lastEditText.length();
 			//获取光标所在位置
 			int cursorIndex = lastFocusEdit.getSelectionStart();
-			//获取光标前面的字符串
-			String editStr1 = lastEditStr.substring(0, cursorIndex).trim();
-			//获取光标后的字符串
-			String editStr2 = lastEditStr.substring(cursorIndex).trim();
+			//光标前面去掉首尾空白后是否为空
+			boolean headEmpty = HyperLibUtils.getTrimStart(lastEditText, 0, cursorIndex) == cursorIndex;
+			//光标后面去掉首尾空白后是否为空
+			boolean tailEmpty = HyperLibUtils.getTrimStart(lastEditText, cursorIndex, length) == length;
 			//获取焦点的EditText所在位置
 			int lastEditIndex = layout.indexOfChild(lastFocusEdit);
-			if (lastEditStr.length() == 0) {
+			if (length == 0) {
 				//如果当前获取焦点的EditText为空，直接在EditText下方插入图片，并且插入空的EditText
 				addEditTextAtIndex(lastEditIndex + 1, "");
 				addImageViewAtIndex(lastEditIndex + 1, imagePath);
-			} else if (editStr1.length() == 0) {
+			} else if (headEmpty) {
 				//如果光标已经顶在了editText的最前面，则直接插入图片，并且EditText下移即可
 				addImageViewAtIndex(lastEditIndex, imagePath);
 				//同时插入一个空的EditText，防止插入多张图片无法写文字
 				addEditTextAtIndex(lastEditIndex + 1, "");
-			} else if (editStr2.length() == 0) {
+			} else if (tailEmpty) {
 				// 如果光标已经顶在了editText的最末端，则需要添加新的imageView和EditText
 				addEditTextAtIndex(lastEditIndex + 1, "");
 				addImageViewAtIndex(lastEditIndex + 1, imagePath);
 			} else {
 				//如果光标已经顶在了editText的最中间，则需要分割字符串，分割成两个EditText，并在两个EditText中间插入图片
-				//把光标前面的字符串保留，设置给当前获得焦点的EditText（此为分割出来的第一个EditText）
-				lastFocusEdit.setText(editStr1);
-				//把光标后面的字符串放在新创建的EditText中（此为分割出来的第二个EditText）
-				addEditTextAtIndex(lastEditIndex + 1, editStr2);
+				//光标前面的文字原地保留在当前获得焦点的EditText中（此为分割出来的第一个EditText），样式不丢失
+				Editable tail = SpanTextHelper.getInstance().split(lastEditText, cursorIndex);
+				//把光标后面的文字连同样式放在新创建的EditText中（此为分割出来的第二个EditText）
+				addEditTextAtIndex(lastEditIndex + 1, tail);
 				//在第二个EditText的位置插入一个空的EditText，以便连续插入多张图片时，有空间写文字，第二个EditText下移
 				addEditTextAtIndex(lastEditIndex + 1, "");
 				//在空的EditText的位置插入图片布局，空的EditText下移
@@ -512,215 +825,720 @@ public class HyperTextEditor extends ScrollView {
 			addHyperEditorChangeListener();
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			undoManager.endGroup();
 		}
 	}
 
 	/**
-	 * 隐藏小键盘
+	 * 一次插入多张图片，效果和依次调用insertImage一致
+	 * 最终的块布局只计算一次，添加view时暂停transition动画，最后只回调一次数量变化
+	 * @param imagePaths						图片路径地址集合
 	 */
-	public void hideKeyBoard() {
-		InputMethodManager imm = (InputMethodManager)
-				getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
-		if (imm != null && lastFocusEdit != null) {
-			imm.hideSoftInputFromWindow(lastFocusEdit.getWindowToken(), 0);
+	public void insertImages(List<String> imagePaths) {
+		//先过滤路径，全部无效时直接返回，不能先拆分光标后面的文字
+		List<String> validPaths = HyperLibUtils.getValidImagePaths(imagePaths);
+		if (validPaths.isEmpty()) {
+			return;
 		}
-	}
-
-	public void setKeywords(String keywords) {
-		this.keywords = keywords;
-	}
-
-	/**
-	 * 在特定位置插入EditText
-	 * @param index							位置
-	 * @param editStr						EditText显示的文字
-	 */
-	public void addEditTextAtIndex(final int index, CharSequence editStr) {
+		batchUpdating = true;
+		undoManager.beginGroup();
 		try {
-			EditText editText = createEditText("插入文字", EDIT_PADDING);
-			if (!TextUtils.isEmpty(keywords)) {
-				//搜索关键词高亮
-				SpannableStringBuilder textStr = HyperLibUtils.highlight(
-						editStr.toString(), keywords  , Color.parseColor("#EE5C42"));
-				editText.setText(textStr);
-			} else if (!TextUtils.isEmpty(editStr)) {
-				//判断插入的字符串是否为空，如果没有内容则显示hint提示信息
-				editText.setText(editStr);
+			Editable lastEditText = lastFocusEdit.getText();
+			int length = lastEditText.length();
+			int cursorIndex = lastFocusEdit.getSelectionStart();
+			boolean headEmpty = HyperLibUtils.getTrimStart(lastEditText, 0, cursorIndex) == cursorIndex;
+			boolean tailEmpty = HyperLibUtils.getTrimStart(lastEditText, cursorIndex, length) == length;
+			int lastEditIndex = layout.indexOfChild(lastFocusEdit);
+			//图片插入的起始位置，以及插入的图片之后需要跟随的文字
+			int insertIndex = lastEditIndex + 1;
+			Editable tailStr = null;
+			if (length != 0 && headEmpty) {
+				//光标在最前面，图片插在当前EditText之前
+				insertIndex = lastEditIndex;
+			} else if (length != 0 && !tailEmpty) {
+				//光标在中间，光标后面的文字连同样式放到最后一张图片之后
+				tailStr = SpanTextHelper.getInstance().split(lastEditText, cursorIndex);
 			}
-
-			// 请注意此处，EditText添加、或删除不触动Transition动画
+			//每张图片后面跟一个空的EditText，方便在图片之间写文字
+			EditText focusEdit = null;
 			layout.setLayoutTransition(null);
-			layout.addView(editText, index);
-			// remove之后恢复transition动画
+			for (String imagePath : validPaths) {
+				addBlockView(insertIndex++, createImageBlockView(imagePath));
+				focusEdit = createBlockEditText("");
+				addBlockView(insertIndex++, focusEdit);
+			}
+			if (tailStr != null) {
+				addBlockView(insertIndex, createBlockEditText(tailStr));
+			}
 			layout.setLayoutTransition(mTransition);
-			//插入新的EditText之后，修改lastFocusEdit的指向
-			lastFocusEdit = editText;
-			//获取焦点
+			lastFocusEdit = focusEdit;
 			lastFocusEdit.requestFocus();
-			//将光标移至文字指定索引处
-			lastFocusEdit.setSelection(editStr.length(), editStr.length());
+			//隐藏小键盘
+			hideKeyBoard();
 		} catch (Exception e) {
 			e.printStackTrace();
+			layout.setLayoutTransition(mTransition);
+		} finally {
+			batchUpdating = false;
+			undoManager.endGroup();
 		}
+		//监听富文本：文字+图片数量变化
+		addHyperEditorChangeListener();
 	}
 
 	/**
-	 * 在特定位置添加ImageView
+	 * 隐藏小键盘
 	 */
-	public void addImageViewAtIndex(final int index, final String imagePath) {
-		if (TextUtils.isEmpty(imagePath)){
-			return;
-		}
-		try {
-			imagePaths.add(imagePath);
-			final RelativeLayout imageLayout = createImageLayout();
-			HyperImageView imageView = imageLayout.findViewById(R.id.edit_imageView);
-			imageView.setAbsolutePath(imagePath);
-			HyperManager.getInstance().loadImage(imagePath, imageView, rtImageHeight);
-			layout.addView(imageLayout, index);
-		} catch (Exception e) {
-			e.printStackTrace();
+	public void hideKeyBoard() {
+		InputMethodManager imm = (InputMethodManager)
+				getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+		if (imm != null && lastFocusEdit != null) {
+			imm.hideSoftInputFromWindow(lastFocusEdit.getWindowToken(), 0);
 		}
 	}
 
 	/**
-	 * 初始化transition动画
+	 * 设置单个高亮关键词，按字面匹配
+	 * @param keywords							关键词，为空时不高亮
 	 */
-	private void setUpLayoutTransitions() {
-		mTransition = new LayoutTransition();
-		//添加Layout变化监听
-		mTransition.addTransitionListener(transitionListener);
-		//若向ViewGroup中添加一个ImageView，ImageView对象可以设置动画(即APPEARING 动画形式)，
-		//ViewGroup中的其它ImageView对象此时移动到新的位置的过程中也可以设置相关的动画(即CHANGE_APPEARING 动画形式)。
-		mTransition.enableTransitionType(LayoutTransition.APPEARING);
-		//设置整个Layout变换动画时间
-		mTransition.setDuration(300);
-		layout.setLayoutTransition(mTransition);
+	public void setKeywords(String keywords) {
+		this.highlighter = HyperHighlighter.compile(keywords);
 	}
 
-	private LayoutTransition.TransitionListener transitionListener =
-			new LayoutTransition.TransitionListener() {
-
-		/**
-		 * LayoutTransition某一类型动画开始
-		 * @param transition				transition
-		 * @param container					container容器
-		 * @param view						view控件
-		 * @param transitionType			类型
-		 */
-		@Override
-		public void startTransition(LayoutTransition transition, ViewGroup container,
-									View view, int transitionType) {
-
-		}
+	/**
+	 * 设置多关键词高亮器，每次搜索构建一次，所有文本块共用
+	 * @param highlighter						高亮器，为null时不高亮
+	 */
+	public void setHighlighter(HyperHighlighter highlighter) {
+		this.highlighter = highlighter;
+	}
 
-		/**
-		 * LayoutTransition某一类型动画结束
-		 * @param transition				transition
-		 * @param container					container容器
-		 * @param view						view控件
-		 * @param transitionType			类型
-		 */
-		@Override
-		public void endTransition(LayoutTransition transition,
-								  ViewGroup container, View view, int transitionType) {
-			if (!transition.isRunning() && transitionType == LayoutTransition.CHANGE_DISAPPEARING) {
-				// transition动画结束，合并EditText
-				mergeEditText();
-			}
-		}
-	};
+	/**
+	 * 更换高亮关键词，直接替换已有文本块上的高亮，不需要重新导入内容
+	 * @param keywords							关键词，为空时清除高亮
+	 */
+	public void updateKeywords(String keywords) {
+		updateKeywords(HyperHighlighter.compile(keywords));
+	}
 
 	/**
-	 * 图片删除的时候，如果上下方都是EditText，则合并处理
+	 * 更换高亮器，可见的文本块立即替换，其余文本块在子线程分批匹配，再回到主线程设置
+	 * 连续调用时丢弃之前还未完成的批次，适合边输入边搜索
+	 * @param highlighter						高亮器，为null时清除高亮
 	 */
-	private void mergeEditText() {
-		try {
-			View preView = layout.getChildAt(disappearingImageIndex - 1);
-			View nextView = layout.getChildAt(disappearingImageIndex);
-			if (preView instanceof EditText && nextView instanceof EditText) {
-				EditText preEdit = (EditText) preView;
-				EditText nextEdit = (EditText) nextView;
-				String str1 = preEdit.getText().toString();
-				String str2 = nextEdit.getText().toString();
-				String mergeText = "";
-				if (str2.length() > 0) {
-					mergeText = str1 + "\n" + str2;
-				} else {
-					mergeText = str1;
+	public void updateKeywords(final HyperHighlighter highlighter) {
+		this.highlighter = highlighter;
+		final int generation = ++highlightGeneration;
+		int top = getScrollY();
+		int bottom = top + getHeight();
+		List<EditText> views = new ArrayList<>();
+		for (int i = 0; i < layout.getChildCount(); i++) {
+			View child = layout.getChildAt(i);
+			if (!(child instanceof EditText)) {
+				continue;
+			}
+			EditText editText = (EditText) child;
+			boolean visible = child.getBottom() >= top && child.getTop() <= bottom;
+			if (highlighter == null || visible) {
+				swapHighlight(editText.getText(), highlighter, null);
+			} else {
+				views.add(editText);
+			}
+		}
+		for (int start = 0; start < views.size(); start += HIGHLIGHT_BATCH_SIZE) {
+			int end = Math.min(start + HIGHLIGHT_BATCH_SIZE, views.size());
+			final EditText[] batch = views.subList(start, end).toArray(new EditText[0]);
+			final HyperEditData[] blocks = new HyperEditData[batch.length];
+			final int[] versions = new int[batch.length];
+			final String[] texts = new String[batch.length];
+			for (int i = 0; i < batch.length; i++) {
+				blocks[i] = getBlock(batch[i]);
+				versions[i] = blocks[i].getVersion();
+				texts[i] = batch[i].getText().toString();
+			}
+			HyperThreadManager.getInstance().execute(new Runnable() {
+				@Override
+				public void run() {
+					if (generation != highlightGeneration) {
+						return;
+					}
+					final int[][] results = new int[texts.length][];
+					for (int i = 0; i < texts.length; i++) {
+						results[i] = highlighter.find(texts[i]);
+					}
+					HyperThreadManager.getInstance().post(new Runnable() {
+						@Override
+						public void run() {
+							if (generation == highlightGeneration) {
+								applyHighlightBatch(highlighter, batch, blocks, versions, results);
+							}
+						}
+					});
 				}
+			});
+		}
+	}
 
-				layout.setLayoutTransition(null);
-				layout.removeView(nextEdit);
-				preEdit.setText(mergeText);
-				preEdit.requestFocus();
-				preEdit.setSelection(str1.length(), str1.length());
-				//设置动画
-				layout.setLayoutTransition(mTransition);
+	private void applyHighlightBatch(HyperHighlighter highlighter, EditText[] batch,
+									 HyperEditData[] blocks, int[] versions, int[][] results) {
+		for (int i = 0; i < batch.length; i++) {
+			//已经移除或者回收复用的view不再处理
+			if (batch[i].getParent() != layout || getBlock(batch[i]) != blocks[i]) {
+				continue;
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+			//匹配期间文字被修改过，按当前文字重新匹配
+			int[] ranges = blocks[i].getVersion() == versions[i] ? results[i] : null;
+			swapHighlight(batch[i].getText(), highlighter, ranges);
 		}
 	}
 
 	/**
-	 * 对外提供的接口, 生成编辑数据上传
+	 * 移除原有的高亮，再设置新的高亮
+	 * @param ranges							已经匹配好的区间，为null时在这里匹配
 	 */
-	public List<HyperEditData> buildEditData() {
-		List<HyperEditData> dataList = new ArrayList<>();
-		try {
-			int num = layout.getChildCount();
-			for (int index = 0; index < num; index++) {
-				View itemView = layout.getChildAt(index);
-				HyperEditData hyperEditData = new HyperEditData();
-				if (itemView instanceof EditText) {
-				    //文本
-					EditText item = (EditText) itemView;
-					hyperEditData.setInputStr(item.getText().toString());
-					hyperEditData.setType(1);
-				} else if (itemView instanceof RelativeLayout) {
-				    //图片
-					HyperImageView item = itemView.findViewById(R.id.edit_imageView);
-					hyperEditData.setImagePath(item.getAbsolutePath());
-                    hyperEditData.setType(2);
-				}
-				dataList.add(hyperEditData);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+	private void swapHighlight(Editable editable, HyperHighlighter highlighter, int[] ranges) {
+		HyperHighlighter.clear(editable);
+		if (highlighter != null) {
+			highlighter.apply(editable, ranges != null ? ranges : highlighter.find(editable));
 		}
-		HyperLogUtils.d("HyperTextEditor----buildEditData------dataList---"+dataList.size());
-		return dataList;
 	}
 
 	/**
-	 * 用于统计文本文字的数量和图片的数量
+	 * 开启或者关闭文章内搜索，开启时为所有文本块建立索引，之后的修改在子线程增量更新
+	 * @param enabled							是否开启
 	 */
-	public void getContentAndImageCount() {
-		contentLength = 0;
-		imageLength = 0;
-		if (layout==null){
+	public void setSearchEnabled(boolean enabled) {
+		if (!enabled) {
+			if (searchIndex != null) {
+				searchIndex.clear();
+				searchIndex = null;
+			}
+			return;
+		}
+		if (searchIndex != null) {
+			return;
+		}
+		searchIndex = new HyperSearchIndex(new HyperSearchIndex.TextProvider() {
+			@Override
+			public CharSequence getText(int slot) {
+				HyperEditData block = document.findById(slot);
+				if (block == null || block.getType() != HyperEditData.TYPE_TEXT) {
+					return null;
+				}
+				return block.getContent();
+			}
+		}, true);
+		for (HyperEditData block : document.getBlocks()) {
+			if (block.getType() == HyperEditData.TYPE_TEXT) {
+				searchIndex.invalidate(block.getId());
+			}
+		}
+	}
+
+	/**
+	 * 查找关键词出现的所有位置，忽略大小写，按文章顺序排列
+	 * 开启搜索时只在索引给出的候选块中逐字比较，否则扫描所有文本块
+	 * @param query								关键词
+	 * @return									匹配结果集合
+	 */
+	public List<HyperMatch> find(String query) {
+		List<HyperMatch> matches = new ArrayList<>();
+		if (TextUtils.isEmpty(query)) {
+			return matches;
+		}
+		BitSet candidates = searchIndex != null ? searchIndex.candidates(query) : null;
+		if (candidates != null && candidates.isEmpty()) {
+			return matches;
+		}
+		List<HyperEditData> blocks = document.getBlocks();
+		for (int i = 0; i < blocks.size(); i++) {
+			HyperEditData block = blocks.get(i);
+			if (block.getType() != HyperEditData.TYPE_TEXT) {
+				continue;
+			}
+			if (candidates == null || candidates.get(block.getId())) {
+				HyperSearchIndex.findAll(i, block.getContent(), query, true, matches);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * 滚动到匹配的位置，并选中匹配的文字
+	 * @param match								find返回的匹配结果
+	 */
+	public void scrollToMatch(HyperMatch match) {
+		if (match == null || match.getBlockIndex() >= layout.getChildCount()) {
+			return;
+		}
+		View child = layout.getChildAt(match.getBlockIndex());
+		if (!(child instanceof EditText)) {
+			return;
+		}
+		EditText editText = (EditText) child;
+		int length = editText.getText().length();
+		if (match.getEnd() > length) {
+			return;
+		}
+		int y = layout.getTop() + child.getTop();
+		Layout textLayout = editText.getLayout();
+		if (textLayout != null) {
+			int line = textLayout.getLineForOffset(match.getStart());
+			y += editText.getTotalPaddingTop() + textLayout.getLineTop(line);
+		}
+		//匹配的行放在屏幕上方三分之一处
+		smoothScrollTo(0, Math.max(0, y - getHeight() / 3));
+		editText.requestFocus();
+		editText.setSelection(match.getStart(), match.getEnd());
+	}
+
+	public void setOnHyperLoadListener(OnHyperLoadListener onHyperLoadListener) {
+		this.onHyperLoadListener = onHyperLoadListener;
+	}
+
+	/**
+	 * 导入html内容，用于重新编辑草稿
+	 * 解析和文字准备在子线程，view在主线程按帧分批添加，导入完成后回调OnHyperLoadListener
+	 * @param html								html内容
+	 */
+	public void setHtml(final String html) {
+		final int generation = ++loadGeneration;
+		final HyperHighlighter highlighter = this.highlighter;
+		cancelLoad();
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				List<HyperEditData> dataList = HyperHtmlUtils.htmlToEditData(html);
+				prepareContent(generation, dataList, highlighter);
+			}
+		});
+	}
+
+	/**
+	 * 导入json格式的草稿，格式和writeJson一致
+	 * 流式读取和文字准备在子线程，view在主线程按帧分批添加，导入完成后回调OnHyperLoadListener
+	 * @param reader							json输入，读取完成之后关闭
+	 */
+	public void setJson(final Reader reader) {
+		final int generation = ++loadGeneration;
+		final HyperHighlighter highlighter = this.highlighter;
+		cancelLoad();
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				List<HyperEditData> dataList;
+				try {
+					dataList = HyperJsonCodec.read(reader);
+				} catch (IOException e) {
+					e.printStackTrace();
+					postLoadFailed(generation, e);
+					return;
+				} finally {
+					try {
+						reader.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+				prepareContent(generation, dataList, highlighter);
+			}
+		});
+	}
+
+	/**
+	 * 导入失败时在主线程回调OnHyperLoadListener，已经被新的导入替换时不回调
+	 */
+	private void postLoadFailed(final int generation, final Exception e) {
+		HyperThreadManager.getInstance().post(new Runnable() {
+			@Override
+			public void run() {
+				if (generation == loadGeneration && onHyperLoadListener != null) {
+					onHyperLoadListener.onLoadFailed(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 导入富文本数据，用于重新编辑草稿
+	 * 文字准备在子线程，view在主线程按帧分批添加，导入完成后回调OnHyperLoadListener
+	 * @param dataList							富文本数据集合
+	 */
+	public void setContent(List<HyperEditData> dataList) {
+		final int generation = ++loadGeneration;
+		final HyperHighlighter highlighter = this.highlighter;
+		final List<HyperEditData> list = dataList == null
+				? new ArrayList<HyperEditData>() : new ArrayList<>(dataList);
+		cancelLoad();
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				prepareContent(generation, list, highlighter);
+			}
+		});
+	}
+
+	/**
+	 * 丢弃还未添加完成的导入任务，恢复布局动画和数量回调
+	 */
+	private void cancelLoad() {
+		pendingBlocks = null;
+		if (!renderQueue.isEmpty()) {
+			renderQueue.clear();
+			layout.setLayoutTransition(mTransition);
+			batchUpdating = false;
+			undoManager.setEnabled(true);
+			journalPaused = false;
+		}
+	}
+
+	/**
+	 * 子线程中准备每个文本块要显示的Editable，主线程setText时直接使用
+	 */
+	private void prepareContent(final int generation, List<HyperEditData> dataList, HyperHighlighter highlighter) {
+		final List<HyperEditData> blocks = new ArrayList<>(dataList.size());
+		for (HyperEditData data : dataList) {
+			if (data == null) {
+				continue;
+			}
+			HyperEditData block = new HyperEditData();
+			block.setType(data.getType());
+			if (data.getType() == HyperEditData.TYPE_IMAGE) {
+				if (TextUtils.isEmpty(data.getImagePath())) {
+					continue;
+				}
+				block.setImagePath(data.getImagePath());
+			} else {
+				CharSequence text = data.getContent() != null ? data.getContent() : data.getInputStr();
+				if (text == null) {
+					text = "";
+				}
+				if (highlighter != null) {
+					//搜索关键词高亮，保留原有样式
+					block.setContent(highlighter.highlight(text));
+				} else {
+					block.setContent(new SpannableStringBuilder(text));
+				}
+			}
+			blocks.add(block);
+		}
+		HyperThreadManager.getInstance().post(new Runnable() {
+			@Override
+			public void run() {
+				attachContent(generation, blocks);
+			}
+		});
+	}
+
+	/**
+	 * 主线程中清空原有内容，按帧分批添加view，每帧只做时间预算内的工作
+	 */
+	private void attachContent(final int generation, List<HyperEditData> blocks) {
+		if (generation != loadGeneration) {
+			return;
+		}
+		clearAllLayout();
+		batchUpdating = true;
+		//导入的内容不需要撤销，也不需要逐条写日志
+		undoManager.setEnabled(false);
+		journalPaused = true;
+		layout.setLayoutTransition(null);
+		//保存状态时还没有添加的块从这里读取
+		pendingBlocks = blocks;
+		pendingIndex = 0;
+		for (final HyperEditData block : blocks) {
+			renderQueue.add(new Runnable() {
+				@Override
+				public void run() {
+					if (generation == loadGeneration) {
+						appendBlockView(block);
+						pendingIndex++;
+					}
+				}
+			});
+		}
+		renderQueue.add(new Runnable() {
+			@Override
+			public void run() {
+				if (generation == loadGeneration) {
+					finishAttachContent();
+				}
+			}
+		});
+	}
+
+	/**
+	 * 在末尾添加块对应的view，不获取焦点也不设置光标
+	 */
+	private void appendBlockView(HyperEditData data) {
+		View view;
+		if (data.getType() == HyperEditData.TYPE_IMAGE) {
+			view = createImageBlockView(data.getImagePath());
+		} else {
+			String hint = layout.getChildCount() == 0 ? rtTextInitHint : "插入文字";
+			EditText editText = createEditText(hint, EDIT_PADDING);
+			editText.setText(data.getContent());
+			if (lastFocusEdit == null || lastFocusEdit.getParent() == null) {
+				lastFocusEdit = editText;
+			}
+			view = editText;
+		}
+		addBlockView(layout.getChildCount(), view);
+	}
+
+	private void finishAttachContent() {
+		pendingBlocks = null;
+		//保证末尾是文本块，方便继续输入
+		int count = layout.getChildCount();
+		View lastView = count > 0 ? layout.getChildAt(count - 1) : null;
+		if (!(lastView instanceof EditText)) {
+			EditText editText = createEditText(count == 0 ? rtTextInitHint : "插入文字", EDIT_PADDING);
+			addBlockView(count, editText);
+			lastView = editText;
+		}
+		lastFocusEdit = (EditText) lastView;
+		if (restoreGeneration == loadGeneration && restoreFocusIndex >= 0) {
+			restoreFocus();
+		}
+		layout.setLayoutTransition(mTransition);
+		batchUpdating = false;
+		undoManager.setEnabled(true);
+		undoManager.clear();
+		journalPaused = false;
+		if (journal != null) {
+			//导入的内容整体写入一次快照
+			journal.compact();
+		}
+		addHyperEditorChangeListener();
+		if (onHyperLoadListener != null) {
+			onHyperLoadListener.onLoadFinished(document.size());
+		}
+	}
+
+	private void restoreFocus() {
+		View view = layout.getChildAt(restoreFocusIndex);
+		restoreFocusIndex = -1;
+		if (view instanceof EditText) {
+			EditText editText = (EditText) view;
+			int length = editText.length();
+			lastFocusEdit = editText;
+			editText.requestFocus();
+			editText.setSelection(Math.min(Math.max(restoreSelectionStart, 0), length),
+					Math.min(Math.max(restoreSelectionEnd, 0), length));
+		}
+	}
+
+	/**
+	 * 在特定位置插入EditText
+	 * @param index							位置
+	 * @param editStr						EditText显示的文字
+	 */
+	public void addEditTextAtIndex(final int index, CharSequence editStr) {
+		try {
+			EditText editText = createBlockEditText(editStr);
+			// 请注意此处，EditText添加、或删除不触动Transition动画
+			layout.setLayoutTransition(null);
+			addBlockView(index, editText);
+			// remove之后恢复transition动画
+			layout.setLayoutTransition(mTransition);
+			//插入新的EditText之后，修改lastFocusEdit的指向
+			lastFocusEdit = editText;
+			//获取焦点
+			lastFocusEdit.requestFocus();
+			//将光标移至文字指定索引处
+			lastFocusEdit.setSelection(editStr.length(), editStr.length());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 在特定位置添加ImageView
+	 */
+	public void addImageViewAtIndex(final int index, final String imagePath) {
+		if (TextUtils.isEmpty(imagePath)){
 			return;
 		}
 		try {
-			int num = layout.getChildCount();
-			for (int index = 0; index < num; index++) {
-				View itemView = layout.getChildAt(index);
-				if (itemView instanceof EditText) {
-					//文本
-					EditText item = (EditText) itemView;
-					String string = item.getText().toString().trim();
-					int length = string.length();
-					contentLength = contentLength + length;
-				} else if (itemView instanceof RelativeLayout) {
-					//图片
-					imageLength++;
+			final RelativeLayout imageLayout = createImageBlockView(imagePath);
+			addBlockView(index, imageLayout);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 生成文本块的EditText，设置好文字
+	 * @param editStr						EditText显示的文字
+	 * @return								EditText
+	 */
+	private EditText createBlockEditText(CharSequence editStr) {
+		EditText editText = createEditText("插入文字", EDIT_PADDING);
+		if (editStr instanceof Spanned) {
+			//已经带样式的文字，比如拆分出来的文本块，直接使用
+			editText.setText(editStr);
+		} else if (highlighter != null && !TextUtils.isEmpty(editStr)) {
+			//搜索关键词高亮
+			editText.setText(highlighter.highlight(editStr));
+		} else if (!TextUtils.isEmpty(editStr)) {
+			//判断插入的字符串是否为空，如果没有内容则显示hint提示信息
+			editText.setText(editStr);
+		}
+		return editText;
+	}
+
+	/**
+	 * 生成图片块的view，并开始加载图片
+	 * @param imagePath						图片地址
+	 * @return								图片布局
+	 */
+	private RelativeLayout createImageBlockView(String imagePath) {
+		RelativeLayout imageLayout = createImageLayout();
+		getBlock(imageLayout).setImagePath(imagePath);
+		HyperImageView imageView = imageLayout.findViewById(R.id.edit_imageView);
+		imageView.setAbsolutePath(imagePath);
+		HyperManager.getInstance().loadImage(imagePath, imageView, rtImageHeight);
+		return imageLayout;
+	}
+
+	/**
+	 * 初始化transition动画
+	 */
+	private void setUpLayoutTransitions() {
+		mTransition = new LayoutTransition();
+		//添加Layout变化监听
+		mTransition.addTransitionListener(transitionListener);
+		//若向ViewGroup中添加一个ImageView，ImageView对象可以设置动画(即APPEARING 动画形式)，
+		//ViewGroup中的其它ImageView对象此时移动到新的位置的过程中也可以设置相关的动画(即CHANGE_APPEARING 动画形式)。
+		mTransition.enableTransitionType(LayoutTransition.APPEARING);
+		//设置整个Layout变换动画时间
+		mTransition.setDuration(300);
+		layout.setLayoutTransition(mTransition);
+	}
+
+	private LayoutTransition.TransitionListener transitionListener =
+			new LayoutTransition.TransitionListener() {
+
+		/**
+		 * LayoutTransition某一类型动画开始
+		 * @param transition				transition
+		 * @param container					container容器
+		 * @param view						view控件
+		 * @param transitionType			类型
+		 */
+		@Override
+		public void startTransition(LayoutTransition transition, ViewGroup container,
+									View view, int transitionType) {
+
+		}
+
+		/**
+		 * LayoutTransition某一类型动画结束
+		 * @param transition				transition
+		 * @param container					container容器
+		 * @param view						view控件
+		 * @param transitionType			类型
+		 */
+		@Override
+		public void endTransition(LayoutTransition transition,
+								  ViewGroup container, View view, int transitionType) {
+			if (!transition.isRunning() && transitionType == LayoutTransition.CHANGE_DISAPPEARING) {
+				// transition动画结束，合并EditText
+				mergeEditText();
+			}
+		}
+	};
+
+	/**
+	 * 图片删除的时候，如果上下方都是EditText，则合并处理
+	 */
+	private void mergeEditText() {
+		//一次操作中的多个变化作为一次撤销
+		undoManager.beginGroup();
+		try {
+			View preView = layout.getChildAt(disappearingImageIndex - 1);
+			View nextView = layout.getChildAt(disappearingImageIndex);
+			if (preView instanceof EditText && nextView instanceof EditText) {
+				EditText preEdit = (EditText) preView;
+				EditText nextEdit = (EditText) nextView;
+				Editable preText = preEdit.getText();
+				Editable nextText = nextEdit.getText();
+				int preLength = preText.length();
+				if (nextText.length() > 0) {
+					//下方文字连同样式追加到上方文本块末尾
+					preText.append("\n");
+					SpanTextHelper.getInstance().append(preText, nextText, 0, nextText.length());
 				}
+
+				layout.setLayoutTransition(null);
+				removeBlockView(nextEdit);
+				preEdit.requestFocus();
+				preEdit.setSelection(preLength, preLength);
+				//设置动画
+				layout.setLayoutTransition(mTransition);
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			undoManager.endGroup();
+		}
+	}
+
+	/**
+	 * 对外提供的接口, 生成编辑数据上传
+	 */
+	public List<HyperEditData> buildEditData() {
+		//直接读取文档模型，不遍历view
+		List<HyperEditData> dataList = document.toEditData();
+		HyperLogUtils.d("HyperTextEditor----buildEditData------dataList---"+dataList.size());
+		return dataList;
+	}
+
+	/**
+	 * 把内容以html格式直接写入输出，只有修改过的块会重新序列化，需要在主线程调用
+	 * @param writer							输出，写完之后flush，不会close
+	 * @throws IOException						写入异常
+	 */
+	public void writeHtml(Writer writer) throws IOException {
+		serializer.writeHtml(writer);
+	}
+
+	/**
+	 * 把内容以UTF-8编码的html格式直接写入输出流
+	 */
+	public void writeHtml(OutputStream output) throws IOException {
+		serializer.writeHtml(output);
+	}
+
+	/**
+	 * 把内容以json格式直接写入输出，字段和buildEditData一致
+	 * @param writer							输出，写完之后flush，不会close
+	 * @throws IOException						写入异常
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		serializer.writeJson(writer);
+	}
+
+	/**
+	 * 把内容以UTF-8编码的json格式直接写入输出流
+	 */
+	public void writeJson(OutputStream output) throws IOException {
+		serializer.writeJson(output);
+	}
+
+	/**
+	 * 用于统计文本文字的数量和图片的数量
+	 */
+	public void getContentAndImageCount() {
+		if (document==null){
+			contentLength = 0;
+			imageLength = 0;
+			return;
 		}
-		HyperLogUtils.d("HyperTextEditor----buildEditData------dataList---");
+		//文档模型增量维护统计数据，这里不需要遍历
+		contentLength = document.getContentLength();
+		imageLength = document.getImageCount();
 	}
 
 	public void setOnHyperListener(OnHyperEditListener listener){
@@ -728,9 +1546,28 @@ public class HyperTextEditor extends ScrollView {
 	}
 
     public void setOnHyperChangeListener(OnHyperChangeListener onHyperChangeListener) {
-        this.onHyperChangeListener = onHyperChangeListener;
+        changeDispatcher.setListener(onHyperChangeListener);
     }
 
+	/**
+	 * 设置文本+图片数量变化的回调方式
+	 * @param mode								HyperChangeDispatcher.DISPATCH_IMMEDIATE每次变化立即回调；
+	 *                                          HyperChangeDispatcher.DISPATCH_FRAME每帧最多回调一次
+	 */
+	public void setOnHyperChangeMode(int mode) {
+		changeDispatcher.setMode(mode);
+	}
+
+	/**
+	 * 设置防抖的文本+图片数量变化监听，最后一次变化之后debounceMillis毫秒才回调，适合自动保存
+	 * @param listener							监听
+	 * @param debounceMillis					防抖时间，单位毫秒
+	 */
+	public void setOnHyperDebounceListener(OnHyperChangeListener listener, long debounceMillis) {
+		debounceDispatcher.setListener(listener);
+		debounceDispatcher.setDebounce(debounceMillis);
+	}
+
     public EditText getLastFocusEdit() {
 		return lastFocusEdit;
 	}
@@ -747,35 +1584,659 @@ public class HyperTextEditor extends ScrollView {
 	 * 修改加粗样式
 	 */
 	public void bold() {
+		List<SpanRecord> before = captureSpans(lastFocusEdit);
 		SpanTextHelper.getInstance().bold(lastFocusEdit);
+		recordSpanChange(lastFocusEdit, before);
 	}
 
 	/**
 	 * 修改斜体样式
 	 */
 	public void italic() {
+		List<SpanRecord> before = captureSpans(lastFocusEdit);
 		SpanTextHelper.getInstance().italic(lastFocusEdit);
+		recordSpanChange(lastFocusEdit, before);
 	}
 
 	/**
 	 * 修改加粗斜体样式
 	 */
 	public void boldItalic() {
+		List<SpanRecord> before = captureSpans(lastFocusEdit);
 		SpanTextHelper.getInstance().boldItalic(lastFocusEdit);
+		recordSpanChange(lastFocusEdit, before);
 	}
 
 	/**
 	 * 修改删除线样式
 	 */
 	public void strikeThrough() {
+		List<SpanRecord> before = captureSpans(lastFocusEdit);
 		SpanTextHelper.getInstance().strikeThrough(lastFocusEdit);
+		recordSpanChange(lastFocusEdit, before);
 	}
 
 	/**
 	 * 修改下划线样式
 	 */
 	public void underline() {
+		List<SpanRecord> before = captureSpans(lastFocusEdit);
 		SpanTextHelper.getInstance().underline(lastFocusEdit);
+		recordSpanChange(lastFocusEdit, before);
+	}
+
+	/**
+	 * 撤销上一次操作，包括输入文字、合并或拆分文本块、插入删除图片以及修改样式
+	 * @return									是否撤销成功
+	 */
+	public boolean undo() {
+		boolean result = undoManager.undo();
+		if (result) {
+			onHistoryChanged();
+		}
+		return result;
+	}
+
+	/**
+	 * 重做上一次撤销的操作
+	 * @return									是否重做成功
+	 */
+	public boolean redo() {
+		boolean result = undoManager.redo();
+		if (result) {
+			onHistoryChanged();
+		}
+		return result;
+	}
+
+	public boolean canUndo() {
+		return undoManager.canUndo();
+	}
+
+	public boolean canRedo() {
+		return undoManager.canRedo();
+	}
+
+	/**
+	 * 设置撤销记录的内存上限，超过时丢弃最早的记录
+	 * @param maxMemory							内存上限，单位字节
+	 */
+	public void setUndoMaxMemory(int maxMemory) {
+		undoManager.setMaxMemory(maxMemory);
+	}
+
+	private void onHistoryChanged() {
+		if (lastFocusEdit == null || lastFocusEdit.getParent() != layout) {
+			//获取焦点的文本块被撤销掉了，焦点移到最后一个文本块
+			for (int i = layout.getChildCount() - 1; i >= 0; i--) {
+				View child = layout.getChildAt(i);
+				if (child instanceof EditText) {
+					lastFocusEdit = (EditText) child;
+					break;
+				}
+			}
+		}
+		addHyperEditorChangeListener();
+	}
+
+	/**
+	 * 设置编辑操作日志，之后的每次编辑都会追加到日志文件，设置时先写入当前文档的快照
+	 * 进程被杀之后可以通过recoverFromJournal恢复，传null停止写日志
+	 * @param journal							日志
+	 */
+	public void setJournal(HyperJournal journal) {
+		if (this.journal != null) {
+			this.journal.setSnapshotWriter(null);
+			this.journal.flush();
+		}
+		this.journal = journal;
+		if (journal != null) {
+			journal.setSnapshotWriter(snapshotWriter);
+			journal.compact();
+		}
+	}
+
+	public HyperJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * 从日志文件恢复内容，文件在子线程读取，主线程回放，完成后回调OnHyperLoadListener
+	 * 需要在恢复完成之后再调用setJournal，否则日志会先被当前内容的快照覆盖
+	 * @param file								日志文件
+	 */
+	public void recoverFromJournal(final File file) {
+		final int generation = ++loadGeneration;
+		cancelLoad();
+		HyperThreadManager.getInstance().execute(new Runnable() {
+			@Override
+			public void run() {
+				final byte[] data = HyperJournal.read(file);
+				HyperThreadManager.getInstance().post(new Runnable() {
+					@Override
+					public void run() {
+						if (generation == loadGeneration) {
+							replayJournal(data);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private void replayJournal(byte[] data) {
+		journalPaused = true;
+		clearAllLayout();
+		batchUpdating = true;
+		undoManager.setEnabled(false);
+		layout.setLayoutTransition(null);
+		try {
+			int count = HyperJournal.replay(data, journalReplayer);
+			HyperLogUtils.d("HyperTextEditor----replayJournal------"+count);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		finishAttachContent();
+	}
+
+	private boolean isJournaling() {
+		return journal != null && !journalPaused;
+	}
+
+	private void journalText(int index, int start, int before, CharSequence s, int count) {
+		journal.replaceText(index, start, before, TextUtils.substring(s, start, start + count));
+		if (count > 0 && s instanceof Spanned) {
+			//合并、撤销时插入的文字自带样式，样式完全在插入范围内时一起记录
+			Spanned spanned = (Spanned) s;
+			InterInlineSpan[] spans = spanned.getSpans(start, start + count, InterInlineSpan.class);
+			for (InterInlineSpan span : spans) {
+				int spanStart = spanned.getSpanStart(span);
+				int spanEnd = spanned.getSpanEnd(span);
+				if (spanStart >= start && spanEnd <= start + count && spanStart < spanEnd) {
+					journal.setSpan(index, span.getType(), spanStart, spanEnd, spanned.getSpanFlags(span));
+				}
+			}
+		}
+	}
+
+	private void journalBlock(int index, View view) {
+		HyperEditData block = getBlock(view);
+		if (block.getType() == HyperEditData.TYPE_IMAGE) {
+			journal.insertImageBlock(index, block.getImagePath());
+			return;
+		}
+		Editable text = ((EditText) view).getText();
+		journal.insertTextBlock(index, text);
+		InterInlineSpan[] spans = text.getSpans(0, text.length(), InterInlineSpan.class);
+		for (InterInlineSpan span : spans) {
+			journal.setSpan(index, span.getType(), text.getSpanStart(span),
+					text.getSpanEnd(span), text.getSpanFlags(span));
+		}
+	}
+
+	private void journalSpans(int index, List<SpanRecord> removed, List<SpanRecord> added) {
+		if (!isJournaling()) {
+			return;
+		}
+		for (SpanRecord record : removed) {
+			journal.removeSpan(index, ((InterInlineSpan) record.span).getType(), record.start, record.end);
+		}
+		for (SpanRecord record : added) {
+			journal.setSpan(index, ((InterInlineSpan) record.span).getType(),
+					record.start, record.end, record.flags);
+		}
+	}
+
+	/**
+	 * 日志文件过大时写入当前文档的快照
+	 */
+	private final HyperJournal.SnapshotWriter snapshotWriter = new HyperJournal.SnapshotWriter() {
+		@Override
+		public void writeSnapshot(HyperJournal journal) {
+			journal.clear();
+			for (int i = 0; i < layout.getChildCount(); i++) {
+				View view = layout.getChildAt(i);
+				if (getBlock(view) != null) {
+					journalBlock(i, view);
+				}
+			}
+		}
+	};
+
+	private final HyperJournal.Replayer journalReplayer = new HyperJournal.Replayer() {
+		@Override
+		public void onClear() {
+			clearAllLayout();
+		}
+
+		@Override
+		public void onInsertTextBlock(int index, String text) {
+			EditText editText = createEditText(index == 0 ? rtTextInitHint : "插入文字", EDIT_PADDING);
+			editText.setText(text);
+			addBlockView(Math.min(Math.max(index, 0), layout.getChildCount()), editText);
+		}
+
+		@Override
+		public void onInsertImageBlock(int index, String imagePath) {
+			if (TextUtils.isEmpty(imagePath)) {
+				return;
+			}
+			addBlockView(Math.min(Math.max(index, 0), layout.getChildCount()),
+					createImageBlockView(imagePath));
+		}
+
+		@Override
+		public void onRemoveBlock(int index) {
+			View view = layout.getChildAt(index);
+			if (view != null) {
+				removeBlockView(view);
+			}
+		}
+
+		@Override
+		public void onReplaceText(int index, int start, int deleteLength, String text) {
+			Editable editable = getBlockEditable(index);
+			if (editable != null && start >= 0 && start + deleteLength <= editable.length()) {
+				editable.replace(start, start + deleteLength, text);
+			}
+		}
+
+		@Override
+		public void onSetSpan(int index, String type, int start, int end, int flags) {
+			Editable editable = getBlockEditable(index);
+			if (editable == null || start < 0 || end > editable.length() || start > end
+					|| findSpan(editable, type, start, end) != null) {
+				return;
+			}
+			Object span = SpanTextHelper.getInstance().newSpan(type);
+			if (span != null) {
+				editable.setSpan(span, start, end, flags);
+				document.markDirty(document.get(index));
+			}
+		}
+
+		@Override
+		public void onRemoveSpan(int index, String type, int start, int end) {
+			Editable editable = getBlockEditable(index);
+			if (editable == null) {
+				return;
+			}
+			Object span = findSpan(editable, type, start, end);
+			if (span != null) {
+				editable.removeSpan(span);
+				document.markDirty(document.get(index));
+			}
+		}
+
+		private Object findSpan(Editable editable, String type, int start, int end) {
+			Class<? extends InterInlineSpan> clazz = SpanTextHelper.getInstance().getSpanClass(type);
+			if (clazz == null) {
+				return null;
+			}
+			InterInlineSpan[] spans = editable.getSpans(start, end, clazz);
+			for (InterInlineSpan span : spans) {
+				if (editable.getSpanStart(span) == start && editable.getSpanEnd(span) == end) {
+					return span;
+				}
+			}
+			return null;
+		}
+	};
+
+	/**
+	 * 拷贝一段文字和样式，不包含EditText内部的span
+	 */
+	private SpannableStringBuilder copyText(CharSequence text, int start, int end) {
+		SpannableStringBuilder copy = new SpannableStringBuilder();
+		SpanTextHelper.getInstance().append(copy, text, start, end);
+		return copy;
+	}
+
+	private Editable getBlockEditable(int index) {
+		View view = layout.getChildAt(index);
+		return view instanceof EditText ? ((EditText) view).getText() : null;
+	}
+
+	/**
+	 * 撤销或者重做之后，把光标移到发生变化的位置
+	 */
+	private void focusBlock(int index, int selection) {
+		View view = layout.getChildAt(index);
+		if (view instanceof EditText) {
+			EditText editText = (EditText) view;
+			editText.requestFocus();
+			int position = Math.max(0, Math.min(selection, editText.length()));
+			editText.setSelection(position, position);
+			lastFocusEdit = editText;
+		}
+	}
+
+	private List<SpanRecord> captureSpans(EditText editText) {
+		List<SpanRecord> records = new ArrayList<>();
+		if (editText == null) {
+			return records;
+		}
+		Editable text = editText.getText();
+		InterInlineSpan[] spans = text.getSpans(0, text.length(), InterInlineSpan.class);
+		for (InterInlineSpan span : spans) {
+			records.add(new SpanRecord(span, text.getSpanStart(span),
+					text.getSpanEnd(span), text.getSpanFlags(span)));
+		}
+		return records;
+	}
+
+	/**
+	 * 对比修改样式前后的span，只记录被移除和新增的部分
+	 */
+	private void recordSpanChange(EditText editText, List<SpanRecord> before) {
+		if (editText == null) {
+			return;
+		}
+		//只修改样式时文字不变，需要单独让序列化缓存失效
+		document.markDirty(getBlock(editText));
+		if (!undoManager.isRecording() && !isJournaling()) {
+			return;
+		}
+		int index = layout.indexOfChild(editText);
+		if (index < 0) {
+			return;
+		}
+		List<SpanRecord> after = captureSpans(editText);
+		List<SpanRecord> removed = new ArrayList<>();
+		List<SpanRecord> added = new ArrayList<>();
+		for (SpanRecord record : before) {
+			if (!SpanRecord.contains(after, record)) {
+				removed.add(record);
+			}
+		}
+		for (SpanRecord record : after) {
+			if (!SpanRecord.contains(before, record)) {
+				added.add(record);
+			}
+		}
+		if (!removed.isEmpty() || !added.isEmpty()) {
+			undoManager.push(new SpanOperation(index, removed, added));
+			journalSpans(index, removed, added);
+		}
+	}
+
+	/**
+	 * 文字变化，只记录被替换的文字和新的文字
+	 * 入栈之前插入的文字直接引用EditText中的内容，能合并到正在输入的操作时不会单独拷贝
+	 */
+	private final class TextOperation implements HyperUndoManager.Operation {
+
+		private final int index;
+		private int start;
+		private SpannableStringBuilder deleted;
+		private SpannableStringBuilder inserted;
+		/**
+		 * 还没有调用detach时，插入的文字是source中[start, start + sourceCount)的部分
+		 */
+		private CharSequence source;
+		private int sourceCount;
+
+		TextOperation(int index, int start, SpannableStringBuilder deleted,
+					  CharSequence source, int sourceCount) {
+			this.index = index;
+			this.start = start;
+			this.deleted = deleted;
+			this.source = source;
+			this.sourceCount = sourceCount;
+		}
+
+		/**
+		 * 操作保存到撤销栈之后调用，拷贝插入的文字，不再引用EditText中的内容
+		 */
+		void detach() {
+			if (inserted == null) {
+				inserted = copyText(source, start, start + sourceCount);
+				source = null;
+			}
+			if (deleted == null) {
+				deleted = new SpannableStringBuilder();
+			}
+		}
+
+		@Override
+		public void undo() {
+			Editable text = getBlockEditable(index);
+			if (text != null) {
+				text.replace(start, start + inserted.length(), deleted);
+				focusBlock(index, start + deleted.length());
+			}
+		}
+
+		@Override
+		public void redo() {
+			Editable text = getBlockEditable(index);
+			if (text != null) {
+				text.replace(start, start + deleted.length(), inserted);
+				focusBlock(index, start + inserted.length());
+			}
+		}
+
+		@Override
+		public int getSize() {
+			return 48 + (getDeletedLength() + getInsertedLength()) * 2;
+		}
+
+		@Override
+		public boolean merge(HyperUndoManager.Operation next) {
+			if (!(next instanceof TextOperation) || inserted == null) {
+				return false;
+			}
+			TextOperation other = (TextOperation) next;
+			//换行之后重新开始记录
+			if (other.index != index || other.insertsNewline()) {
+				return false;
+			}
+			int offset = other.start - start;
+			int deletedLength = other.getDeletedLength();
+			if (offset >= 0 && offset + deletedLength <= inserted.length()
+					&& regionEquals(inserted, offset, other.deleted)) {
+				//在刚输入的文字范围内继续输入、回删或者输入法替换，只拷贝新插入的文字
+				inserted.delete(offset, offset + deletedLength);
+				other.insertTo(inserted, offset);
+				return true;
+			}
+			if (inserted.length() == 0 && other.getInsertedLength() == 0 && deletedLength > 0
+					&& other.start + deletedLength == start) {
+				//连续回删
+				deleted.insert(0, other.deleted);
+				start = other.start;
+				return true;
+			}
+			return false;
+		}
+
+		private int getDeletedLength() {
+			return deleted == null ? 0 : deleted.length();
+		}
+
+		private int getInsertedLength() {
+			return inserted != null ? inserted.length() : sourceCount;
+		}
+
+		private boolean insertsNewline() {
+			return inserted != null ? TextUtils.indexOf(inserted, '\n') >= 0
+					: TextUtils.indexOf(source, '\n', start, start + sourceCount) >= 0;
+		}
+
+		private void insertTo(Editable dest, int where) {
+			if (inserted != null) {
+				dest.insert(where, inserted);
+			} else {
+				SpanTextHelper.getInstance().insert(dest, where, source, start, start + sourceCount);
+			}
+		}
+
+		private boolean regionEquals(CharSequence text, int offset, CharSequence other) {
+			if (other == null) {
+				return true;
+			}
+			for (int i = 0; i < other.length(); i++) {
+				if (text.charAt(offset + i) != other.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 插入或者移除文本块、图片块
+	 */
+	private final class BlockOperation implements HyperUndoManager.Operation {
+
+		private final boolean insert;
+		private final int index;
+		private final int type;
+		private final String imagePath;
+		private final CharSequence text;
+
+		BlockOperation(boolean insert, int index, View view) {
+			HyperEditData block = getBlock(view);
+			this.insert = insert;
+			this.index = index;
+			this.type = block.getType();
+			this.imagePath = block.getImagePath();
+			this.text = view instanceof EditText
+					? copyText(((EditText) view).getText(), 0, ((EditText) view).length()) : null;
+		}
+
+		@Override
+		public void undo() {
+			if (insert) {
+				removeBlock();
+			} else {
+				restoreBlock();
+			}
+		}
+
+		@Override
+		public void redo() {
+			if (insert) {
+				restoreBlock();
+			} else {
+				removeBlock();
+			}
+		}
+
+		private void removeBlock() {
+			View view = layout.getChildAt(index);
+			if (view != null) {
+				layout.setLayoutTransition(null);
+				removeBlockView(view);
+				layout.setLayoutTransition(mTransition);
+			}
+		}
+
+		private void restoreBlock() {
+			View view;
+			if (type == HyperEditData.TYPE_IMAGE) {
+				view = createImageBlockView(imagePath);
+			} else {
+				//EditText会直接使用传入的Editable，这里需要拷贝一份
+				view = createBlockEditText(new SpannableStringBuilder(text == null ? "" : text));
+			}
+			layout.setLayoutTransition(null);
+			addBlockView(Math.min(index, layout.getChildCount()), view);
+			layout.setLayoutTransition(mTransition);
+			focusBlock(index, text == null ? 0 : text.length());
+		}
+
+		@Override
+		public int getSize() {
+			return 48 + (text == null ? 0 : text.length() * 2)
+					+ (imagePath == null ? 0 : imagePath.length() * 2);
+		}
+
+		@Override
+		public boolean merge(HyperUndoManager.Operation next) {
+			return false;
+		}
+	}
+
+	/**
+	 * 修改样式，只记录被移除和新增的span
+	 */
+	private final class SpanOperation implements HyperUndoManager.Operation {
+
+		private final int index;
+		private final List<SpanRecord> removed;
+		private final List<SpanRecord> added;
+
+		SpanOperation(int index, List<SpanRecord> removed, List<SpanRecord> added) {
+			this.index = index;
+			this.removed = removed;
+			this.added = added;
+		}
+
+		@Override
+		public void undo() {
+			apply(added, removed);
+		}
+
+		@Override
+		public void redo() {
+			apply(removed, added);
+		}
+
+		private void apply(List<SpanRecord> remove, List<SpanRecord> set) {
+			Editable text = getBlockEditable(index);
+			if (text == null) {
+				return;
+			}
+			document.markDirty(document.get(index));
+			for (SpanRecord record : remove) {
+				text.removeSpan(record.span);
+			}
+			for (SpanRecord record : set) {
+				if (record.end <= text.length()) {
+					text.setSpan(record.span, record.start, record.end, record.flags);
+				}
+			}
+			journalSpans(index, remove, set);
+		}
+
+		@Override
+		public int getSize() {
+			return 32 + (removed.size() + added.size()) * 24;
+		}
+
+		@Override
+		public boolean merge(HyperUndoManager.Operation next) {
+			return false;
+		}
+	}
+
+	private static final class SpanRecord {
+
+		private final Object span;
+		private final int start;
+		private final int end;
+		private final int flags;
+
+		SpanRecord(Object span, int start, int end, int flags) {
+			this.span = span;
+			this.start = start;
+			this.end = end;
+			this.flags = flags;
+		}
+
+		/**
+		 * 同一个span并且范围相同
+		 */
+		static boolean contains(List<SpanRecord> records, SpanRecord target) {
+			for (SpanRecord record : records) {
+				if (record.span == target.span && record.start == target.start
+						&& record.end == target.end) {
+					return true;
+				}
+			}
+			return false;
+		}
 	}
 
 }
@@ -15,29 +15,53 @@ limitations under the License.
 */
 package com.ns.yc.yccustomtextlib.edit.view;
 
+import android.app.Activity;
 import android.content.Context;
 import android.content.res.TypedArray;
-import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
-import android.text.SpannableStringBuilder;
+import android.graphics.Paint;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.widget.TextViewCompat;
+import android.text.Layout;
+import android.text.TextPaint;
 import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.widget.ScrollView;
 import android.widget.TextView;
 
 import com.ns.yc.yccustomtextlib.R;
+import com.ns.yc.yccustomtextlib.edit.inter.OnHyperLoadListener;
+import com.ns.yc.yccustomtextlib.edit.inter.OnHyperRenderListener;
 import com.ns.yc.yccustomtextlib.edit.inter.OnHyperTextListener;
 import com.ns.yc.yccustomtextlib.edit.manager.HyperManager;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperRenderQueue;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperHighlighter;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperSearchIndex;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperTextLayoutCache;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperThreadManager;
+import com.ns.yc.yccustomtextlib.edit.manager.HyperViewPool;
+import com.ns.yc.yccustomtextlib.edit.model.HyperBinaryDocument;
+import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
+import com.ns.yc.yccustomtextlib.edit.model.HyperMatch;
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlParser;
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlSpanParser;
 import com.ns.yc.yccustomtextlib.utils.HyperLibUtils;
 import com.ns.yc.yccustomtextlib.utils.HyperLogUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 
 /**
@@ -46,7 +70,8 @@ import java.util.ArrayList;
  *     blog  : https://github.com/yangchong211
  *     time  : 2016/3/31
  *     desc  : 显示富文本
- *     revise:
+ *     revise: 每个块只保存文字或者图片地址，可见区域上下一屏内的块才创建view，其余的块用估算高度的占位view代替
+ *             导入的块和第一屏之外的view在渲染队列中按帧分批添加，第一屏的view直接创建
  * </pre>
  */
 public class HyperTextView extends ScrollView {
@@ -55,6 +80,27 @@ public class HyperTextView extends ScrollView {
      * 常规padding是10dp
      */
     private static final int EDIT_PADDING = 10;
+    /**
+     * 更换高亮关键词时每批计算的文本块数量
+     */
+    private static final int HIGHLIGHT_BATCH_SIZE = 32;
+    /**
+     * 导入内容时子线程每批交给主线程的块数量
+     */
+    private static final int LOAD_BATCH_SIZE = 16;
+    /**
+     * 可见区域上下各多创建一屏的块，超出三屏的块回收view
+     */
+    private static final int MATERIALIZE_SCREENS = 1;
+    private static final int RECYCLE_SCREENS = 3;
+    /**
+     * 估算文字宽度时取样的字符数
+     */
+    private static final int ESTIMATE_SAMPLE_SIZE = 64;
+    /**
+     * 和图片布局的最小高度一致，单位dp
+     */
+    private static final int IMAGE_MIN_HEIGHT = 200;
     /**
      * 新生的view都会打一个tag，对每个view来说，这个tag是唯一的
      */
@@ -76,7 +122,48 @@ public class HyperTextView extends ScrollView {
     /**
      * 关键词高亮
      */
-    private String keywords;
+    private HyperHighlighter highlighter;
+    /**
+     * 文章内搜索的索引，开启搜索之后才创建，块标识是TextView的tag
+     */
+    private HyperSearchIndex searchIndex;
+    /**
+     * 所有块的描述，按文章顺序排列
+     */
+    private final List<Block> blocks = new ArrayList<>();
+    /**
+     * tag和有文字的块的映射
+     */
+    private final SparseArray<Block> textBlocks = new SparseArray<>();
+    /**
+     * 正在显示的离线文章，显示期间一直打开，文本块用到时才解码，清除内容时关闭
+     * 离开窗口时也会关闭，之后用到时按documentFile重新打开
+     */
+    private HyperBinaryDocument binaryDocument;
+    private File documentFile;
+    /**
+     * 离线文章添加块时遇到的错误，之后的块不再添加
+     */
+    private IOException documentError;
+    /**
+     * 已经创建view的块的区间，不包含lastMaterialized，之前和之后的块分别用一个占位view代替
+     */
+    private int firstMaterialized = 0;
+    private int lastMaterialized = 0;
+    private View topSpace;
+    private View bottomSpace;
+    /**
+     * 估算文字高度使用的画笔
+     */
+    private TextPaint estimatePaint;
+    private boolean windowUpdatePosted = false;
+    private final Runnable windowUpdater = new Runnable() {
+        @Override
+        public void run() {
+            windowUpdatePosted = false;
+            updateWindow();
+        }
+    };
     private OnHyperTextListener onHyperTextListener;
     /**
      * 插入的图片显示高度，为0显示原始高度
@@ -99,11 +186,91 @@ public class HyperTextView extends ScrollView {
      * 相当于8dp
      */
     private int rtTextLineSpace = 8;
+    /**
+     * 文本块的文字属性，用于子线程预计算文字布局
+     */
+    private PrecomputedTextCompat.Params textParams;
+    /**
+     * 每次导入内容或者清除view时加1，之前还没有添加的块直接丢弃
+     */
+    private volatile int loadGeneration = 0;
+    /**
+     * 按帧分批添加块和创建view的渲染队列
+     */
+    private final HyperRenderQueue renderQueue = new HyperRenderQueue();
+    /**
+     * 需要创建view的块的区间，第一屏之外的块在渲染队列中逐个创建
+     */
+    private int targetFirst = 0;
+    private int targetLast = 0;
+    private boolean windowGrowPosted = false;
+    private final Runnable windowGrower = new Runnable() {
+        @Override
+        public void run() {
+            windowGrowPosted = false;
+            growWindow();
+        }
+    };
+    private OnHyperLoadListener onHyperLoadListener;
+    private OnHyperRenderListener onHyperRenderListener;
+    /**
+     * 导入的内容是否已经全部添加
+     */
+    private boolean loadFinished = false;
+    private boolean firstScreenNotified = false;
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         HyperLogUtils.d("HyperTextView----onDetachedFromWindow------");
+        //离开窗口时释放复用池，旋转屏幕或者context是ContextThemeWrapper时isFinishing不可靠，不能据此判断
+        HyperViewPool.getInstance().clear(getContext());
+        closeBinaryDocument();
+        Context context = getContext();
+        if (context instanceof Activity && ((Activity) context).isFinishing()) {
+            //页面销毁时释放还未执行的渲染任务
+            renderQueue.clear();
+        }
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        scheduleWindowUpdate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw) {
+            //宽度变化之后之前的高度都不准确，没有view的块重新估算
+            for (Block block : blocks) {
+                if (block.view == null) {
+                    block.height = -1;
+                }
+            }
+        }
+        scheduleWindowUpdate();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        //记录第一个可见的块，布局之后上方的块从估算高度变成实际高度时，保持它在屏幕上的位置不变
+        View anchor = null;
+        int anchorTop = 0;
+        for (int i = firstMaterialized; i < lastMaterialized; i++) {
+            View view = blocks.get(i).view;
+            if (view != null && ViewCompat.isLaidOut(view)
+                    && allLayout.getTop() + view.getBottom() > getScrollY()) {
+                anchor = view;
+                anchorTop = view.getTop();
+                break;
+            }
+        }
+        super.onLayout(changed, l, t, r, b);
+        if (anchor != null && anchor.getParent() == allLayout && anchor.getTop() != anchorTop) {
+            scrollBy(0, anchor.getTop() - anchorTop);
+        }
     }
 
     public HyperTextView(Context context) {
@@ -183,21 +350,69 @@ public class HyperTextView extends ScrollView {
         this.onHyperTextListener = onRtImageClickListener;
     }
 
+    /**
+     * setHtml和loadDocument导入的块全部添加之后回调
+     */
+    public void setOnHyperLoadListener(OnHyperLoadListener onHyperLoadListener) {
+        this.onHyperLoadListener = onHyperLoadListener;
+    }
+
+    /**
+     * 第一屏显示完成之后回调，每次导入内容只回调一次
+     */
+    public void setOnHyperRenderListener(OnHyperRenderListener onHyperRenderListener) {
+        this.onHyperRenderListener = onHyperRenderListener;
+    }
+
+    /**
+     * 设置渲染队列每帧的时间预算，剩下的块留到下一帧添加
+     * @param frameBudgetMillis                 时间预算，单位毫秒
+     */
+    public void setFrameBudget(long frameBudgetMillis) {
+        renderQueue.setFrameBudget(frameBudgetMillis);
+    }
+
     /**
      * 清除所有的view
      */
     public void clearAllLayout(){
         if (allLayout!=null){
+            int count = allLayout.getChildCount();
+            View[] children = new View[count];
+            for (int i = 0; i < count; i++) {
+                children[i] = allLayout.getChildAt(i);
+            }
             allLayout.removeAllViews();
+            blocks.clear();
+            textBlocks.clear();
+            firstMaterialized = 0;
+            lastMaterialized = 0;
+            targetFirst = 0;
+            targetLast = 0;
+            renderQueue.clear();
+            windowGrowPosted = false;
+            loadFinished = false;
+            firstScreenNotified = false;
+            loadGeneration++;
+            if (searchIndex != null) {
+                searchIndex.clear();
+            }
+            closeBinaryDocument();
+            documentFile = null;
+            documentError = null;
+            //移除之后的view放回复用池，切换文章时直接复用
+            for (View child : children) {
+                HyperViewPool.getInstance().release(child);
+            }
         }
     }
 
     /**
-     * 获得最后一个子view的位置
+     * 获得最后一个块的位置
      */
     public int getLastIndex(){
         if (allLayout!=null){
-            int lastEditIndex = allLayout.getChildCount();
+            int lastEditIndex = blocks.size();
             return lastEditIndex;
         }
         return -1;
@@ -207,7 +422,10 @@ public class HyperTextView extends ScrollView {
      * 生成文本输入框
      */
     public TextView createTextView(String hint, int paddingTop) {
-        TextView textView = new TextView(getContext());
+        TextView textView = HyperViewPool.getInstance().acquireTextView(getContext());
+        if (textView == null) {
+            textView = new TextView(getContext());
+        }
         LayoutParams layoutParams = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
         textView.setLayoutParams(layoutParams);
         textView.setTextSize(16);
@@ -228,7 +446,10 @@ public class HyperTextView extends ScrollView {
      * @return                                  view
      */
     private RelativeLayout createImageLayout() {
-        RelativeLayout layout = (RelativeLayout) inflater.inflate(R.layout.edit_imageview, null);
+        RelativeLayout layout = HyperViewPool.getInstance().acquireImageLayout(getContext());
+        if (layout == null) {
+            layout = (RelativeLayout) inflater.inflate(R.layout.edit_imageview, null);
+        }
         layout.setTag(viewTagIndex++);
         View closeView = layout.findViewById(R.id.image_close);
         closeView.setVisibility(GONE);
@@ -237,36 +458,590 @@ public class HyperTextView extends ScrollView {
         return layout;
     }
 
+    /**
+     * 设置单个高亮关键词，按字面匹配
+     * @param keywords                          关键词，为空时不高亮
+     */
     public void setKeywords(String keywords) {
-        this.keywords = keywords;
+        this.highlighter = HyperHighlighter.compile(keywords);
+    }
+
+    /**
+     * 设置多关键词高亮器，每次搜索构建一次，所有文本块共用
+     * @param highlighter                       高亮器，为null时不高亮
+     */
+    public void setHighlighter(HyperHighlighter highlighter) {
+        this.highlighter = highlighter;
+    }
+
+    /**
+     * 显示html内容，在子线程解析，每解析一批块就交给主线程，主线程按帧分批添加
+     * 第一屏的块最先创建view，不需要等整篇文章解析完成，全部添加之后回调OnHyperLoadListener
+     * @param html                              html内容
+     */
+    public void setHtml(final String html) {
+        clearAllLayout();
+        final int generation = loadGeneration;
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<HyperEditData> batch = new ArrayList<>();
+                HyperHtmlParser.parse(html, new HyperHtmlParser.Visitor() {
+                    @Override
+                    public void onText(CharSequence text, int start, int end) {
+                        CharSequence fragment = text.subSequence(start, end);
+                        HyperEditData data = new HyperEditData();
+                        data.setType(HyperEditData.TYPE_TEXT);
+                        //标签直接在当前子线程转化为样式
+                        if (HyperHtmlSpanParser.isMarkup(fragment)) {
+                            data.setContent(HyperHtmlSpanParser.parse(fragment));
+                        } else {
+                            data.setInputStr(fragment.toString());
+                        }
+                        addToBatch(generation, batch, data);
+                    }
+
+                    @Override
+                    public void onImage(String src) {
+                        HyperEditData data = new HyperEditData();
+                        data.setType(HyperEditData.TYPE_IMAGE);
+                        data.setImagePath(src);
+                        addToBatch(generation, batch, data);
+                    }
+                });
+                postBlocks(generation, new ArrayList<>(batch));
+                postFinish(generation, null);
+            }
+        });
+    }
+
+    /**
+     * 显示HyperBinaryDocument保存的离线文章，在子线程打开文件，块按顺序放入渲染队列
+     * 文本块只记录在文件中的位置，创建view和搜索时才解码，不会一直持有整篇文章的文字
+     * 全部添加之后回调OnHyperLoadListener，文件损坏时显示之前的块，然后回调OnHyperLoadListener.onLoadFailed
+     * @param file                              HyperBinaryDocument.write写入的文件
+     */
+    public void loadDocument(final File file) {
+        clearAllLayout();
+        final int generation = loadGeneration;
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                HyperBinaryDocument document = null;
+                IOException error = null;
+                try {
+                    document = HyperBinaryDocument.open(file);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    error = e;
+                }
+                postDocument(generation, file, document, error);
+            }
+        });
+    }
+
+    /**
+     * 在主线程保存打开的文档，每个块一个渲染任务
+     */
+    private void postDocument(final int generation, final File file,
+                              final HyperBinaryDocument document, final IOException error) {
+        HyperThreadManager.getInstance().post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != loadGeneration) {
+                    if (document != null) {
+                        document.close();
+                    }
+                    return;
+                }
+                binaryDocument = document;
+                documentFile = file;
+                documentError = error;
+                int count = document == null ? 0 : document.getBlockCount();
+                for (int i = 0; i < count; i++) {
+                    final int index = i;
+                    renderQueue.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == loadGeneration && documentError == null) {
+                                appendDocumentBlock(index);
+                            }
+                        }
+                    });
+                }
+                renderQueue.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == loadGeneration) {
+                            finishLoad(documentError);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 添加离线文章的块，图片块直接读取地址，文本块只记录位置和数据长度
+     */
+    private void appendDocumentBlock(int index) {
+        HyperBinaryDocument document = getBinaryDocument();
+        if (document == null) {
+            documentError = new IOException("文章缓存文件已经关闭");
+            return;
+        }
+        try {
+            if (document.getType(index) == HyperEditData.TYPE_IMAGE) {
+                addImageViewAtIndex(getLastIndex(), document.readBlock(index).getImagePath());
+                return;
+            }
+            Block block = new Block(HyperEditData.TYPE_TEXT, viewTagIndex++);
+            block.documentIndex = index;
+            block.dataLength = document.getDataLength(index);
+            textBlocks.put(block.slot, block);
+            if (searchIndex != null) {
+                searchIndex.invalidate(block.slot);
+            }
+            insertBlock(getLastIndex(), block);
+        } catch (IOException e) {
+            e.printStackTrace();
+            documentError = e;
+        }
+    }
+
+    private HyperBinaryDocument getBinaryDocument() {
+        if (binaryDocument == null && documentFile != null) {
+            try {
+                binaryDocument = HyperBinaryDocument.open(documentFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+                documentFile = null;
+            }
+        }
+        return binaryDocument;
+    }
+
+    private void closeBinaryDocument() {
+        if (binaryDocument != null) {
+            binaryDocument.close();
+            binaryDocument = null;
+        }
+    }
+
+    /**
+     * 获取块的文字，离线文章的文本块没有创建view时不保存文字，每次从文件解码
+     * @return                                  文字，html片段还在解析或者解码失败时返回null
+     */
+    private CharSequence getBlockText(Block block) {
+        if (block.text != null || block.documentIndex < 0) {
+            return block.text;
+        }
+        HyperBinaryDocument document = getBinaryDocument();
+        if (document == null) {
+            return null;
+        }
+        try {
+            return document.readBlock(block.documentIndex).getContent();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 子线程中收集导入的块，攒够一批再交给主线程，避免每个块一个消息
+     */
+    private void addToBatch(int generation, List<HyperEditData> batch, HyperEditData data) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        batch.add(data);
+        if (batch.size() >= LOAD_BATCH_SIZE) {
+            postBlocks(generation, new ArrayList<>(batch));
+            batch.clear();
+        }
+    }
+
+    /**
+     * 把一批块放入渲染队列，每帧只添加时间预算内的块
+     */
+    private void postBlocks(final int generation, final List<HyperEditData> batch) {
+        HyperThreadManager.getInstance().post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                for (final HyperEditData data : batch) {
+                    renderQueue.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == loadGeneration) {
+                                appendBlock(data);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * 所有批次之后放入渲染队列，前面的块都添加完成之后再回调
+     * @param error                             导入失败的原因，成功时为null
+     */
+    private void postFinish(final int generation, final Exception error) {
+        HyperThreadManager.getInstance().post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                renderQueue.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == loadGeneration) {
+                            finishLoad(error);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void appendBlock(HyperEditData data) {
+        if (data.getType() == HyperEditData.TYPE_IMAGE) {
+            addImageViewAtIndex(getLastIndex(), data.getImagePath());
+        } else {
+            CharSequence text = data.getContent() != null ? data.getContent() : data.getInputStr();
+            addTextViewAtIndex(getLastIndex(), text);
+        }
+    }
+
+    private void finishLoad(Exception error) {
+        loadFinished = true;
+        checkFirstScreen();
+        if (onHyperLoadListener == null) {
+            return;
+        }
+        if (error != null) {
+            onHyperLoadListener.onLoadFailed(error);
+        } else {
+            onHyperLoadListener.onLoadFinished(blocks.size());
+        }
     }
 
     /**
      * 在特定位置插入TextView
      *
      * @param index 位置
-     * @param editStr EditText显示的文字
+     * @param editStr EditText显示的文字，字符串中的b、i、u、s等标签在子线程转化为样式
      */
     public void addTextViewAtIndex(final int index, CharSequence editStr) {
         if (index==-1){
             return;
         }
         try {
-            TextView textView = createTextView("", EDIT_PADDING);
-            if (!TextUtils.isEmpty(keywords)) {
-                //搜索关键词高亮
-                SpannableStringBuilder textStr = HyperLibUtils.highlight(
-                        editStr.toString(), keywords,Color.parseColor("#EE5C42"));
-                textView.setText(textStr);
+            Block block = new Block(HyperEditData.TYPE_TEXT, viewTagIndex++);
+            if (HyperHtmlSpanParser.isMarkup(editStr)) {
+                //转化完成之前文字为空
+                setHtmlText(block, editStr);
             } else {
-                textView.setText(editStr);
+                block.text = editStr;
             }
-            allLayout.addView(textView, index);
+            if (!TextUtils.isEmpty(editStr)) {
+                textBlocks.put(block.slot, block);
+                if (searchIndex != null && block.text != null) {
+                    searchIndex.invalidate(block.slot);
+                }
+            }
+            insertBlock(index, block);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 开启或者关闭文章内搜索，开启时为所有文本块建立索引
+     * @param enabled                           是否开启
+     */
+    public void setSearchEnabled(boolean enabled) {
+        if (!enabled) {
+            if (searchIndex != null) {
+                searchIndex.clear();
+                searchIndex = null;
+            }
+            return;
+        }
+        if (searchIndex != null) {
+            return;
+        }
+        searchIndex = new HyperSearchIndex(new HyperSearchIndex.TextProvider() {
+            @Override
+            public CharSequence getText(int slot) {
+                Block block = textBlocks.get(slot);
+                return block == null ? null : getBlockText(block);
+            }
+        }, true);
+        for (int i = 0; i < textBlocks.size(); i++) {
+            searchIndex.invalidate(textBlocks.keyAt(i));
+        }
+    }
+
+    /**
+     * 查找关键词出现的所有位置，忽略大小写，按文章顺序排列
+     * 开启搜索时只在索引给出的候选块中逐字比较，否则扫描所有文本块，还没有创建view的块同样会被搜索
+     * @param query                             关键词
+     * @return                                  匹配结果集合
+     */
+    public List<HyperMatch> find(String query) {
+        List<HyperMatch> matches = new ArrayList<>();
+        if (TextUtils.isEmpty(query)) {
+            return matches;
+        }
+        BitSet candidates = searchIndex != null ? searchIndex.candidates(query) : null;
+        if (candidates != null && candidates.isEmpty()) {
+            return matches;
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (block.type == HyperEditData.TYPE_IMAGE
+                    || (candidates != null && !candidates.get(block.slot))) {
+                continue;
+            }
+            //先按候选块过滤，离线文章只解码候选块
+            CharSequence text = getBlockText(block);
+            if (text != null) {
+                HyperSearchIndex.findAll(i, text, query, true, matches);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 滚动到匹配的位置，文字还在子线程计算或者还没有创建view时滚动到所在的块
+     * @param match                             find返回的匹配结果
+     */
+    public void scrollToMatch(HyperMatch match) {
+        if (match == null || match.getBlockIndex() >= blocks.size()) {
+            return;
+        }
+        View child = blocks.get(match.getBlockIndex()).view;
+        int y = allLayout.getTop() + getBlockTop(match.getBlockIndex());
+        if (child instanceof TextView && ViewCompat.isLaidOut(child)) {
+            TextView textView = (TextView) child;
+            Layout layout = textView.getLayout();
+            if (layout != null && match.getStart() <= textView.getText().length()) {
+                int line = layout.getLineForOffset(match.getStart());
+                y += textView.getTotalPaddingTop() + layout.getLineTop(line);
+            }
+        }
+        //匹配的行放在屏幕上方三分之一处
+        smoothScrollTo(0, Math.max(0, y - getHeight() / 3));
+    }
+
+    /**
+     * 更换高亮关键词，直接替换已有文本块的文字，不需要重新加载内容
+     * @param keywords                          关键词，为空时清除高亮
+     */
+    public void updateKeywords(String keywords) {
+        updateKeywords(HyperHighlighter.compile(keywords));
+    }
+
+    /**
+     * 更换高亮器，可见的文本块优先计算，其余文本块在子线程分批计算，再回到主线程设置
+     * 连续调用时之前还未设置的结果会被丢弃，适合边输入边搜索，还没有创建view的块在创建时使用新的高亮器
+     * @param highlighter                       高亮器，为null时清除高亮
+     */
+    public void updateKeywords(HyperHighlighter highlighter) {
+        this.highlighter = highlighter;
+        int top = getScrollY();
+        int bottom = top + getHeight();
+        List<TextView> others = new ArrayList<>();
+        for (int i = 0; i < allLayout.getChildCount(); i++) {
+            View child = allLayout.getChildAt(i);
+            if (!(child instanceof TextView)
+                    || !(child.getTag(R.id.hyper_source_text) instanceof CharSequence)) {
+                continue;
+            }
+            TextView textView = (TextView) child;
+            if (child.getBottom() >= top && child.getTop() <= bottom) {
+                setPrecomputedText(textView, (CharSequence) child.getTag(R.id.hyper_source_text));
+            } else {
+                others.add(textView);
+            }
+        }
+        for (int start = 0; start < others.size(); start += HIGHLIGHT_BATCH_SIZE) {
+            int end = Math.min(start + HIGHLIGHT_BATCH_SIZE, others.size());
+            setPrecomputedText(others.subList(start, end).toArray(new TextView[0]));
+        }
+    }
+
+    /**
+     * 设置预计算的文字，已经缓存时直接设置，否则在子线程计算好之后再设置
+     * @param textView                          textView
+     * @param text                              文字
+     */
+    private void setPrecomputedText(final TextView textView, final CharSequence text) {
+        textView.setTag(R.id.hyper_source_text, text);
+        final PrecomputedTextCompat.Params params = getTextParams(textView);
+        final HyperHighlighter highlighter = this.highlighter;
+        PrecomputedTextCompat cached = HyperTextLayoutCache.getInstance()
+                .get(text, getHighlightKey(highlighter), params);
+        if (cached != null) {
+            //之前还未完成的计算结果不再设置
+            textView.setTag(R.id.hyper_pending_text, null);
+            applyPrecomputedText(textView, cached, text);
+            return;
+        }
+        //每次计算使用新的标记，只有最后一次计算的结果会被设置
+        final Object token = new Object();
+        textView.setTag(R.id.hyper_pending_text, token);
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                final PrecomputedTextCompat precomputed = precompute(text, highlighter, params);
+                HyperThreadManager.getInstance().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyPendingText(textView, token, text, precomputed);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 在子线程把html片段解析成带有样式的文字，解析之后的文字作为块的原始文字，更换关键词和搜索时不再解析
+     * 块已经创建view时再计算文字布局，否则重新估算高度
+     * @param block                             文本块
+     * @param html                              html片段
+     */
+    private void setHtmlText(final Block block, final CharSequence html) {
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                final CharSequence text = HyperHtmlSpanParser.parse(html);
+                HyperThreadManager.getInstance().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (textBlocks.get(block.slot) != block) {
+                            //解析期间已经被清除
+                            return;
+                        }
+                        block.text = text;
+                        if (block.view instanceof TextView) {
+                            setPrecomputedText((TextView) block.view, text);
+                            checkFirstScreen();
+                        } else {
+                            block.height = -1;
+                            scheduleWindowUpdate();
+                        }
+                        if (searchIndex != null) {
+                            searchIndex.invalidate(block.slot);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 在一个子线程任务中计算一批文本块，计算好之后一起设置
+     * @param textViews                         已经设置过文字的textView
+     */
+    private void setPrecomputedText(final TextView[] textViews) {
+        final PrecomputedTextCompat.Params params = getTextParams(textViews[0]);
+        final HyperHighlighter highlighter = this.highlighter;
+        final CharSequence[] texts = new CharSequence[textViews.length];
+        final Object token = new Object();
+        for (int i = 0; i < textViews.length; i++) {
+            texts[i] = (CharSequence) textViews[i].getTag(R.id.hyper_source_text);
+            textViews[i].setTag(R.id.hyper_pending_text, token);
+        }
+        HyperThreadManager.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                final PrecomputedTextCompat[] results = new PrecomputedTextCompat[texts.length];
+                for (int i = 0; i < texts.length; i++) {
+                    if (highlighter != HyperTextView.this.highlighter) {
+                        //又更换了关键词，剩下的不再计算
+                        break;
+                    }
+                    results[i] = precompute(texts[i], highlighter, params);
+                }
+                HyperThreadManager.getInstance().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < textViews.length; i++) {
+                            applyPendingText(textViews[i], token, texts[i], results[i]);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 子线程中高亮关键词，并计算文字布局
+     */
+    private PrecomputedTextCompat precompute(CharSequence text, HyperHighlighter highlighter,
+                                             PrecomputedTextCompat.Params params) {
+        CharSequence spanned = text;
+        if (highlighter != null) {
+            //搜索关键词高亮
+            spanned = highlighter.highlight(text);
+        }
+        return HyperTextLayoutCache.getInstance()
+                .precompute(text, spanned, getHighlightKey(highlighter), params);
+    }
+
+    private void applyPendingText(TextView textView, Object token, CharSequence text,
+                                  PrecomputedTextCompat precomputed) {
+        //计算期间已经被清除、回收复用或者重新计算的view不再设置
+        if (textView.getParent() != allLayout
+                || textView.getTag(R.id.hyper_pending_text) != token) {
+            return;
+        }
+        if (precomputed == null) {
+            //计算期间更换了高亮器，按新的高亮器重新计算
+            setPrecomputedText(textView, text);
+            return;
+        }
+        textView.setTag(R.id.hyper_pending_text, null);
+        applyPrecomputedText(textView, precomputed, text);
+        checkFirstScreen();
+    }
+
+    private static String getHighlightKey(HyperHighlighter highlighter) {
+        return highlighter == null ? null : highlighter.getKey();
+    }
+
+    private void applyPrecomputedText(TextView textView, PrecomputedTextCompat precomputed,
+                                      CharSequence text) {
+        try {
+            TextViewCompat.setPrecomputedText(textView, precomputed);
+        } catch (IllegalArgumentException e) {
+            //文字方向等属性和计算时不一致，直接设置文字
+            e.printStackTrace();
+            if (highlighter != null) {
+                textView.setText(highlighter.highlight(text));
+            } else {
+                textView.setText(text);
+            }
+        }
+    }
+
+    /**
+     * 所有文本块的文字属性都一样，只需要获取一次
+     */
+    private PrecomputedTextCompat.Params getTextParams(TextView textView) {
+        if (textParams == null) {
+            textParams = TextViewCompat.getTextMetricsParams(textView);
+        }
+        return textParams;
+    }
+
     /**
      * 在特定位置添加ImageView
      * @param index                             索引值
@@ -280,15 +1055,9 @@ public class HyperTextView extends ScrollView {
             return;
         }
         imagePaths.add(imagePath);
-        RelativeLayout imageLayout = createImageLayout();
-        if (imageLayout == null){
-            return;
-        }
-        final HyperImageView imageView = imageLayout.findViewById(R.id.edit_imageView);
-        imageView.setAbsolutePath(imagePath);
-        HyperManager.getInstance().loadImage(imagePath, imageView, rtImageHeight);
-        // onActivityResult无法触发动画，此处post处理
-        allLayout.addView(imageLayout, index);
+        Block block = new Block(HyperEditData.TYPE_IMAGE, viewTagIndex++);
+        block.imagePath = imagePath;
+        insertBlock(index, block);
     }
 
     /**
@@ -304,25 +1073,424 @@ public class HyperTextView extends ScrollView {
         if(imagePath==null || imagePath.length()==0){
             return;
         }
-        Bitmap bmp = BitmapFactory.decodeFile(imagePath);
-        final RelativeLayout imageLayout = createImageLayout();
+        Block block = new Block(HyperEditData.TYPE_IMAGE, viewTagIndex++);
+        block.imagePath = imagePath;
+        block.wordWrap = true;
+        insertBlock(index, block);
+    }
+
+    /**
+     * 插入块，插入的位置在已经创建view的区间中间时直接创建view，其余的等滚动到附近再创建
+     */
+    private void insertBlock(int index, Block block) {
+        ensureSpaces();
+        index = Math.min(index, blocks.size());
+        blocks.add(index, block);
+        if (index <= targetFirst) {
+            targetFirst++;
+            targetLast++;
+        } else if (index < targetLast) {
+            targetLast++;
+        }
+        if (index <= firstMaterialized) {
+            firstMaterialized++;
+            lastMaterialized++;
+        } else if (index < lastMaterialized) {
+            lastMaterialized++;
+            materialize(index);
+        }
+        scheduleWindowUpdate();
+    }
+
+    /**
+     * 添加第一个块时移除初始的提示文字，放入前后两个占位view
+     */
+    private void ensureSpaces() {
+        if (topSpace != null && topSpace.getParent() == allLayout) {
+            return;
+        }
+        int count = allLayout.getChildCount();
+        View[] children = new View[count];
+        for (int i = 0; i < count; i++) {
+            children[i] = allLayout.getChildAt(i);
+        }
+        allLayout.removeAllViews();
+        for (View child : children) {
+            HyperViewPool.getInstance().release(child);
+        }
+        if (topSpace == null) {
+            topSpace = new View(getContext());
+            bottomSpace = new View(getContext());
+        }
+        allLayout.addView(topSpace, new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT, 0));
+        allLayout.addView(bottomSpace, new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT, 0));
+    }
+
+    private void scheduleWindowUpdate() {
+        if (!windowUpdatePosted && !blocks.isEmpty()) {
+            windowUpdatePosted = true;
+            HyperThreadManager.getInstance().post(windowUpdater);
+        }
+    }
+
+    /**
+     * 按滚动位置调整创建view的块，可见区域上下一屏内的块创建view，超出三屏的块回收view放回复用池
+     * 中间留有余量，来回小幅滚动时不会反复创建和回收，可见区域内的块直接创建，其余的在渲染队列中按帧创建
+     */
+    private void updateWindow() {
+        int width = getContentWidth();
+        if (blocks.isEmpty() || width <= 0 || getHeight() <= 0) {
+            return;
+        }
+        int screen = getHeight();
+        int top = getScrollY() - allLayout.getTop() - allLayout.getPaddingTop();
+        int materializeTop = top - screen * MATERIALIZE_SCREENS;
+        int materializeBottom = top + screen * (MATERIALIZE_SCREENS + 1);
+        int recycleTop = top - screen * RECYCLE_SCREENS;
+        int recycleBottom = top + screen * (RECYCLE_SCREENS + 1);
+        int size = blocks.size();
+        int visibleFirst = size;
+        int visibleLast = 0;
+        int materializeFirst = size;
+        int materializeLast = 0;
+        int recycleFirst = size;
+        int recycleLast = 0;
+        int y = 0;
+        for (int i = 0; i < size; i++) {
+            int bottom = y + getBlockHeight(blocks.get(i), width);
+            if (visibleFirst == size && bottom > top) {
+                visibleFirst = i;
+            }
+            if (y < top + screen) {
+                visibleLast = i + 1;
+            }
+            if (materializeFirst == size && bottom > materializeTop) {
+                materializeFirst = i;
+            }
+            if (y < materializeBottom) {
+                materializeLast = i + 1;
+            }
+            if (recycleFirst == size && bottom > recycleTop) {
+                recycleFirst = i;
+            }
+            if (y < recycleBottom) {
+                recycleLast = i + 1;
+            }
+            y = bottom;
+        }
+        visibleLast = Math.max(visibleFirst, visibleLast);
+        materializeLast = Math.max(materializeFirst, materializeLast);
+        boolean hasWindow = firstMaterialized < lastMaterialized;
+        targetFirst = hasWindow && firstMaterialized >= recycleFirst && firstMaterialized <= materializeFirst
+                ? firstMaterialized : materializeFirst;
+        targetLast = hasWindow && lastMaterialized <= recycleLast && lastMaterialized >= materializeLast
+                ? lastMaterialized : materializeLast;
+        for (int i = lastMaterialized - 1; i >= firstMaterialized; i--) {
+            if (i < targetFirst || i >= targetLast) {
+                dematerialize(blocks.get(i));
+            }
+        }
+        int first = Math.max(firstMaterialized, targetFirst);
+        int last = Math.min(lastMaterialized, targetLast);
+        if (first >= last || first >= visibleLast || last <= visibleFirst) {
+            //剩下的view和可见区域不相连，从可见区域重新开始
+            for (int i = first; i < last; i++) {
+                dematerialize(blocks.get(i));
+            }
+            first = visibleFirst;
+            last = visibleFirst;
+        }
+        firstMaterialized = first;
+        lastMaterialized = last;
+        //第一屏优先，可见区域内的块直接创建
+        while (lastMaterialized < visibleLast) {
+            materialize(lastMaterialized);
+            lastMaterialized++;
+        }
+        while (firstMaterialized > visibleFirst) {
+            firstMaterialized--;
+            materialize(firstMaterialized);
+        }
+        int topHeight = 0;
+        int bottomHeight = 0;
+        for (int i = 0; i < size; i++) {
+            if (i < firstMaterialized) {
+                topHeight += getBlockHeight(blocks.get(i), width);
+            } else if (i >= lastMaterialized) {
+                bottomHeight += getBlockHeight(blocks.get(i), width);
+            }
+        }
+        setSpaceHeight(topSpace, topHeight);
+        setSpaceHeight(bottomSpace, bottomHeight);
+        scheduleWindowGrow();
+        checkFirstScreen();
+    }
+
+    private void scheduleWindowGrow() {
+        if (!windowGrowPosted && (firstMaterialized > targetFirst || lastMaterialized < targetLast)) {
+            windowGrowPosted = true;
+            renderQueue.add(windowGrower);
+        }
+    }
+
+    /**
+     * 在渲染队列中每次为一个可见区域之外的块创建view，先向下再向上，占位view减去对应的高度
+     */
+    private void growWindow() {
+        int width = getContentWidth();
+        if (width <= 0) {
+            return;
+        }
+        if (lastMaterialized < targetLast && lastMaterialized < blocks.size()) {
+            int height = getBlockHeight(blocks.get(lastMaterialized), width);
+            materialize(lastMaterialized);
+            lastMaterialized++;
+            setSpaceHeight(bottomSpace, Math.max(0, bottomSpace.getLayoutParams().height - height));
+        } else if (firstMaterialized > targetFirst) {
+            firstMaterialized--;
+            int height = getBlockHeight(blocks.get(firstMaterialized), width);
+            materialize(firstMaterialized);
+            setSpaceHeight(topSpace, Math.max(0, topSpace.getLayoutParams().height - height));
+        } else {
+            return;
+        }
+        scheduleWindowGrow();
+    }
+
+    /**
+     * 第一屏的块都已经创建view并且设置好文字时回调，内容不满一屏时等导入的块全部添加之后回调
+     */
+    private void checkFirstScreen() {
+        if (firstScreenNotified || onHyperRenderListener == null || blocks.isEmpty()) {
+            return;
+        }
+        int width = getContentWidth();
+        if (width <= 0 || getHeight() <= 0) {
+            return;
+        }
+        int top = getScrollY() - allLayout.getTop() - allLayout.getPaddingTop();
+        int bottom = top + getHeight();
+        int count = 0;
+        int y = 0;
+        for (int i = 0; i < blocks.size() && y < bottom; i++) {
+            Block block = blocks.get(i);
+            int blockBottom = y + getBlockHeight(block, width);
+            if (blockBottom > top) {
+                if (!isBlockRendered(block)) {
+                    return;
+                }
+                count++;
+            }
+            y = blockBottom;
+        }
+        if (y < bottom && !loadFinished) {
+            //内容还不满一屏，等待之后的块
+            return;
+        }
+        firstScreenNotified = true;
+        onHyperRenderListener.onFirstScreenRendered(count);
+    }
+
+    /**
+     * 块已经创建view，html片段已经解析，文字已经设置
+     */
+    private boolean isBlockRendered(Block block) {
+        if (block.view == null) {
+            return false;
+        }
+        if (block.type == HyperEditData.TYPE_IMAGE) {
+            return true;
+        }
+        boolean parsing = block.text == null && textBlocks.get(block.slot) == block;
+        return !parsing && block.view.getTag(R.id.hyper_pending_text) == null;
+    }
+
+    private void materialize(int index) {
+        Block block = blocks.get(index);
+        View view;
+        if (block.type == HyperEditData.TYPE_IMAGE) {
+            view = createImageBlockView(block);
+        } else {
+            if (block.documentIndex >= 0) {
+                //离线文章的文字在创建view时才解码，解码失败时显示为空
+                CharSequence text = getBlockText(block);
+                block.text = text != null ? text : "";
+            }
+            TextView textView = createTextView("", EDIT_PADDING);
+            if (TextUtils.isEmpty(block.text)) {
+                textView.setText(block.text);
+            } else {
+                //文字测量和断行在子线程完成，先占住位置，计算好之后再设置文字
+                setPrecomputedText(textView, block.text);
+            }
+            view = textView;
+        }
+        view.setTag(block.slot);
+        block.view = view;
+        allLayout.addView(view, index - firstMaterialized + 1);
+    }
+
+    /**
+     * 回收块的view，记录实际高度，之后用这个高度占位
+     */
+    private void dematerialize(Block block) {
+        View view = block.view;
+        if (view == null) {
+            return;
+        }
+        if (ViewCompat.isLaidOut(view)) {
+            block.height = view.getHeight();
+        }
+        block.view = null;
+        if (block.documentIndex >= 0) {
+            //回收之后不再持有离线文章的文字，下次创建view时重新解码
+            block.text = null;
+        }
+        allLayout.removeView(view);
+        HyperViewPool.getInstance().release(view);
+    }
+
+    private RelativeLayout createImageBlockView(Block block) {
+        RelativeLayout imageLayout = createImageLayout();
         HyperImageView imageView = imageLayout.findViewById(R.id.edit_imageView);
+        imageView.setAbsolutePath(block.imagePath);
+        if (!block.wordWrap) {
+            HyperManager.getInstance().loadImage(block.imagePath, imageView, rtImageHeight);
+            return imageLayout;
+        }
         //Picasso.with(getContext()).load(imagePath).centerCrop().into(imageView);
         //Glide.with(getContext()).load(imagePath).crossFade().centerCrop().into(imageView);
-        //imageView.setImageBitmap(bmp);    //
-        //imageView.setBitmap(bmp);         //这句去掉，保留下面的图片地址即可，优化图片占用
-        imageView.setAbsolutePath(imagePath);
-        // 调整imageView的高度
+        // 调整imageView的高度，只读取图片尺寸，不解码像素
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(block.imagePath, options);
         int imageHeight = 500;
-        if (bmp != null) {
-            imageHeight = allLayout.getWidth() * bmp.getHeight() / bmp.getWidth();
-            // 使用之后，还是回收掉吧
-            bmp.recycle();
+        if (options.outWidth > 0 && options.outHeight > 0) {
+            imageHeight = getContentWidth() * options.outHeight / options.outWidth;
         }
         RelativeLayout.LayoutParams lp = new RelativeLayout.LayoutParams(LayoutParams.MATCH_PARENT, imageHeight);
         lp.bottomMargin = 10;
         imageView.setLayoutParams(lp);
-        allLayout.addView(imageLayout, index);
+        return imageLayout;
+    }
+
+    /**
+     * 块的顶部在allLayout中的位置，已经布局的view使用实际位置，否则按之前的块的高度累加
+     */
+    private int getBlockTop(int index) {
+        View view = blocks.get(index).view;
+        if (view != null && ViewCompat.isLaidOut(view)) {
+            return view.getTop();
+        }
+        int width = getContentWidth();
+        int y = allLayout.getPaddingTop();
+        for (int i = 0; i < index; i++) {
+            y += getBlockHeight(blocks.get(i), width);
+        }
+        return y;
+    }
+
+    /**
+     * 已经布局的view使用实际高度，没有view的块使用上次显示时的高度或者估算的高度
+     */
+    private int getBlockHeight(Block block, int width) {
+        View view = block.view;
+        if (view != null && ViewCompat.isLaidOut(view) && !view.isLayoutRequested()) {
+            block.height = view.getHeight();
+        } else if (block.height < 0) {
+            block.height = estimateHeight(block, width);
+        }
+        return block.height;
+    }
+
+    /**
+     * 估算块的高度，文字按取样的平均字符宽度计算每段的行数，不测量整段文字
+     */
+    private int estimateHeight(Block block, int width) {
+        if (block.type == HyperEditData.TYPE_IMAGE) {
+            return Math.max(rtImageHeight, HyperLibUtils.dip2px(getContext(), IMAGE_MIN_HEIGHT));
+        }
+        if (estimatePaint == null) {
+            estimatePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+            estimatePaint.setTextSize(rtTextSize);
+        }
+        int lineHeight = estimatePaint.getFontMetricsInt(null) + rtTextLineSpace;
+        CharSequence text = block.text;
+        int lines = 1;
+        if (text == null && block.documentIndex >= 0) {
+            //离线文章还没有解码的块按数据的字节数估算，中文每个字三个字节，宽度和字号差不多
+            int bytesPerLine = Math.max(1, width * 3 / Math.max(1, rtTextSize));
+            lines = Math.max(1, (block.dataLength + bytesPerLine - 1) / bytesPerLine);
+        } else if (!TextUtils.isEmpty(text)) {
+            int length = text.length();
+            int sample = Math.min(length, ESTIMATE_SAMPLE_SIZE);
+            float charWidth = Math.max(1f, estimatePaint.measureText(text, 0, sample) / sample);
+            int charsPerLine = Math.max(1, (int) (width / charWidth));
+            lines = 0;
+            int paragraphStart = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || text.charAt(i) == '\n') {
+                    int paragraphLength = i - paragraphStart;
+                    lines += Math.max(1, (paragraphLength + charsPerLine - 1) / charsPerLine);
+                    paragraphStart = i + 1;
+                }
+            }
+        }
+        return lines * lineHeight + EDIT_PADDING * 2;
+    }
+
+    private int getContentWidth() {
+        return allLayout.getWidth() - allLayout.getPaddingLeft() - allLayout.getPaddingRight();
+    }
+
+    private static void setSpaceHeight(View space, int height) {
+        ViewGroup.LayoutParams params = space.getLayoutParams();
+        if (params.height != height) {
+            params.height = height;
+            space.setLayoutParams(params);
+        }
+    }
+
+    /**
+     * 块的描述，没有创建view时只保存文字或者图片地址，以及用来占位的高度
+     */
+    private static final class Block {
+
+        final int type;
+        /**
+         * 块的唯一标识，也是view的tag和搜索索引中的块标识
+         */
+        final int slot;
+        /**
+         * 显示的原始文字，html片段在解析完成之前为null，离线文章的文本块只在有view时不为null
+         */
+        CharSequence text;
+        /**
+         * 离线文章中的位置，不是离线文章的块为-1
+         */
+        int documentIndex = -1;
+        /**
+         * 离线文章中块数据的字节数，用来估算还没有解码的文字的高度
+         */
+        int dataLength;
+        String imagePath;
+        /**
+         * 按图片比例计算显示高度
+         */
+        boolean wordWrap;
+        /**
+         * 上次显示时的实际高度或者估算的高度，小于0时需要重新估算
+         */
+        int height = -1;
+        /**
+         * 靠近可见区域时才创建，回收之后为null
+         */
+        View view;
+
+        Block(int type, int slot) {
+            this.type = type;
+            this.slot = slot;
+        }
     }
 
 }
@@ -0,0 +1,45 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.edit.wrapper;
+
+import android.text.Editable;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 自定义Editable.Factory
+ *     revise: 传入的已经是Editable时直接使用，不再拷贝一份。子线程准备好的文本在主线程setText时不需要再复制
+ * </pre>
+ */
+public class HyperEditableFactory extends Editable.Factory {
+
+    private static final HyperEditableFactory INSTANCE = new HyperEditableFactory();
+
+    public static HyperEditableFactory getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Editable newEditable(CharSequence source) {
+        if (source instanceof Editable) {
+            return (Editable) source;
+        }
+        return super.newEditable(source);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 推送式的html解析
+ *     revise: 按顺序把文字和图片回调给Visitor，解析到第一个片段就可以开始显示，不需要先生成完整的集合
+ *             可以直接从Reader分段读取，只缓存当前的文字和被截断的标签，可以在子线程使用
+ * </pre>
+ */
+public final class HyperHtmlParser {
+
+    /**
+     * 每次从Reader读取的字符数
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * 被截断的标签最多缓存的长度，超过之后当作普通文字
+     */
+    private static final int MAX_PENDING_SIZE = 64 * 1024;
+
+    /**
+     * 解析结果的回调，在调用parse的线程回调
+     */
+    public interface Visitor {
+
+        /**
+         * 两张图片之间的一段文字，包括除了img之外的其他标签
+         * @param text                          文字，只在回调期间有效，需要保存时调用toString
+         * @param start                         起始位置
+         * @param end                           结束位置，不包含
+         */
+        void onText(CharSequence text, int start, int end);
+
+        /**
+         * 带有src的img标签
+         * @param src                           图片地址
+         */
+        void onImage(String src);
+    }
+
+    private HyperHtmlParser() {
+    }
+
+    /**
+     * 解析内存中的html
+     * @param html                              html内容
+     * @param visitor                           回调
+     */
+    public static void parse(CharSequence html, Visitor visitor) {
+        HyperHtmlTokenizer tokenizer = new HyperHtmlTokenizer(html);
+        int token;
+        while ((token = tokenizer.next()) != HyperHtmlTokenizer.TOKEN_END) {
+            if (token == HyperHtmlTokenizer.TOKEN_IMAGE) {
+                visitor.onImage(tokenizer.getImageSrc());
+            } else {
+                visitor.onText(html, tokenizer.getStart(), tokenizer.getEnd());
+            }
+        }
+    }
+
+    /**
+     * 从Reader分段读取并解析html，读取完成之后不会关闭Reader
+     * @param reader                            html输入
+     * @param visitor                           回调
+     * @throws IOException                      读取异常
+     */
+    public static void parse(Reader reader, Visitor visitor) throws IOException {
+        char[] chunk = new char[BUFFER_SIZE];
+        //还没有处理的内容，只包含被截断的标签
+        StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+        //当前这段文字，遇到图片或者读取完成时回调
+        StringBuilder text = new StringBuilder();
+        boolean finished = false;
+        while (!finished) {
+            int count = reader.read(chunk);
+            if (count < 0) {
+                finished = true;
+            } else {
+                buffer.append(chunk, 0, count);
+            }
+            boolean partial = !finished && buffer.length() < MAX_PENDING_SIZE;
+            HyperHtmlTokenizer tokenizer = new HyperHtmlTokenizer(buffer, partial);
+            int token;
+            while ((token = tokenizer.next()) != HyperHtmlTokenizer.TOKEN_END) {
+                if (token == HyperHtmlTokenizer.TOKEN_IMAGE) {
+                    if (text.length() > 0) {
+                        visitor.onText(text, 0, text.length());
+                        text.setLength(0);
+                    }
+                    visitor.onImage(tokenizer.getImageSrc());
+                } else {
+                    text.append(buffer, tokenizer.getStart(), tokenizer.getEnd());
+                }
+            }
+            buffer.delete(0, tokenizer.getConsumed());
+        }
+        if (text.length() > 0) {
+            visitor.onText(text, 0, text.length());
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.utils;
+
+import android.text.Spanned;
+import android.text.SpannableStringBuilder;
+
+import com.ns.yc.yccustomtextlib.edit.span.SpanStyleHelper;
+
+import java.util.Arrays;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : 把文字片段中的html标签转化为库里的样式span
+ *     revise: b/strong、i/em、u/ins、s/strike/del分别转化为加粗、斜体、下划线和删除线，同时加粗和斜体时使用BoldItalicSpan
+ *             br转化为换行，常见的字符实体会被解码，其他标签直接去掉，不完整的标签按普通文字处理
+ *             只扫描一遍，先记录样式区间，最后一次性设置span，不依赖view，需要在子线程调用
+ * </pre>
+ */
+public final class HyperHtmlSpanParser {
+
+    private HyperHtmlSpanParser() {
+    }
+
+    /**
+     * 是否需要解析，已经带有样式的文字和不包含标签、字符实体的文字不需要解析
+     * @param text                              文字
+     * @return                                  是否需要解析
+     */
+    public static boolean isMarkup(CharSequence text) {
+        if (text == null || text instanceof Spanned) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<' || c == '&') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析html片段
+     * @param html                              html片段
+     * @return                                  带有样式的文字
+     */
+    public static SpannableStringBuilder parse(CharSequence html) {
+        if (html == null) {
+            return new SpannableStringBuilder();
+        }
+        StringBuilder text = new StringBuilder(html.length());
+        int[] runs = parseRuns(html, text);
+        SpannableStringBuilder result = new SpannableStringBuilder(text);
+        SpanStyleHelper.setRuns(result, runs, runs.length);
+        return result;
+    }
+
+    /**
+     * 解析html片段，只计算文字和样式段，不创建span
+     * @param html                              html片段
+     * @param text                              输出去掉标签、解码字符实体之后的文字
+     * @return                                  位置和样式交替排列的样式段，可以交给SpanStyleHelper
+     */
+    public static int[] parseRuns(CharSequence html, StringBuilder text) {
+        int length = html.length();
+        //每种样式打开的次数，同一种样式可能嵌套
+        int[] counts = new int[4];
+        //样式变化的位置和变化之后的样式
+        int[] runs = new int[16];
+        int runCount = 0;
+        int style = 0;
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end = indexOfTagEnd(html, i);
+                if (end < 0) {
+                    text.append(c);
+                    i++;
+                    continue;
+                }
+                boolean close = html.charAt(i + 1) == '/';
+                int nameStart = close ? i + 2 : i + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < end && Character.isLetterOrDigit(html.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                int tag = getTagStyle(html, nameStart, nameEnd);
+                if (tag != 0) {
+                    int index = Integer.numberOfTrailingZeros(tag);
+                    if (close) {
+                        counts[index] = Math.max(0, counts[index] - 1);
+                    } else if (html.charAt(end - 1) != '/') {
+                        counts[index]++;
+                    }
+                    int newStyle = 0;
+                    for (int j = 0; j < counts.length; j++) {
+                        if (counts[j] > 0) {
+                            newStyle |= 1 << j;
+                        }
+                    }
+                    if (newStyle != style) {
+                        style = newStyle;
+                        //同一个位置的多次变化只保留最后的样式，</u></b><u>这样的标签不会把样式拆成两段
+                        if (runCount > 0 && runs[runCount - 2] == text.length()) {
+                            runCount -= 2;
+                        }
+                        int lastStyle = runCount > 0 ? runs[runCount - 1] : 0;
+                        if (style != lastStyle) {
+                            if (runCount + 2 > runs.length) {
+                                runs = Arrays.copyOf(runs, runs.length * 2);
+                            }
+                            runs[runCount++] = text.length();
+                            runs[runCount++] = style;
+                        }
+                    }
+                } else if (isName(html, nameStart, nameEnd, "br")
+                        || (close && (isName(html, nameStart, nameEnd, "p")
+                        || isName(html, nameStart, nameEnd, "div")))) {
+                    text.append('\n');
+                }
+                i = end + 1;
+            } else if (c == '&') {
+                i = HyperHtmlTokenizer.appendEntity(html, i, length, text);
+            } else {
+                text.append(c);
+                i++;
+            }
+        }
+        return Arrays.copyOf(runs, runCount);
+    }
+
+    /**
+     * 查找标签的结束位置，<后面必须是字母或者/加字母，否则按普通文字处理
+     * @return                                  >的位置，不是标签时返回-1
+     */
+    private static int indexOfTagEnd(CharSequence html, int start) {
+        int length = html.length();
+        int nameStart = start + 1;
+        if (nameStart < length && html.charAt(nameStart) == '/') {
+            nameStart++;
+        }
+        if (nameStart >= length || !Character.isLetter(html.charAt(nameStart))) {
+            return -1;
+        }
+        char quote = 0;
+        for (int i = nameStart + 1; i < length; i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            } else if (c == '<') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int getTagStyle(CharSequence html, int start, int end) {
+        if (isName(html, start, end, "b") || isName(html, start, end, "strong")) {
+            return SpanStyleHelper.BOLD;
+        } else if (isName(html, start, end, "i") || isName(html, start, end, "em")) {
+            return SpanStyleHelper.ITALIC;
+        } else if (isName(html, start, end, "u") || isName(html, start, end, "ins")) {
+            return SpanStyleHelper.UNDERLINE;
+        } else if (isName(html, start, end, "s") || isName(html, start, end, "strike")
+                || isName(html, start, end, "del")) {
+            return SpanStyleHelper.STRIKE_THROUGH;
+        }
+        return 0;
+    }
+
+    private static boolean isName(CharSequence html, int start, int end, String name) {
+        return HyperHtmlTokenizer.equalsIgnoreCase(html, start, end, name);
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+Copyright 2017 yangchong211（github.com/yangchong211）
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.ns.yc.yccustomtextlib.utils;
+
+/**
+ * <pre>
+ *     @author 杨充
+ *     blog  : https://github.com/yangchong211
+ *     time  : 2019/12/24
+ *     desc  : html分词器，把内容切分成文字和图片
+ *     revise: 只扫描一遍，不使用正则，文字只记录区间，需要时再截取，图片标签在扫描时直接解析出src，src中的字符实体会被解码
+ *             标签名和属性名不区分大小写，src支持双引号、单引号和不带引号，引号中的>不会结束标签
+ *             没有src的img标签当作普通文字，可以在子线程使用，同一个对象不能在多个线程共用
+ *             分段读取时内容可能在标签中间截断，截断的标签留到下一段内容中再解析
+ * </pre>
+ */
+public final class HyperHtmlTokenizer {
+
+    /**
+     * 已经到达末尾
+     */
+    public static final int TOKEN_END = 0;
+    /**
+     * 文字，包括除了img之外的其他标签
+     */
+    public static final int TOKEN_TEXT = 1;
+    /**
+     * 带有src的img标签
+     */
+    public static final int TOKEN_IMAGE = 2;
+    private static final int PARSE_FAILED = 0;
+    private static final int PARSE_IMAGE = 1;
+    private static final int PARSE_NEED_MORE = 2;
+    /**
+     * 字符实体的最大长度，超过时按普通文字处理
+     */
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private final CharSequence html;
+    private final int length;
+    /**
+     * 内容后面是否还有数据，为true时遇到截断的img标签就停止
+     */
+    private final boolean partial;
+    private int position;
+    private int tokenStart;
+    private int tokenEnd;
+    private int srcStart;
+    private int srcEnd;
+    /**
+     * 扫描文字时遇到的下一个图片标签，下一次直接返回
+     */
+    private int nextImageStart = -1;
+    private int nextImageEnd;
+    private int nextSrcStart;
+    private int nextSrcEnd;
+
+    public HyperHtmlTokenizer(CharSequence html) {
+        this(html, false);
+    }
+
+    HyperHtmlTokenizer(CharSequence html, boolean partial) {
+        this.html = html == null ? "" : html;
+        this.length = this.html.length();
+        this.partial = partial;
+    }
+
+    /**
+     * 读取下一个片段
+     * @return                                  片段类型，TOKEN_TEXT、TOKEN_IMAGE或者TOKEN_END
+     */
+    public int next() {
+        if (nextImageStart >= 0) {
+            tokenStart = nextImageStart;
+            tokenEnd = nextImageEnd;
+            srcStart = nextSrcStart;
+            srcEnd = nextSrcEnd;
+            position = nextImageEnd;
+            nextImageStart = -1;
+            return TOKEN_IMAGE;
+        }
+        if (position >= length) {
+            return TOKEN_END;
+        }
+        int start = position;
+        int i = position;
+        while (i < length) {
+            int result = html.charAt(i) == '<' ? parseImage(i) : PARSE_FAILED;
+            if (result == PARSE_NEED_MORE) {
+                //截断的标签之后的内容都不处理，getPosition停在标签开始的位置
+                position = length;
+                if (i == start) {
+                    tokenEnd = tokenStart = i;
+                    return TOKEN_END;
+                }
+                tokenStart = start;
+                tokenEnd = i;
+                return TOKEN_TEXT;
+            }
+            if (result == PARSE_IMAGE) {
+                if (i == start) {
+                    return next();
+                }
+                tokenStart = start;
+                tokenEnd = i;
+                position = i;
+                return TOKEN_TEXT;
+            }
+            i++;
+        }
+        tokenStart = start;
+        tokenEnd = length;
+        position = length;
+        return TOKEN_TEXT;
+    }
+
+    /**
+     * 当前片段在内容中的起始位置
+     */
+    public int getStart() {
+        return tokenStart;
+    }
+
+    /**
+     * 当前片段在内容中的结束位置，不包含
+     */
+    public int getEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * 已经处理完的内容长度，分段读取时之后的内容需要和下一段拼接再解析
+     */
+    int getConsumed() {
+        return position >= length ? tokenEnd : position;
+    }
+
+    /**
+     * 当前片段的原始内容，图片片段是整个img标签
+     */
+    public String getText() {
+        return html.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    /**
+     * 当前图片片段的src值，&amp;、&lt;、&gt;、&quot;、&apos;以及数字形式的字符实体会被解码
+     */
+    public String getImageSrc() {
+        StringBuilder src = null;
+        int i = srcStart;
+        while (i < srcEnd) {
+            char c = html.charAt(i);
+            if (c == '&') {
+                if (src == null) {
+                    src = new StringBuilder(srcEnd - srcStart);
+                    src.append(html, srcStart, i);
+                }
+                i = appendEntity(html, i, srcEnd, src);
+            } else {
+                if (src != null) {
+                    src.append(c);
+                }
+                i++;
+            }
+        }
+        return src != null ? src.toString() : html.subSequence(srcStart, srcEnd).toString();
+    }
+
+    /**
+     * 解码从start开始的字符实体，无法识别时原样保留&
+     * @param limit                             实体不能超过的位置
+     * @return                                  下一个要处理的位置
+     */
+    static int appendEntity(CharSequence html, int start, int limit, StringBuilder text) {
+        int max = Math.min(limit, start + MAX_ENTITY_LENGTH);
+        int end = -1;
+        for (int i = start + 1; i < max; i++) {
+            if (html.charAt(i) == ';') {
+                end = i;
+                break;
+            }
+        }
+        int value = end < 0 ? -1 : decodeEntity(html, start + 1, end);
+        if (value < 0) {
+            text.append('&');
+            return start + 1;
+        }
+        text.appendCodePoint(value);
+        return end + 1;
+    }
+
+    private static int decodeEntity(CharSequence html, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        if (html.charAt(start) == '#') {
+            boolean hex = start + 1 < end && (html.charAt(start + 1) == 'x' || html.charAt(start + 1) == 'X');
+            int radix = hex ? 16 : 10;
+            int digitStart = hex ? start + 2 : start + 1;
+            if (digitStart >= end) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = digitStart; i < end; i++) {
+                int digit = Character.digit(html.charAt(i), radix);
+                if (digit < 0 || value > Character.MAX_CODE_POINT) {
+                    return -1;
+                }
+                value = value * radix + digit;
+            }
+            return Character.isValidCodePoint(value) ? value : -1;
+        }
+        if (equalsIgnoreCase(html, start, end, "lt")) {
+            return '<';
+        } else if (equalsIgnoreCase(html, start, end, "gt")) {
+            return '>';
+        } else if (equalsIgnoreCase(html, start, end, "amp")) {
+            return '&';
+        } else if (equalsIgnoreCase(html, start, end, "quot")) {
+            return '"';
+        } else if (equalsIgnoreCase(html, start, end, "apos")) {
+            return '\'';
+        } else if (equalsIgnoreCase(html, start, end, "nbsp")) {
+            return ' ';
+        }
+        return -1;
+    }
+
+    /**
+     * 不区分大小写比较[start,end)和name，name是小写
+     */
+    static boolean equalsIgnoreCase(CharSequence html, int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase(html.charAt(start + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析从start开始的img标签，成功时记录为下一个图片片段
+     * @return                                  带有src的完整标签返回PARSE_IMAGE，
+     *                                          分段读取时标签被截断返回PARSE_NEED_MORE
+     */
+    private int parseImage(int start) {
+        if (start + 4 >= length) {
+            return isTruncated(start, "<img") ? PARSE_NEED_MORE : PARSE_FAILED;
+        }
+        char c = html.charAt(start + 4);
+        if (!regionMatches(start + 1, "img") || (c != '>' && c != '/' && !Character.isWhitespace(c))) {
+            return PARSE_FAILED;
+        }
+        int i = start + 4;
+        int valueStart = -1;
+        int valueEnd = -1;
+        while (true) {
+            while (i < length && (html.charAt(i) == '/' || Character.isWhitespace(html.charAt(i)))) {
+                i++;
+            }
+            if (i >= length) {
+                return partial ? PARSE_NEED_MORE : PARSE_FAILED;
+            }
+            if (html.charAt(i) == '>') {
+                i++;
+                break;
+            }
+            int nameStart = i;
+            while (i < length && !isNameEnd(html.charAt(i))) {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < length && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i >= length || html.charAt(i) != '=') {
+                continue;
+            }
+            i++;
+            while (i < length && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                return partial ? PARSE_NEED_MORE : PARSE_FAILED;
+            }
+            char quote = html.charAt(i);
+            int valueFrom;
+            int valueTo;
+            if (quote == '"' || quote == '\'') {
+                valueFrom = ++i;
+                while (i < length && html.charAt(i) != quote) {
+                    i++;
+                }
+                if (i >= length) {
+                    return partial ? PARSE_NEED_MORE : PARSE_FAILED;
+                }
+                valueTo = i++;
+            } else {
+                valueFrom = i;
+                while (i < length && html.charAt(i) != '>' && !Character.isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                valueTo = i;
+            }
+            if (valueStart < 0 && nameEnd - nameStart == 3 && regionMatches(nameStart, "src")) {
+                valueStart = valueFrom;
+                valueEnd = valueTo;
+            }
+        }
+        if (valueStart < 0) {
+            return PARSE_FAILED;
+        }
+        //<img src="1.jpg"></img>写法的结束标签一起作为图片片段
+        if (i + 6 <= length) {
+            if (regionMatches(i, "</img>")) {
+                i += 6;
+            }
+        } else if (isTruncated(i, "</img>")) {
+            return PARSE_NEED_MORE;
+        }
+        nextImageStart = start;
+        nextImageEnd = i;
+        nextSrcStart = valueStart;
+        nextSrcEnd = valueEnd;
+        return PARSE_IMAGE;
+    }
+
+    /**
+     * 分段读取时，从offset到末尾的内容是否是target的开头
+     */
+    private boolean isTruncated(int offset, String target) {
+        return partial && regionMatches(offset, target.substring(0, length - offset));
+    }
+
+    private static boolean isNameEnd(char c) {
+        return c == '=' || c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+
+    /**
+     * 不区分大小写比较，target中的字母是小写
+     */
+    private boolean regionMatches(int offset, String target) {
+        for (int j = 0; j < target.length(); j++) {
+            if (Character.toLowerCase(html.charAt(offset + j)) != target.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
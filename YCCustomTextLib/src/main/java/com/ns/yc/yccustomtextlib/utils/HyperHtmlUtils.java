@@ -1,5 +1,20 @@
 package com.ns.yc.yccustomtextlib.utils;
 
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+
+import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
+import com.ns.yc.yccustomtextlib.edit.model.HyperJsonCodec;
+import com.ns.yc.yccustomtextlib.edit.span.InterInlineSpan;
+import com.ns.yc.yccustomtextlib.edit.span.SpanStyleHelper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * <pre>
  *     @author 杨充
@@ -11,84 +26,238 @@ package com.ns.yc.yccustomtextlib.utils;
  */
 public final class HyperHtmlUtils {
 
+    private static final int EVENT_START = 1 << 4;
+    /**
+     * 标签按这个顺序嵌套
+     */
+    private static final int[] TAG_ORDER = {SpanStyleHelper.BOLD, SpanStyleHelper.ITALIC,
+            SpanStyleHelper.UNDERLINE, SpanStyleHelper.STRIKE_THROUGH};
+    /**
+     * 复用的StringBuilder超过这个容量就不再复用
+     */
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    /**
+     * 每个线程复用一个StringBuilder，保存样式很多的文章时不会为每个片段分配内存
+     */
+    private static final ThreadLocal<StringBuilder> BUILDER_POOL = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
 
     /**
-     * 将字符串格式化成JSON的格式
+     * 将字符串格式化成JSON的格式，字符串中的逗号、括号等保持不变
+     * 内容很大时直接使用HyperJsonCodec读写Reader和Writer
      * @param strJson                           字符串
      * @return                                  json
      */
     public static String stringToJson(String strJson) {
-        // 计数tab的个数
-        int tabNum = 0;
-        StringBuilder jsonFormat = new StringBuilder();
-        int length = strJson.length();
-        char last = 0;
-        for (int i = 0; i < length; i++) {
-            char c = strJson.charAt(i);
-            if (c == '{') {
-                tabNum++;
-                jsonFormat.append(c).append("\n");
-                jsonFormat.append(getSpaceOrTab(tabNum));
+        StringWriter writer = new StringWriter(strJson.length() + strJson.length() / 4);
+        try {
+            HyperJsonCodec.format(new StringReader(strJson), writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 将html内容转化为富文本数据，文字中的样式标签转化为span，可以在子线程调用
+     * @param html                              html内容
+     * @return                                  富文本数据集合
+     */
+    public static List<HyperEditData> htmlToEditData(String html) {
+        final List<HyperEditData> dataList = new ArrayList<>();
+        if (html == null || html.length() == 0) {
+            return dataList;
+        }
+        HyperHtmlParser.parse(html, new HyperHtmlParser.Visitor() {
+            @Override
+            public void onText(CharSequence text, int start, int end) {
+                HyperEditData data = new HyperEditData();
+                data.setType(HyperEditData.TYPE_TEXT);
+                CharSequence fragment = text.subSequence(start, end);
+                if (HyperHtmlSpanParser.isMarkup(fragment)) {
+                    //加粗、斜体等标签转化为样式，编辑器直接使用带有样式的内容
+                    SpannableStringBuilder content = HyperHtmlSpanParser.parse(fragment);
+                    data.setContent(content);
+                    data.setInputStr(content.toString());
+                } else {
+                    data.setInputStr(fragment.toString());
+                }
+                dataList.add(data);
             }
-            else if (c == '}') {
-                tabNum--;
-                jsonFormat.append("\n");
-                jsonFormat.append(getSpaceOrTab(tabNum));
-                jsonFormat.append(c);
+
+            @Override
+            public void onImage(String src) {
+                HyperEditData data = new HyperEditData();
+                data.setType(HyperEditData.TYPE_IMAGE);
+                data.setImagePath(src);
+                dataList.add(data);
             }
-            else if (c == ',') {
-                jsonFormat.append(c).append("\n");
-                jsonFormat.append(getSpaceOrTab(tabNum));
+        });
+        return dataList;
+    }
+
+    /**
+     * 将内容转化为html格式，加粗、斜体、下划线和删除线转化为正确嵌套的标签，可以在子线程调用
+     * @param content                           内容，比如EditText的Editable
+     * @return                                  html片段
+     */
+    public static String stringToHtml(CharSequence content){
+        if (content == null || content.length() == 0) {
+            return "";
+        }
+        StringBuilder builder = BUILDER_POOL.get();
+        builder.setLength(0);
+        appendHtml(builder, content);
+        String html = builder.toString();
+        if (builder.capacity() > MAX_POOLED_CAPACITY) {
+            //偶尔很长的内容不要一直占着内存
+            BUILDER_POOL.set(new StringBuilder());
+        } else {
+            builder.setLength(0);
+        }
+        return html;
+    }
+
+    /**
+     * 把带有样式的文字转化为html，追加到builder
+     * 所有样式的起止位置排序之后扫描一遍，每个位置只比较当前打开的标签，不按片段重复查询样式
+     * @param builder                           输出
+     * @param content                           内容
+     */
+    public static void appendHtml(StringBuilder builder, CharSequence content) {
+        int length = content.length();
+        if (!(content instanceof Spanned)) {
+            appendEscaped(builder, content, 0, length);
+            return;
+        }
+        Spanned spanned = (Spanned) content;
+        InterInlineSpan[] spans = spanned.getSpans(0, length, InterInlineSpan.class);
+        //每个事件是 位置<<5 | 开始标记 | 样式，排序后按位置依次处理
+        long[] events = new long[spans.length * 2];
+        int eventCount = 0;
+        for (InterInlineSpan span : spans) {
+            int style = SpanStyleHelper.getStyle(span.getType());
+            int start = spanned.getSpanStart(span);
+            int end = Math.min(spanned.getSpanEnd(span), length);
+            if (style == 0 || start < 0 || start >= end) {
+                continue;
             }
-            else if (c == ':') {
-                jsonFormat.append(c).append(" ");
-            } else if (c == '[') {
-                tabNum++;
-                char next = strJson.charAt(i + 1);
-                if (next == ']') {
-                    jsonFormat.append(c);
-                }
-                else {
-                    jsonFormat.append(c).append("\n");
-                    jsonFormat.append(getSpaceOrTab(tabNum));
-                }
-            } else if (c == ']') {
-                tabNum--;
-                if (last == '[') {
-                    jsonFormat.append(c);
+            events[eventCount++] = ((long) start << 5) | EVENT_START | style;
+            events[eventCount++] = ((long) end << 5) | style;
+        }
+        if (eventCount == 0) {
+            appendEscaped(builder, content, 0, length);
+            return;
+        }
+        Arrays.sort(events, 0, eventCount);
+        //同一种样式可能有多个重叠的span，按计数判断是否生效
+        int[] counts = new int[TAG_ORDER.length];
+        int[] openTags = new int[TAG_ORDER.length];
+        int openCount = 0;
+        int position = 0;
+        int index = 0;
+        while (position < length) {
+            while (index < eventCount && (int) (events[index] >>> 5) == position) {
+                long event = events[index++];
+                int delta = (event & EVENT_START) != 0 ? 1 : -1;
+                for (int i = 0; i < TAG_ORDER.length; i++) {
+                    if ((event & TAG_ORDER[i]) != 0) {
+                        counts[i] += delta;
+                    }
                 }
-                else {
-                    jsonFormat.append("\n").append(getSpaceOrTab(tabNum)).append(c);
+            }
+            int next = index < eventCount ? (int) (events[index] >>> 5) : length;
+            int style = 0;
+            for (int i = 0; i < TAG_ORDER.length; i++) {
+                if (counts[i] > 0) {
+                    style |= TAG_ORDER[i];
                 }
             }
-            else {
-                jsonFormat.append(c);
+            //先关闭新样式中不存在的标签，以及它之后打开的标签，保证标签正确嵌套
+            int keep = 0;
+            while (keep < openCount && (style & openTags[keep]) != 0) {
+                keep++;
+            }
+            while (openCount > keep) {
+                appendTag(builder, openTags[--openCount], true);
             }
-            last = c;
+            for (int tag : TAG_ORDER) {
+                if ((style & tag) != 0 && !isOpen(openTags, openCount, tag)) {
+                    openTags[openCount++] = tag;
+                    appendTag(builder, tag, false);
+                }
+            }
+            appendEscaped(builder, content, position, next);
+            position = next;
+        }
+        while (openCount > 0) {
+            appendTag(builder, openTags[--openCount], true);
         }
-        return jsonFormat.toString();
     }
 
     /**
-     * 换行操作
-     * @param tabNum                            tabNum
-     * @return
+     * 转义html特殊字符，换行转化为br标签
+     * @param builder                           输出
+     * @param text                              文字
+     * @param start                             起始位置
+     * @param end                               结束位置，不包含
      */
-    private static String getSpaceOrTab(int tabNum) {
-        StringBuilder sbTab = new StringBuilder();
-        for (int i = 0; i < tabNum; i++) {
-            sbTab.append('\t');
+    public static void appendEscaped(StringBuilder builder, CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                case '\n':
+                    builder.append("<br>");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
         }
-        return sbTab.toString();
     }
 
-    /**
-     * 将内容转化为html格式
-     * @param content                           内容
-     * @return
-     */
-    public static String stringToHtml(String content){
-        return null;
+    private static boolean isOpen(int[] openTags, int openCount, int tag) {
+        for (int i = 0; i < openCount; i++) {
+            if (openTags[i] == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendTag(StringBuilder builder, int tag, boolean close) {
+        builder.append(close ? "</" : "<");
+        switch (tag) {
+            case SpanStyleHelper.BOLD:
+                builder.append('b');
+                break;
+            case SpanStyleHelper.ITALIC:
+                builder.append('i');
+                break;
+            case SpanStyleHelper.UNDERLINE:
+                builder.append('u');
+                break;
+            default:
+                builder.append("strike");
+                break;
+        }
+        builder.append('>');
     }
 
 }
@@ -31,10 +31,7 @@ import android.os.Handler;
 import android.os.ParcelFileDescriptor;
 import android.os.ResultReceiver;
 import android.support.annotation.NonNull;
-import android.text.Spannable;
 import android.text.SpannableStringBuilder;
-import android.text.style.CharacterStyle;
-import android.text.style.ForegroundColorSpan;
 import android.util.Base64;
 import android.view.View;
 import android.view.ViewGroup;
@@ -42,6 +39,8 @@ import android.view.Window;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 
+import com.ns.yc.yccustomtextlib.edit.manager.HyperHighlighter;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -49,9 +48,8 @@ import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * <pre>
@@ -64,10 +62,6 @@ import java.util.regex.Pattern;
  */
 public final class HyperLibUtils {
 
-    private static final String IMG_REGEX1 = "<img.*?src=\\\"(.*?)\\\".*?>";
-    private static final String IMG_REGEX2 = "<(img|IMG)(.*?)(/>|></img>|>)";
-    private static final String IMG_REGEX3 = "(src|SRC)=(\"|\')(.*?)(\"|\')";
-
     /**
      * dp转化为px
      * @param context                   上下文
@@ -80,26 +74,79 @@ public final class HyperLibUtils {
     }
 
     /**
-     * 关键字高亮显示
+     * 获取去掉首尾空白后的长度，效果和toString().trim().length()一致，但不会拷贝字符串
+     * @param text                      文本
+     * @return                          长度
+     */
+    public static int getTrimLength(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int start = getTrimStart(text, 0, text.length());
+        return getTrimEnd(text, start, text.length()) - start;
+    }
+
+    /**
+     * 获取[start,end)范围内去掉开头空白后的起始位置，空白的判断和String.trim()一致
+     * @param text                      文本
+     * @param start                     起始位置
+     * @param end                       结束位置
+     * @return                          第一个非空白字符的位置，全是空白时返回end
+     */
+    public static int getTrimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * 获取[start,end)范围内去掉末尾空白后的结束位置，空白的判断和String.trim()一致
+     * @param text                      文本
+     * @param start                     起始位置
+     * @param end                       结束位置
+     * @return                          最后一个非空白字符之后的位置，全是空白时返回start
+     */
+    public static int getTrimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * 去掉为null和空字符串的图片路径，批量插入图片前先过滤，没有有效路径时不会拆分当前的文字
+     * @param imagePaths                图片路径地址集合，可以为null
+     * @return                          有效的图片路径，顺序不变，没有时返回空集合
+     */
+    public static List<String> getValidImagePaths(List<String> imagePaths) {
+        List<String> validPaths = new ArrayList<>();
+        if (imagePaths == null) {
+            return validPaths;
+        }
+        for (String imagePath : imagePaths) {
+            if (imagePath != null && imagePath.length() > 0) {
+                validPaths.add(imagePath);
+            }
+        }
+        return validPaths;
+    }
+
+    /**
+     * 关键字高亮显示，关键词按字面匹配
+     * 每次调用都会重新构建高亮器，多个文本块请使用同一个HyperHighlighter
      * @param target                    需要高亮的关键字
      * @param text	                    需要显示的文字
      * @return                          spannable
      */
+    @Deprecated
     public static SpannableStringBuilder highlight(String text, String target, int color) {
-        SpannableStringBuilder spannable = new SpannableStringBuilder(text);
-        CharacterStyle span;
-        try {
-            Pattern p = Pattern.compile(target);
-            Matcher m = p.matcher(text);
-            while (m.find()) {
-                // 需要重复！
-                span = new ForegroundColorSpan(color);
-                spannable.setSpan(span, m.start(), m.end(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        HyperHighlighter highlighter = HyperHighlighter.compile(
+                Collections.singletonList(target), false, color);
+        if (highlighter == null) {
+            return new SpannableStringBuilder(text);
         }
-        return spannable;
+        return highlighter.highlight(text);
     }
 
     /**
@@ -109,18 +156,9 @@ public final class HyperLibUtils {
      */
     public static List<String> cutStringByImgTag(String targetStr) {
         List<String> splitTextList = new ArrayList<>();
-        Pattern pattern = Pattern.compile(IMG_REGEX1);
-        Matcher matcher = pattern.matcher(targetStr);
-        int lastIndex = 0;
-        while (matcher.find()) {
-            if (matcher.start() > lastIndex) {
-                splitTextList.add(targetStr.substring(lastIndex, matcher.start()));
-            }
-            splitTextList.add(targetStr.substring(matcher.start(), matcher.end()));
-            lastIndex = matcher.end();
-        }
-        if (lastIndex != targetStr.length()) {
-            splitTextList.add(targetStr.substring(lastIndex));
+        HyperHtmlTokenizer tokenizer = new HyperHtmlTokenizer(targetStr);
+        while (tokenizer.next() != HyperHtmlTokenizer.TOKEN_END) {
+            splitTextList.add(tokenizer.getText());
         }
         return splitTextList;
     }
@@ -128,30 +166,17 @@ public final class HyperLibUtils {
 
     /**
      * 获取img标签中的src值
+     * 支持<img alt="" src="1.jpg"/>、<img alt="" src='1.jpg'></img>和<IMG SRC="1.jpg">等写法
      * @param content                   内容
-     * @return
+     * @return                          最后一个img标签的src，没有时返回null
      */
     public static String getImgSrc(String content){
         String strSrc = null;
-        //目前img标签标示有3种表达式
-        //<img alt="" src="1.jpg"/>   <img alt="" src="1.jpg"></img>     <img alt="" src="1.jpg">
-        //开始匹配content中的<img />标签
-        Pattern pImg = Pattern.compile(IMG_REGEX2);
-        Matcher mImg = pImg.matcher(content);
-        boolean resultImg = mImg.find();
-        if (resultImg) {
-            while (resultImg) {
-                //获取到匹配的<img />标签中的内容
-                String strImg = mImg.group(2);
-                //开始匹配<img />标签中的src
-                Pattern pSrc = Pattern.compile(IMG_REGEX3);
-                Matcher mSrc = pSrc.matcher(strImg);
-                if (mSrc.find()) {
-                    strSrc = mSrc.group(3);
-                }
-                //结束匹配<img />标签中的src
-                //匹配content中是否存在下一个<img />标签，有则继续以上步骤匹配<img />标签中的src
-                resultImg = mImg.find();
+        HyperHtmlTokenizer tokenizer = new HyperHtmlTokenizer(content);
+        int token;
+        while ((token = tokenizer.next()) != HyperHtmlTokenizer.TOKEN_END) {
+            if (token == HyperHtmlTokenizer.TOKEN_IMAGE) {
+                strSrc = tokenizer.getImageSrc();
             }
         }
         return strSrc;
@@ -159,31 +184,29 @@ public final class HyperLibUtils {
 
     /**
      * 从html文本中提取图片地址，或者文本内容
+     * 同时需要图片和文本，或者需要边解析边处理时，使用HyperHtmlParser
      * @param html                      传入html文本
      * @param isGetImage                true获取图片，false获取文本
      * @return
      */
-    public static ArrayList<String> getTextFromHtml(String html, boolean isGetImage){
-        ArrayList<String> imageList = new ArrayList<>();
-        ArrayList<String> textList = new ArrayList<>();
-        //根据img标签分割出图片和字符串
-        List<String> list = cutStringByImgTag(html);
-        for (int i = 0; i < list.size(); i++) {
-            String text = list.get(i);
-            if (text.contains("<img") && text.contains("src=")) {
-                //从img标签中获取图片地址
-                String imagePath = getImgSrc(text);
-                imageList.add(imagePath);
-            } else {
-                textList.add(text);
+    public static ArrayList<String> getTextFromHtml(String html, final boolean isGetImage){
+        final ArrayList<String> list = new ArrayList<>();
+        HyperHtmlParser.parse(html == null ? "" : html, new HyperHtmlParser.Visitor() {
+            @Override
+            public void onText(CharSequence text, int start, int end) {
+                if (!isGetImage) {
+                    list.add(text.subSequence(start, end).toString());
+                }
             }
-        }
-        //判断是获取图片还是文本
-        if (isGetImage) {
-            return imageList;
-        } else {
-            return textList;
-        }
+
+            @Override
+            public void onImage(String src) {
+                if (isGetImage) {
+                    list.add(src);
+                }
+            }
+        });
+        return list;
     }
 
     /**
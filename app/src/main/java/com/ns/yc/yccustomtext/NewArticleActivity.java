@@ -27,14 +27,12 @@ import android.widget.TextView;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.target.SimpleTarget;
 import com.bumptech.glide.request.transition.Transition;
-import com.google.gson.Gson;
 import com.ns.yc.yccustomtextlib.edit.inter.OnHyperChangeListener;
 import com.ns.yc.yccustomtextlib.edit.manager.HyperManager;
 import com.ns.yc.yccustomtextlib.edit.inter.ImageLoader;
 import com.ns.yc.yccustomtextlib.edit.inter.OnHyperEditListener;
 import com.ns.yc.yccustomtextlib.edit.inter.OnHyperTextListener;
-import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
-import com.ns.yc.yccustomtextlib.utils.HyperHtmlUtils;
+import com.ns.yc.yccustomtextlib.edit.model.HyperJsonCodec;
 import com.ns.yc.yccustomtextlib.utils.HyperLibUtils;
 import com.ns.yc.yccustomtextlib.edit.view.HyperTextEditor;
 import com.ns.yc.yccustomtextlib.edit.view.HyperTextView;
@@ -43,6 +41,9 @@ import com.zhihu.matisse.Matisse;
 import com.zhihu.matisse.MimeType;
 import com.zhihu.matisse.internal.entity.CaptureStrategy;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 import cn.ycbjie.ycstatusbarlib.bar.StateAppBar;
@@ -63,7 +64,6 @@ public class NewArticleActivity extends AppCompatActivity {
     private int screenWidth;
     private int screenHeight;
     private Disposable subsInsert;
-    private Disposable mDisposable;
 
 
     @Override
@@ -168,12 +168,14 @@ public class NewArticleActivity extends AppCompatActivity {
         tv_5.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                List<HyperEditData> editList = hte_content.buildEditData();
-                //生成json
-                Gson gson = new Gson();
-                String content = gson.toJson(editList);
-                //转化成json字符串
-                String string = HyperHtmlUtils.stringToJson(content);
+                //直接把文档中的块写成换行缩进的json
+                StringWriter writer = new StringWriter();
+                try {
+                    HyperJsonCodec.write(hte_content.getDocument().getBlocks(), writer, true);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                String string = writer.toString();
                 Intent intent = new Intent(NewArticleActivity.this, TextActivity.class);
                 intent.putExtra("content", string);
                 startActivity(intent);
@@ -260,9 +262,6 @@ public class NewArticleActivity extends AppCompatActivity {
             if (subsInsert != null && subsInsert.isDisposed()){
                 subsInsert.dispose();
             }
-            if (mDisposable != null && !mDisposable.isDisposed()){
-                mDisposable.dispose();
-            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -286,6 +285,7 @@ public class NewArticleActivity extends AppCompatActivity {
      * 异步方式插入图片
      */
     private void insertImagesSync(final Intent data){
+        final List<String> imagePaths = new ArrayList<>();
         Observable.create(new ObservableOnSubscribe<String>() {
             @Override
             public void subscribe(ObservableEmitter<String> emitter) {
@@ -320,6 +320,8 @@ public class NewArticleActivity extends AppCompatActivity {
                 .subscribe(new Observer<String>() {
                     @Override
                     public void onComplete() {
+                        //所有图片压缩完成后一次性插入，只触发一次布局
+                        hte_content.insertImages(imagePaths);
                         ToastUtils.showRoundRectToast("图片插入成功");
                     }
 
@@ -335,101 +337,33 @@ public class NewArticleActivity extends AppCompatActivity {
 
                     @Override
                     public void onNext(String imagePath) {
-                        hte_content.insertImage(imagePath);
+                        imagePaths.add(imagePath);
                     }
                 });
     }
 
 
     /**
-     * 异步方式显示数据
+     * 异步方式显示数据，解析在子线程，view按帧分批添加，第一屏优先显示
      */
     private void showDataSync(final String html){
         if (html==null || html.length()==0){
             return;
         }
-        htv_content.clearAllLayout();
-        Observable.create(new ObservableOnSubscribe<String>() {
-            @Override
-            public void subscribe(ObservableEmitter<String> emitter) {
-                showEditData(emitter, html);
-            }
-        })
-                //.onBackpressureBuffer()
-                .subscribeOn(Schedulers.io())//生产事件在io
-                .observeOn(AndroidSchedulers.mainThread())//消费事件在UI线程
-                .subscribe(new Observer<String>() {
-                    @Override
-                    public void onComplete() {
-
-                    }
-
-                    @Override
-                    public void onError(Throwable e) {
-                        ToastUtils.showRoundRectToast("解析错误：图片不存在或已损坏");
-                    }
-
-                    @Override
-                    public void onSubscribe(Disposable d) {
-                        mDisposable = d;
-                    }
-
-                    @Override
-                    public void onNext(String text) {
-                        try {
-                            htv_content.setVisibility(View.VISIBLE);
-                            hte_content.setVisibility(View.GONE);
-                            if (htv_content !=null) {
-                                if (text.contains("<img") && text.contains("src=")) {
-                                    //imagePath可能是本地路径，也可能是网络地址
-                                    String imagePath = HyperLibUtils.getImgSrc(text);
-                                    htv_content.addImageViewAtIndex(htv_content.getLastIndex(), imagePath);
-                                } else {
-                                    htv_content.addTextViewAtIndex(htv_content.getLastIndex(), text);
-                                }
-                            }
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
-
-    }
-
-    /**
-     * 显示数据
-     */
-    private void showEditData(ObservableEmitter<String> emitter, String html) {
-        try {
-            List<String> textList = HyperLibUtils.cutStringByImgTag(html);
-            for (int i = 0; i < textList.size(); i++) {
-                String text = textList.get(i);
-                emitter.onNext(text);
-            }
-            emitter.onComplete();
-        } catch (Exception e){
-            e.printStackTrace();
-            emitter.onError(e);
-        }
+        htv_content.setVisibility(View.VISIBLE);
+        hte_content.setVisibility(View.GONE);
+        htv_content.setHtml(html);
     }
 
-
-
     /**
      * 负责处理编辑数据提交等事宜，请自行实现
      */
     private String getEditData() {
-        StringBuilder content = new StringBuilder();
+        StringWriter content = new StringWriter();
         try {
-            List<HyperEditData> editList = hte_content.buildEditData();
-            for (HyperEditData itemData : editList) {
-                if (itemData.getInputStr() != null) {
-                    content.append(itemData.getInputStr());
-                } else if (itemData.getImagePath() != null) {
-                    content.append("<img src=\"").append(itemData.getImagePath()).append("\"/>");
-                }
-            }
-        } catch (Exception e) {
+            //和库里的写入方式一致，文本块保留加粗、斜体等样式，图片地址会被转义
+            hte_content.writeHtml(content);
+        } catch (IOException e) {
             e.printStackTrace();
         }
         return content.toString();
@@ -461,6 +395,8 @@ public class NewArticleActivity extends AppCompatActivity {
             @Override
             public void loadImage(final String imagePath, final ImageView imageView, final int imageHeight) {
                 Log.e("---", "imageHeight: "+imageHeight);
+                //view可能是回收复用的，先取消之前绑定到这个view上的加载
+                Glide.with(getApplicationContext()).clear(imageView);
                 //如果是网络图片
                 if (imagePath.startsWith("http://") || imagePath.startsWith("https://")){
                     Glide.with(getApplicationContext()).asBitmap()
@@ -469,6 +405,10 @@ public class NewArticleActivity extends AppCompatActivity {
                             .into(new SimpleTarget<Bitmap>() {
                                 @Override
                                 public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
+                                    //这个加载不能按view取消，view已经换成其他图片时丢弃结果
+                                    if (!HyperManager.getInstance().isImageBound(imageView, imagePath)) {
+                                        return;
+                                    }
                                     if (imageHeight > 0) {//固定高度
                                         RelativeLayout.LayoutParams lp = new RelativeLayout.LayoutParams(
                                                 FrameLayout.LayoutParams.MATCH_PARENT, imageHeight);//固定图片高度，记得设置裁剪剧中
@@ -0,0 +1,74 @@
+package com.ns.yc.yccustomtext;
+
+import com.ns.yc.yccustomtextlib.edit.manager.HyperHighlighter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperHighlighter的本地单元测试，自动机的失败指针和匹配区间的合并
+ * 本地测试中LruCache不保存结果，每次find都会重新匹配
+ */
+public class HyperHighlighterTest {
+
+    @Test
+    public void compile_ignoresEmptyKeywords() {
+        assertNull(HyperHighlighter.compile((String) null));
+        assertNull(HyperHighlighter.compile(""));
+        assertNull(HyperHighlighter.compile(Arrays.asList("", null), false, 0));
+        HyperHighlighter highlighter = HyperHighlighter.compile(Arrays.asList("a", "", "a", "b"), false, 0);
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(highlighter.getKeywords()));
+    }
+
+    @Test
+    public void find_followsFailLinks() {
+        //ushers中she、he、hers互相重叠，匹配she之后要沿失败指针继续匹配hers
+        assertArrayEquals(new int[]{1, 6}, find("ushers", "he", "she", "his", "hers"));
+        //abc不是关键词，但失败指针指向的bc是，匹配长度需要从失败指针继承
+        assertArrayEquals(new int[]{1, 3}, find("abce", "abcd", "bc"));
+        //aa之后遇到b，从aa退回到a再继续
+        assertArrayEquals(new int[]{1, 4}, find("aaab", "aab"));
+        //xy之后遇到x，退回到y匹配yx，再从yx退回到x继续匹配xyz
+        assertArrayEquals(new int[]{1, 5}, find("xyxyz", "xyz", "yx"));
+    }
+
+    @Test
+    public void find_mergesOverlappingAndAdjacent() {
+        assertArrayEquals(new int[]{0, 2, 3, 5}, find("ab-ab", "ab"));
+        //相邻的区间合并成一个
+        assertArrayEquals(new int[]{0, 4}, find("abab", "ab"));
+        assertArrayEquals(new int[]{0, 5}, find("aaaaa", "aa"));
+        //短的关键词在长的关键词内部
+        assertArrayEquals(new int[]{0, 6, 7, 9}, find("abcdef-cd", "abcdef", "cd"));
+        //后面的长匹配覆盖之前的多个区间
+        assertArrayEquals(new int[]{0, 7}, find("a-b-c-d", "a", "b", "a-b-c-d"));
+        assertArrayEquals(new int[]{2, 6}, find("这是中文中文", "中文"));
+    }
+
+    @Test
+    public void find_ignoreCase() {
+        HyperHighlighter ignoreCase = HyperHighlighter.compile(Collections.singletonList("HeLLo"), true, 0);
+        assertArrayEquals(new int[]{0, 5, 6, 11}, ignoreCase.find("hello HELLO"));
+        assertArrayEquals(new int[]{6, 11}, find("hello HeLLo", "HeLLo"));
+    }
+
+    @Test
+    public void find_noMatch() {
+        assertEquals(0, find("", "a").length);
+        assertEquals(0, find("bcd", "a").length);
+        HyperHighlighter highlighter = HyperHighlighter.compile("a");
+        assertEquals(0, highlighter.find(null).length);
+        //同一段文字多次查找结果一致
+        assertArrayEquals(highlighter.find("banana"), highlighter.find("banana"));
+    }
+
+    private static int[] find(String text, String... keywords) {
+        HyperHighlighter highlighter = HyperHighlighter.compile(Arrays.asList(keywords), false, 0);
+        return highlighter.find(text);
+    }
+
+}
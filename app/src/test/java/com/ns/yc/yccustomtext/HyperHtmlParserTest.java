@@ -0,0 +1,105 @@
+package com.ns.yc.yccustomtext;
+
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperHtmlParser和HyperHtmlTokenizer的本地单元测试，图片地址中的字符实体、属性解析、不完整的标签
+ */
+public class HyperHtmlParserTest {
+
+    @Test
+    public void imageSrc_decodesEntities() throws Exception {
+        assertEquals("T[a]I[x?a=1&b=2]T[b]", parse("a<img src=\"x?a=1&amp;b=2\">b"));
+        assertEquals("I[\"q\"<]", parse("<img src=\"&quot;q&quot;&#60;\">"));
+        assertEquals("I[a&b]", parse("<img src=\"a&b\">"));
+        assertEquals("I[&unknown;]", parse("<img src=\"&unknown;\">"));
+    }
+
+    @Test
+    public void imageSrc_readsAttributeForms() throws Exception {
+        assertEquals("I[y.png]", parse("<IMG SRC='y.png'/>"));
+        assertEquals("I[z.png]T[t]", parse("<img src=z.png alt=1>t"));
+        assertEquals("I[ok]", parse("<img alt=\"src=no\" src=\"ok\">"));
+    }
+
+    @Test
+    public void truncatedImage_isText() throws Exception {
+        assertEquals("T[text <img src=\"trunc]", parse("text <img src=\"trunc"));
+    }
+
+    @Test
+    public void otherTags_stayInText() throws Exception {
+        assertEquals("T[<p>a</p>]I[b]T[<br>]", parse("<p>a</p><img src=\"b\"><br>"));
+    }
+
+    @Test
+    public void reader_matchesCharSequence() throws Exception {
+        String html = "<b>a&amp;</b><img src=\"x?a=1&amp;b=2\"><i>c</i><IMG src='d'>e";
+        StringBuilder expected = new StringBuilder();
+        HyperHtmlParser.parse(html, new Recorder(expected));
+        //每次只读一个字符，标签和字符实体都会被截断
+        StringBuilder actual = new StringBuilder();
+        HyperHtmlParser.parse(new OneCharReader(html), new Recorder(actual));
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static String parse(String html) throws IOException {
+        StringBuilder fromText = new StringBuilder();
+        HyperHtmlParser.parse(html, new Recorder(fromText));
+        StringBuilder fromReader = new StringBuilder();
+        HyperHtmlParser.parse(new StringReader(html), new Recorder(fromReader));
+        assertEquals(fromText.toString(), fromReader.toString());
+        return fromText.toString();
+    }
+
+    private static final class Recorder implements HyperHtmlParser.Visitor {
+
+        private final StringBuilder output;
+
+        Recorder(StringBuilder output) {
+            this.output = output;
+        }
+
+        @Override
+        public void onText(CharSequence text, int start, int end) {
+            output.append("T[").append(text, start, end).append(']');
+        }
+
+        @Override
+        public void onImage(String src) {
+            output.append("I[").append(src).append(']');
+        }
+    }
+
+    private static final class OneCharReader extends Reader {
+
+        private final String text;
+        private int position;
+
+        OneCharReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            buffer[offset] = text.charAt(position++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.ns.yc.yccustomtext;
+
+import android.text.Spanned;
+
+import com.ns.yc.yccustomtextlib.edit.span.InterInlineSpan;
+import com.ns.yc.yccustomtextlib.edit.span.RichTypeEnum;
+import com.ns.yc.yccustomtextlib.edit.span.SpanStyleHelper;
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlSpanParser;
+import com.ns.yc.yccustomtextlib.utils.HyperHtmlUtils;
+
+import org.junit.Test;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperHtmlSpanParser、SpanStyleHelper和HyperHtmlUtils.appendHtml的本地单元测试
+ * 样式段和span区间的转化，以及html -> 样式 -> html的往返
+ * 库里的span继承自android的样式类，本地测试使用只实现InterInlineSpan的样式
+ */
+public class HyperHtmlSpanParserTest {
+
+    @Test
+    public void styleAndType_roundTrip() {
+        String[] types = {RichTypeEnum.BOLD, RichTypeEnum.ITALIC, RichTypeEnum.BOLD_ITALIC,
+                RichTypeEnum.UNDERLINE, RichTypeEnum.STRIKE_THROUGH};
+        for (String type : types) {
+            assertEquals(type, SpanStyleHelper.getType(SpanStyleHelper.getStyle(type)));
+        }
+        assertEquals(0, SpanStyleHelper.getStyle(RichTypeEnum.BLOCK_QUOTE));
+        assertNull(SpanStyleHelper.getType(SpanStyleHelper.BOLD | SpanStyleHelper.UNDERLINE));
+    }
+
+    @Test
+    public void visitRuns_mergesStyles() {
+        int[] runs = {
+                0, SpanStyleHelper.BOLD,
+                2, SpanStyleHelper.BOLD | SpanStyleHelper.UNDERLINE,
+                4, SpanStyleHelper.BOLD | SpanStyleHelper.ITALIC | SpanStyleHelper.UNDERLINE,
+                6, SpanStyleHelper.STRIKE_THROUGH,
+                8, 0};
+        //span在样式结束的位置回调
+        assertEquals("bold[0,4] bold_italic[4,6] underline[2,6] strike_through[6,8]",
+                visit(runs, 10));
+    }
+
+    @Test
+    public void visitRuns_clampsToLength() {
+        int[] runs = {1, SpanStyleHelper.ITALIC, 20, SpanStyleHelper.BOLD};
+        assertEquals("italic[1,5]", visit(runs, 5));
+        assertEquals("", visit(new int[0], 5));
+    }
+
+    @Test
+    public void parseRuns_nestedTags() {
+        StringBuilder text = new StringBuilder();
+        int[] runs = HyperHtmlSpanParser.parseRuns(
+                "<b>a<i>b</i></b><STRONG>c</STRONG><u>d<del>e</del></u><em>f<br>g</em>", text);
+        assertEquals("abcdef\ng", text.toString());
+        assertEquals("bold[0,1] bold_italic[1,2] bold[2,3] underline[3,5] strike_through[4,5] italic[5,8]",
+                visit(runs, text.length()));
+    }
+
+    @Test
+    public void parseRuns_decodesEntities() {
+        StringBuilder text = new StringBuilder();
+        HyperHtmlSpanParser.parseRuns("&lt;b&gt; &#x4e2d;&#20013; &amp;amp; &unknown; a & b < c", text);
+        assertEquals("<b> 中中 &amp; &unknown; a & b < c", text.toString());
+    }
+
+    @Test
+    public void parseRuns_unclosedTag() {
+        StringBuilder text = new StringBuilder();
+        int[] runs = HyperHtmlSpanParser.parseRuns("a<b>bc", text);
+        assertEquals("abc", text.toString());
+        assertEquals("bold[1,3]", visit(runs, text.length()));
+    }
+
+    @Test
+    public void html_roundTrip() {
+        String[] samples = {
+                "plain &lt;text&gt; &amp; &quot;quote&quot;",
+                "<b>a</b>b<i>c</i>",
+                "<b>a<i>b</i></b><i>c</i>",
+                "<b><i><u><strike>a</strike></u></i></b>",
+                "<u>a<strike>b</strike></u><strike>c</strike>",
+                "<b>中文</b><br><i>第二行</i>",
+        };
+        for (String html : samples) {
+            assertEquals(html, toHtml(toSpanned(html)));
+        }
+    }
+
+    @Test
+    public void html_nestsOverlappingStyles() {
+        FakeSpanned spanned = new FakeSpanned("abcd");
+        spanned.add(RichTypeEnum.BOLD, 0, 3);
+        spanned.add(RichTypeEnum.UNDERLINE, 1, 4);
+        String html = toHtml(spanned);
+        assertEquals("<b>a<u>bc</u></b><u>d</u>", html);
+        //重新解析之后样式不变
+        assertEquals(visit(spanned), visit(toSpanned(html)));
+    }
+
+    private static String visit(int[] runs, int length) {
+        final StringBuilder output = new StringBuilder();
+        SpanStyleHelper.visitRuns(runs, runs.length, length, new SpanStyleHelper.RunVisitor() {
+            @Override
+            public void onSpan(String type, int start, int end) {
+                if (output.length() > 0) {
+                    output.append(' ');
+                }
+                output.append(type).append('[').append(start).append(',').append(end).append(']');
+            }
+        });
+        return output.toString();
+    }
+
+    private static String visit(FakeSpanned spanned) {
+        StringBuilder output = new StringBuilder();
+        for (FakeSpan span : spanned.spans) {
+            if (output.length() > 0) {
+                output.append(' ');
+            }
+            output.append(span.type).append('[').append(span.start).append(',').append(span.end).append(']');
+        }
+        return output.toString();
+    }
+
+    private static FakeSpanned toSpanned(String html) {
+        StringBuilder text = new StringBuilder();
+        int[] runs = HyperHtmlSpanParser.parseRuns(html, text);
+        final FakeSpanned spanned = new FakeSpanned(text.toString());
+        SpanStyleHelper.visitRuns(runs, runs.length, text.length(), new SpanStyleHelper.RunVisitor() {
+            @Override
+            public void onSpan(String type, int start, int end) {
+                spanned.add(type, start, end);
+            }
+        });
+        return spanned;
+    }
+
+    private static String toHtml(CharSequence content) {
+        StringBuilder builder = new StringBuilder();
+        HyperHtmlUtils.appendHtml(builder, content);
+        return builder.toString();
+    }
+
+    private static final class FakeSpan implements InterInlineSpan {
+
+        private final String type;
+        private final int start;
+        private final int end;
+
+        FakeSpan(String type, int start, int end) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+    }
+
+    /**
+     * 只保存InterInlineSpan的Spanned，满足appendHtml读取样式的需要
+     */
+    private static final class FakeSpanned implements Spanned {
+
+        private final String text;
+        private final List<FakeSpan> spans = new ArrayList<>();
+
+        FakeSpanned(String text) {
+            this.text = text;
+        }
+
+        void add(String type, int start, int end) {
+            spans.add(new FakeSpan(type, start, end));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T[] getSpans(int start, int end, Class<T> type) {
+            List<T> result = new ArrayList<>();
+            for (FakeSpan span : spans) {
+                if (type.isInstance(span) && span.start < end && span.end > start) {
+                    result.add((T) span);
+                }
+            }
+            return result.toArray((T[]) Array.newInstance(type, result.size()));
+        }
+
+        @Override
+        public int getSpanStart(Object tag) {
+            return spans.contains(tag) ? ((FakeSpan) tag).start : -1;
+        }
+
+        @Override
+        public int getSpanEnd(Object tag) {
+            return spans.contains(tag) ? ((FakeSpan) tag).end : -1;
+        }
+
+        @Override
+        public int getSpanFlags(Object tag) {
+            return Spanned.SPAN_EXCLUSIVE_EXCLUSIVE;
+        }
+
+        @Override
+        public int nextSpanTransition(int start, int limit, Class type) {
+            return limit;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.ns.yc.yccustomtext;
+
+import com.ns.yc.yccustomtextlib.edit.manager.HyperJournal;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperJournal.replay的本地单元测试，按照日志文件格式手动写入记录
+ * 进程被杀时最后一条记录可能只写了一部分，回放时只回调完整的记录
+ */
+public class HyperJournalTest {
+
+    private static final int MAGIC = 0x48594A4C;
+    private static final int VERSION = 1;
+
+    @Test
+    public void replay_allRecords() throws Exception {
+        Journal journal = createJournal();
+        List<String> records = new ArrayList<>();
+        assertEquals(7, HyperJournal.replay(journal.toByteArray(), new Recorder(records)));
+        assertEquals(Arrays.asList("clear", "text 0 第一段", "image 1 a.png", "replace 0 1 2 二",
+                "span 0 bold 0 3 33", "unspan 0 bold 0 3", "remove 1"), records);
+    }
+
+    @Test
+    public void replay_ignoresTruncatedTail() throws Exception {
+        Journal journal = createJournal();
+        byte[] data = journal.toByteArray();
+        List<String> all = new ArrayList<>();
+        HyperJournal.replay(data, new Recorder(all));
+        for (int length = 8; length < data.length; length++) {
+            //截断位置之前完整的记录条数
+            int complete = 0;
+            while (complete < journal.ends.size() && journal.ends.get(complete) <= length) {
+                complete++;
+            }
+            List<String> records = new ArrayList<>();
+            assertEquals(complete, HyperJournal.replay(Arrays.copyOf(data, length), new Recorder(records)));
+            assertEquals(all.subList(0, complete), records);
+        }
+    }
+
+    @Test
+    public void replay_stopsAtBadRecord() throws Exception {
+        Journal journal = new Journal();
+        journal.out.writeByte(1);
+        journal.end();
+        //无法识别的记录，之后的内容都不可信
+        journal.out.writeByte(99);
+        journal.out.writeByte(1);
+        List<String> records = new ArrayList<>();
+        assertEquals(1, HyperJournal.replay(journal.toByteArray(), new Recorder(records)));
+        assertEquals(Arrays.asList("clear"), records);
+
+        //文字长度超过剩余的内容
+        journal = new Journal();
+        journal.out.writeByte(2);
+        journal.out.writeInt(0);
+        journal.out.writeInt(-1);
+        records.clear();
+        assertEquals(0, HyperJournal.replay(journal.toByteArray(), new Recorder(records)));
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    public void replay_rejectsBadHeader() throws Exception {
+        assertEquals(-1, HyperJournal.replay(null, new Recorder(new ArrayList<String>())));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC + 1);
+        out.writeInt(VERSION);
+        out.writeByte(1);
+        assertEquals(-1, HyperJournal.replay(bytes.toByteArray(), new Recorder(new ArrayList<String>())));
+        bytes.reset();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION + 1);
+        out.writeByte(1);
+        assertEquals(-1, HyperJournal.replay(bytes.toByteArray(), new Recorder(new ArrayList<String>())));
+    }
+
+    /**
+     * 每种记录各一条
+     */
+    private static Journal createJournal() throws IOException {
+        Journal journal = new Journal();
+        DataOutputStream out = journal.out;
+        out.writeByte(1);
+        journal.end();
+        out.writeByte(2);
+        out.writeInt(0);
+        journal.writeText("第一段");
+        journal.end();
+        out.writeByte(3);
+        out.writeInt(1);
+        journal.writeText("a.png");
+        journal.end();
+        out.writeByte(5);
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeInt(2);
+        journal.writeText("二");
+        journal.end();
+        out.writeByte(6);
+        out.writeInt(0);
+        journal.writeText("bold");
+        out.writeInt(0);
+        out.writeInt(3);
+        out.writeInt(33);
+        journal.end();
+        out.writeByte(7);
+        out.writeInt(0);
+        journal.writeText("bold");
+        out.writeInt(0);
+        out.writeInt(3);
+        journal.end();
+        out.writeByte(4);
+        out.writeInt(1);
+        journal.end();
+        return journal;
+    }
+
+    /**
+     * 按照日志文件格式写入，记录每条记录结束的位置
+     */
+    private static final class Journal {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final List<Integer> ends = new ArrayList<>();
+
+        Journal() throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        void writeText(String text) throws IOException {
+            byte[] data = text.getBytes("UTF-8");
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        void end() {
+            ends.add(bytes.size());
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class Recorder implements HyperJournal.Replayer {
+
+        private final List<String> records;
+
+        Recorder(List<String> records) {
+            this.records = records;
+        }
+
+        @Override
+        public void onClear() {
+            records.add("clear");
+        }
+
+        @Override
+        public void onInsertTextBlock(int index, String text) {
+            records.add("text " + index + " " + text);
+        }
+
+        @Override
+        public void onInsertImageBlock(int index, String imagePath) {
+            records.add("image " + index + " " + imagePath);
+        }
+
+        @Override
+        public void onRemoveBlock(int index) {
+            records.add("remove " + index);
+        }
+
+        @Override
+        public void onReplaceText(int index, int start, int deleteLength, String text) {
+            records.add("replace " + index + " " + start + " " + deleteLength + " " + text);
+        }
+
+        @Override
+        public void onSetSpan(int index, String type, int start, int end, int flags) {
+            records.add("span " + index + " " + type + " " + start + " " + end + " " + flags);
+        }
+
+        @Override
+        public void onRemoveSpan(int index, String type, int start, int end) {
+            records.add("unspan " + index + " " + type + " " + start + " " + end);
+        }
+    }
+
+}
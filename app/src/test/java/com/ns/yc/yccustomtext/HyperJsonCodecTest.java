@@ -0,0 +1,134 @@
+package com.ns.yc.yccustomtext;
+
+import com.ns.yc.yccustomtextlib.edit.model.HyperEditData;
+import com.ns.yc.yccustomtextlib.edit.model.HyperJsonCodec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperJsonCodec的本地单元测试，读写往返、格式化，以及格式错误和不完整的json
+ */
+public class HyperJsonCodecTest {
+
+    private static final String TEXT = "a\"b\\c\nd\te\u0001f\u2028g<b>&=中文";
+
+    @Test
+    public void writeAndRead_keepsBlocks() throws Exception {
+        for (boolean pretty : new boolean[]{false, true}) {
+            StringWriter writer = new StringWriter();
+            HyperJsonCodec.write(createBlocks(), writer, pretty);
+            assertBlocks(HyperJsonCodec.read(new StringReader(writer.toString())));
+        }
+    }
+
+    @Test
+    public void format_keepsContent() throws Exception {
+        StringWriter writer = new StringWriter();
+        HyperJsonCodec.write(createBlocks(), writer, false);
+        StringWriter formatted = new StringWriter();
+        HyperJsonCodec.format(new StringReader(writer.toString()), formatted);
+        assertBlocks(HyperJsonCodec.read(new StringReader(formatted.toString())));
+    }
+
+    @Test
+    public void read_skipsUnknownFields() throws Exception {
+        List<HyperEditData> blocks = read("[{\"id\":[1,{\"x\":null}],\"inputStr\":\"a\",\"type\":1.0,"
+                + "\"flag\":true},{\"imagePath\":null,\"type\":2}]");
+        assertEquals(2, blocks.size());
+        assertEquals("a", blocks.get(0).getInputStr());
+        assertEquals(HyperEditData.TYPE_TEXT, blocks.get(0).getType());
+        assertNull(blocks.get(1).getImagePath());
+        assertEquals(HyperEditData.TYPE_IMAGE, blocks.get(1).getType());
+    }
+
+    @Test
+    public void read_emptyInput() throws Exception {
+        assertEquals(0, read("null").size());
+        assertEquals(0, read(" [ ] ").size());
+        assertEquals(0, read(" null \n").size());
+        assertEquals(0, read("[{}]").get(0).getType());
+    }
+
+    @Test
+    public void read_rejectsBadType() {
+        assertMalformed("[{\"type\":\"1\"}]");
+        assertMalformed("[{\"type\":null}]");
+        assertMalformed("[{\"type\":true}]");
+        assertMalformed("[{\"type\":1.5}]");
+        assertMalformed("[{\"type\":NaN}]");
+        assertMalformed("[{\"type\":1e10}]");
+        assertMalformed("[{\"type\":-}]");
+    }
+
+    @Test
+    public void read_rejectsMalformed() {
+        assertMalformed("");
+        assertMalformed("{}");
+        assertMalformed("[{\"inputStr\":1}]");
+        assertMalformed("[{\"inputStr\" \"a\"}]");
+        assertMalformed("[{\"inputStr\":\"a\"}{\"type\":1}]");
+        assertMalformed("[{\"inputStr\":\"\\u12g4\"}]");
+        assertMalformed("nope");
+        assertMalformed("nulls");
+        assertMalformed("null []");
+        assertMalformed("[{\"inputStr\":nothing}]");
+        assertMalformed("[{\"imagePath\":nul}]");
+        assertMalformed("[{\"other\":yes,\"type\":1}]");
+        assertMalformed("[{\"type\":1}]]");
+        assertMalformed("[] trailing");
+        assertMalformed("[]{}");
+    }
+
+    @Test
+    public void read_rejectsTruncated() throws Exception {
+        StringWriter writer = new StringWriter();
+        HyperJsonCodec.write(createBlocks(), writer, false);
+        String json = writer.toString();
+        for (int length = 0; length < json.length(); length++) {
+            assertMalformed(json.substring(0, length));
+        }
+    }
+
+    private static List<HyperEditData> createBlocks() {
+        List<HyperEditData> blocks = new ArrayList<>();
+        HyperEditData text = new HyperEditData();
+        text.setType(HyperEditData.TYPE_TEXT);
+        text.setInputStr(TEXT);
+        blocks.add(text);
+        HyperEditData image = new HyperEditData();
+        image.setType(HyperEditData.TYPE_IMAGE);
+        image.setImagePath("http://a.com/b.png?c=1&d=\"2\"");
+        blocks.add(image);
+        return blocks;
+    }
+
+    private static void assertBlocks(List<HyperEditData> blocks) {
+        assertEquals(2, blocks.size());
+        assertEquals(TEXT, blocks.get(0).getInputStr());
+        assertEquals(HyperEditData.TYPE_TEXT, blocks.get(0).getType());
+        assertEquals("http://a.com/b.png?c=1&d=\"2\"", blocks.get(1).getImagePath());
+        assertEquals(HyperEditData.TYPE_IMAGE, blocks.get(1).getType());
+    }
+
+    private static List<HyperEditData> read(String json) throws IOException {
+        return HyperJsonCodec.read(new StringReader(json));
+    }
+
+    private static void assertMalformed(String json) {
+        try {
+            read(json);
+            fail("没有抛出IOException：" + json);
+        } catch (IOException e) {
+            //格式错误只能以IOException的形式抛出
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.ns.yc.yccustomtext;
+
+import com.ns.yc.yccustomtextlib.utils.HyperLibUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperLibUtils中不依赖view的方法的本地单元测试，空白位置的计算和批量插入图片前的路径过滤
+ */
+public class HyperLibUtilsTest {
+
+    @Test
+    public void trim_matchesStringTrim() {
+        String[] samples = {"", " ", " a ", "\n\tab c\u0000", "abc"};
+        for (String sample : samples) {
+            assertEquals(sample.trim().length(), HyperLibUtils.getTrimLength(sample));
+        }
+        assertEquals(0, HyperLibUtils.getTrimLength(null));
+        assertEquals(4, HyperLibUtils.getTrimStart("ab  cd", 2, 6));
+        assertEquals(2, HyperLibUtils.getTrimEnd("ab  cd", 0, 4));
+    }
+
+    @Test
+    public void validImagePaths_keepsOrder() {
+        List<String> paths = Arrays.asList(null, "a.png", "", "b.png", null);
+        assertEquals(Arrays.asList("a.png", "b.png"), HyperLibUtils.getValidImagePaths(paths));
+    }
+
+    @Test
+    public void validImagePaths_emptyWhenNothingToInsert() {
+        //insertImages依靠空集合提前返回，不会拆分光标后面的文字
+        assertTrue(HyperLibUtils.getValidImagePaths(null).isEmpty());
+        assertTrue(HyperLibUtils.getValidImagePaths(new ArrayList<String>()).isEmpty());
+        assertTrue(HyperLibUtils.getValidImagePaths(Arrays.asList(null, "", null)).isEmpty());
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.ns.yc.yccustomtext;
+
+import com.ns.yc.yccustomtextlib.edit.manager.HyperSearchIndex;
+import com.ns.yc.yccustomtextlib.edit.model.HyperMatch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperSearchIndex的本地单元测试，块内逐字查找，以及还没有计算完成的块一直作为候选块
+ * 本地测试中Handler不会执行任务，修改过的块始终处于等待计算的状态
+ */
+public class HyperSearchIndexTest {
+
+    @Test
+    public void findAll_nonOverlapping() {
+        assertEquals("[3:0-2, 3:2-4]", findAll(3, "aaaaa", "aa", false));
+        assertEquals("[0:2-4, 0:4-6]", findAll(0, "这是中文中文", "中文", false));
+        assertEquals("[0:1-3]", findAll(0, "abab", "ba", false));
+    }
+
+    @Test
+    public void findAll_ignoreCase() {
+        assertEquals("[0:0-5, 0:6-11]", findAll(0, "Hello HELLO", "hello", true));
+        assertEquals("[]", findAll(0, "Hello HELLO", "hello", false));
+    }
+
+    @Test
+    public void findAll_edgeCases() {
+        assertEquals("[]", findAll(0, "abc", "", false));
+        assertEquals("[]", findAll(0, null, "a", false));
+        assertEquals("[]", findAll(0, "ab", "abc", false));
+        assertEquals("[0:0-3]", findAll(0, "abc", "abc", false));
+    }
+
+    @Test
+    public void candidates_includeDirtyBlocks() {
+        HyperSearchIndex index = new HyperSearchIndex(new HyperSearchIndex.TextProvider() {
+            @Override
+            public CharSequence getText(int slot) {
+                return "text";
+            }
+        }, true);
+        assertTrue(index.candidates("te").isEmpty());
+        index.invalidate(2);
+        index.invalidate(5);
+        //无效的块标识被忽略
+        index.invalidate(-1);
+        //还没有重新计算的块不能被排除
+        BitSet candidates = index.candidates("xyz");
+        assertEquals(2, candidates.cardinality());
+        assertTrue(candidates.get(2));
+        assertTrue(candidates.get(5));
+        index.remove(2);
+        candidates = index.candidates("x");
+        assertEquals(1, candidates.cardinality());
+        assertTrue(candidates.get(5));
+        index.clear();
+        assertTrue(index.candidates("x").isEmpty());
+        assertTrue(index.candidates(null).isEmpty());
+    }
+
+    private static String findAll(int blockIndex, CharSequence text, String query, boolean ignoreCase) {
+        List<HyperMatch> matches = new ArrayList<>();
+        HyperSearchIndex.findAll(blockIndex, text, query, ignoreCase, matches);
+        StringBuilder builder = new StringBuilder("[");
+        for (HyperMatch match : matches) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(match.getBlockIndex()).append(':')
+                    .append(match.getStart()).append('-').append(match.getEnd());
+        }
+        return builder.append(']').toString();
+    }
+
+}
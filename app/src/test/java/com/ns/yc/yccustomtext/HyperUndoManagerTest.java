@@ -0,0 +1,196 @@
+package com.ns.yc.yccustomtext;
+
+import com.ns.yc.yccustomtextlib.edit.manager.HyperUndoManager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * HyperUndoManager的本地单元测试，连续输入的合并、一组操作、撤销重做之后的状态和内存上限
+ * 本地测试中SystemClock.uptimeMillis始终返回0，相邻两次操作都在合并间隔之内
+ */
+public class HyperUndoManagerTest {
+
+    private final StringBuilder document = new StringBuilder();
+
+    @Test
+    public void push_mergesTyping() {
+        HyperUndoManager manager = new HyperUndoManager();
+        assertFalse(manager.push(type(0, "a")));
+        assertTrue(manager.push(type(1, "b")));
+        assertTrue(manager.push(type(2, "c")));
+        assertEquals("abc", document.toString());
+        assertEquals(16 + 3 * 2, manager.getMemorySize());
+        assertTrue(manager.undo());
+        assertEquals("", document.toString());
+        assertFalse(manager.canUndo());
+        assertTrue(manager.redo());
+        assertEquals("abc", document.toString());
+    }
+
+    @Test
+    public void push_keepsSeparateEdits() {
+        HyperUndoManager manager = new HyperUndoManager();
+        manager.push(type(0, "ab"));
+        //不连续的位置不合并
+        assertFalse(manager.push(type(0, "x")));
+        assertEquals("xab", document.toString());
+        manager.undo();
+        assertEquals("ab", document.toString());
+        manager.undo();
+        assertEquals("", document.toString());
+    }
+
+    @Test
+    public void undo_stopsMerging() {
+        HyperUndoManager manager = new HyperUndoManager();
+        manager.push(type(0, "a"));
+        manager.push(type(1, "b"));
+        manager.undo();
+        manager.redo();
+        //撤销重做之后重新开始记录，新的输入不会并入之前的操作
+        assertFalse(manager.push(type(2, "c")));
+        manager.undo();
+        assertEquals("ab", document.toString());
+        assertTrue(manager.canRedo());
+        //新的操作清空重做记录
+        manager.push(type(2, "d"));
+        assertFalse(manager.canRedo());
+    }
+
+    @Test
+    public void group_isOneUndo() {
+        HyperUndoManager manager = new HyperUndoManager();
+        manager.beginGroup();
+        manager.push(type(0, "a"));
+        manager.beginGroup();
+        manager.push(type(0, "b"));
+        manager.endGroup();
+        //嵌套的组还没有结束时不能撤销
+        assertFalse(manager.undo());
+        manager.endGroup();
+        assertEquals("ba", document.toString());
+        //一组操作结束之后不再合并
+        assertFalse(manager.push(type(2, "c")));
+        manager.undo();
+        manager.undo();
+        assertEquals("", document.toString());
+        assertFalse(manager.canUndo());
+    }
+
+    @Test
+    public void push_ignoredWhileRestoringOrDisabled() {
+        final HyperUndoManager manager = new HyperUndoManager();
+        TypeOperation operation = new TypeOperation(0, "a") {
+            @Override
+            public void undo() {
+                super.undo();
+                //撤销期间产生的变化不记录
+                assertFalse(manager.isRecording());
+                assertFalse(manager.push(new TypeOperation(0, "x")));
+            }
+        };
+        operation.redo();
+        manager.push(operation);
+        manager.undo();
+        assertEquals("", document.toString());
+        assertFalse(manager.canUndo());
+        manager.setEnabled(false);
+        assertFalse(manager.push(type(0, "y")));
+        assertFalse(manager.canUndo());
+    }
+
+    @Test
+    public void maxMemory_dropsOldestFirst() {
+        HyperUndoManager manager = new HyperUndoManager();
+        //每个操作占用16 + 4 * 2 = 24字节
+        manager.push(type(0, "aaaa"));
+        manager.push(type(0, "bbbb"));
+        manager.push(type(0, "cccc"));
+        assertEquals(72, manager.getMemorySize());
+        manager.setMaxMemory(50);
+        assertEquals(48, manager.getMemorySize());
+        manager.undo();
+        manager.undo();
+        assertFalse(manager.canUndo());
+        assertEquals("aaaa", document.toString());
+    }
+
+    @Test
+    public void maxMemory_dropsRedoBeforeUndo() {
+        HyperUndoManager manager = new HyperUndoManager();
+        manager.push(type(0, "aaaa"));
+        manager.push(type(0, "bbbb"));
+        manager.undo();
+        assertTrue(manager.canRedo());
+        manager.setMaxMemory(30);
+        assertFalse(manager.canRedo());
+        assertTrue(manager.canUndo());
+        assertEquals(24, manager.getMemorySize());
+        //单个操作超过上限时也会被丢弃
+        manager.setMaxMemory(10);
+        assertFalse(manager.canUndo());
+        assertEquals(0, manager.getMemorySize());
+    }
+
+    @Test
+    public void maxMemory_countsMergedSize() {
+        HyperUndoManager manager = new HyperUndoManager();
+        manager.setMaxMemory(25);
+        manager.push(type(0, "aaaa"));
+        //合并之后变成26字节，超过上限
+        assertTrue(manager.push(type(4, "b")));
+        assertFalse(manager.canUndo());
+        assertEquals(0, manager.getMemorySize());
+    }
+
+    private TypeOperation type(int start, String text) {
+        TypeOperation operation = new TypeOperation(start, text);
+        operation.redo();
+        return operation;
+    }
+
+    /**
+     * 在document中插入文字，紧接着的插入合并成一次
+     */
+    private class TypeOperation implements HyperUndoManager.Operation {
+
+        private final int start;
+        private final StringBuilder text;
+
+        TypeOperation(int start, String text) {
+            this.start = start;
+            this.text = new StringBuilder(text);
+        }
+
+        @Override
+        public void undo() {
+            document.delete(start, start + text.length());
+        }
+
+        @Override
+        public void redo() {
+            document.insert(start, text);
+        }
+
+        @Override
+        public int getSize() {
+            return 16 + text.length() * 2;
+        }
+
+        @Override
+        public boolean merge(HyperUndoManager.Operation next) {
+            if (!(next instanceof TypeOperation)) {
+                return false;
+            }
+            TypeOperation other = (TypeOperation) next;
+            if (other.start != start + text.length()) {
+                return false;
+            }
+            text.append(other.text);
+            return true;
+        }
+    }
+
+}